@@ -0,0 +1,48 @@
+#!/bin/sh
+# Compares the response times of the product listings by category served by SQL and by the product bitmaps, by
+# starting the application once with shop.bitmaps.enabled=false and once with true. The database (filled, for instance
+# by scripts/partition-benchmark.sh) and Elasticsearch must be running, and the jar built.
+# Usage: scripts/bitmap-benchmark.sh [runs] [shop id] [category ids]
+set -e
+
+RUNS=${1:-50}
+SHOP=${2:-42}
+CATEGORIES=${3:-7,8}
+JAR=${JAR:-target/shop-app-0.0.1-SNAPSHOT.jar}
+BASE_URL=http://localhost:8080/api/v1
+# Token of the administration endpoints of the instances started here
+ADMIN_TOKEN=$(od -An -N16 -tx1 /dev/urandom | tr -d ' \n')
+
+# Average and 95th percentile of the time to first byte of the URL, in ms
+measure() {
+  label=$1
+  url=$2
+  curl -s -o /dev/null "$url" # warm up
+  i=0
+  while [ "$i" -lt "$RUNS" ]; do
+    curl -s -o /dev/null -w '%{time_starttransfer}\n' "$url"
+    i=$((i + 1))
+  done | sort -n | awk -v label="$label" '
+    { times[NR] = $1 * 1000; total += $1 * 1000 }
+    END { printf "%-36s avg %8.2f ms   p95 %8.2f ms\n", label, total / NR, times[int(NR * 0.95)] }'
+}
+
+run() {
+  echo "== shop.bitmaps.enabled=$1"
+  java -jar "$JAR" --shop.bitmaps.enabled="$1" --shop.search.mass-index-on-startup=false \
+    --shop.admin.token="$ADMIN_TOKEN" > /dev/null 2>&1 &
+  pid=$!
+  until curl -s -H "Authorization: Bearer $ADMIN_TOKEN" "$BASE_URL/admin/bitmaps" | grep -q "\"ready\":$1"; do
+    sleep 0.5
+  done
+  # Several pages deep, and the total of each listing is counted
+  measure "shop and category" "$BASE_URL/products?shopId=$SHOP&categoryId=${CATEGORIES%%,*}&page=5&size=20"
+  measure "category" "$BASE_URL/products?categoryId=${CATEGORIES%%,*}&page=5&size=20"
+  measure "categories (all)" "$BASE_URL/products?categoryIds=$CATEGORIES&categoryMatch=all&page=5&size=20"
+  measure "categories (any)" "$BASE_URL/products?categoryIds=$CATEGORIES&categoryMatch=any&page=5&size=20"
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+}
+
+run false
+run true
@@ -0,0 +1,47 @@
+#!/bin/sh
+# Compares how long the requests hold a pool connection with the session open during the serialization of the
+# responses (spring.jpa.open-in-view=true) and without it, under the same concurrent load of shop and product listings.
+# The hold time is the hikaricp.connections.usage timer of the pool. The database and Elasticsearch must be running,
+# and the jar built.
+# Usage: scripts/connection-hold-benchmark.sh [requests] [concurrency]
+set -e
+
+REQUESTS=${1:-2000}
+CONCURRENCY=${2:-32}
+JAR=${JAR:-target/shop-app-0.0.1-SNAPSHOT.jar}
+BASE_URL=http://localhost:8080
+
+# Value of a statistic of a metric of the actuator
+statistic() {
+  curl -s "$BASE_URL/actuator/metrics/$1" | tr '{' '\n' | grep "\"statistic\":\"$2\"" | sed 's/.*"value":\([0-9.E-]*\).*/\1/'
+}
+
+run() {
+  echo "== spring.jpa.open-in-view=$1"
+  java -jar "$JAR" --spring.jpa.open-in-view="$1" --shop.search.mass-index-on-startup=false > /dev/null 2>&1 &
+  pid=$!
+  until curl -s -o /dev/null "$BASE_URL/actuator/health"; do
+    sleep 0.5
+  done
+  count_before=$(statistic hikaricp.connections.usage COUNT)
+  total_before=$(statistic hikaricp.connections.usage TOTAL_TIME)
+  start=$(date +%s)
+  i=0
+  while [ "$i" -lt "$REQUESTS" ]; do
+    echo "$BASE_URL/api/v1/shops?page=$((i % 20))&size=20"
+    echo "$BASE_URL/api/v1/products?page=$((i % 20))&size=20"
+    i=$((i + 2))
+  done | xargs -P "$CONCURRENCY" -n 1 curl -s -o /dev/null
+  elapsed=$(($(date +%s) - start))
+  count=$(statistic hikaricp.connections.usage COUNT)
+  total=$(statistic hikaricp.connections.usage TOTAL_TIME)
+  max=$(statistic hikaricp.connections.usage MAX)
+  awk -v c0="$count_before" -v t0="$total_before" -v c="$count" -v t="$total" -v m="$max" -v s="$elapsed" 'BEGIN {
+    printf "connections taken %d   mean hold %.2f ms   max hold %.2f ms   duration %d s\n",
+      c - c0, (t - t0) * 1000 / (c - c0), m * 1000, s }'
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+}
+
+run true
+run false
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Loads a deterministic synthetic catalog (10M products by default) with the COPY protocol in parallel streams, then
+# asks the running application, if any, to rebuild its search indexes and derived data. The options are the ones of
+# fr.fullstack.shopapp.tool.CatalogGenerator, given as --name=value; the jar must be built. With --api-url,
+# SHOP_ADMIN_TOKEN (or --admin-token) must hold the shop.admin.token of the application; the script fails when the
+# application refuses the reindexing.
+# Usage: SHOP_ADMIN_TOKEN=... scripts/generate-catalog.sh [--products=10000000] [--shops=10000] [--truncate=true] \
+#   [--api-url=http://localhost:8080] ...
+set -e
+
+JAR=${JAR:-target/shop-app-0.0.1-SNAPSHOT.jar}
+
+exec java -cp "$JAR" -Dloader.main=fr.fullstack.shopapp.tool.CatalogGenerator \
+  org.springframework.boot.loader.launch.PropertiesLauncher "$@"
@@ -0,0 +1,55 @@
+// k6 load test: ramps the arrival rate well over the capacity of the API and checks that the accepted requests keep a
+// bounded p99 while the excess is shed with 503.
+// Usage: k6 run -e BASE_URL=http://localhost:8080 scripts/load-test.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+  scenarios: {
+    reads: {
+      executor: 'ramping-arrival-rate',
+      exec: 'reads',
+      startRate: 50,
+      timeUnit: '1s',
+      preAllocatedVUs: 200,
+      maxVUs: 2000,
+      stages: [
+        { target: 200, duration: '30s' },
+        { target: 2000, duration: '1m' },
+        { target: 2000, duration: '1m' },
+        { target: 50, duration: '30s' },
+      ],
+    },
+    writes: {
+      executor: 'constant-arrival-rate',
+      exec: 'writes',
+      rate: 20,
+      timeUnit: '1s',
+      duration: '3m',
+      preAllocatedVUs: 50,
+    },
+  },
+  thresholds: {
+    // Only the accepted requests are bounded, the shed ones answer at once
+    'http_req_duration{status:200}': ['p(99)<1500'],
+    'http_req_duration{status:503}': ['p(99)<50'],
+    'checks{scenario:writes}': ['rate>0.95'],
+  },
+};
+
+export function reads() {
+  const page = Math.floor(Math.random() * 20);
+  const res = Math.random() < 0.2
+    ? http.get(`${BASE_URL}/api/v1/shops/search?query=boutique`)
+    : http.get(`${BASE_URL}/api/v1/products?page=${page}&size=20&pagination=slice`);
+  check(res, { 'accepted or shed': (r) => r.status === 200 || r.status === 503 });
+}
+
+export function writes() {
+  const res = http.post(`${BASE_URL}/api/v1/categories`, JSON.stringify({ name: `Charge ${Date.now()}-${__VU}` }), {
+    headers: { 'Content-Type': 'application/json' },
+  });
+  check(res, { 'write accepted': (r) => r.status === 200 });
+}
@@ -0,0 +1,57 @@
+#!/bin/sh
+# Compares the per-shop product queries before and after sql/partition_products.sql, on a scratch database filled with
+# generated data (10M products by default).
+# Usage: scripts/partition-benchmark.sh [products] [shops]
+# The connection is given by the usual libpq variables (PGHOST, PGPORT, PGUSER, PGPASSWORD). The database
+# shop_partition_benchmark is dropped and recreated.
+set -e
+
+PRODUCTS=${1:-10000000}
+SHOPS=${2:-10000}
+DB=shop_partition_benchmark
+SQL_DIR=$(dirname "$0")/../sql
+
+psql -q -d postgres -c "DROP DATABASE IF EXISTS $DB" -c "CREATE DATABASE $DB"
+psql -q -d $DB -f "$SQL_DIR/create_tables.sql"
+
+echo "Generating $PRODUCTS products in $SHOPS shops"
+psql -q -d $DB <<SQL
+create sequence products_seq start with 1 increment by 50;
+insert into shops (id, created_at, in_vacations, name)
+select i, date '2020-01-01' + (i % 1000), i % 10 = 0, 'Boutique ' || i from generate_series(1, $SHOPS) i;
+insert into categories (id, name) select i, 'Catégorie ' || i from generate_series(1, 100) i;
+insert into category_closure (ancestor_id, descendant_id, depth) select id, id, 0 from categories;
+insert into products (id, price, shop_id, localized_products)
+select i, round((random() * 200)::numeric, 2), 1 + (i % $SHOPS),
+       jsonb_build_array(jsonb_build_object('locale', 'FR', 'name', 'Produit ' || i))
+from generate_series(1, $PRODUCTS) i;
+insert into products_categories (product_id, category_id, shop_id)
+select id, 1 + (id % 100), shop_id from products
+union all
+select id, 1 + ((id / 100) % 100), shop_id from products where id % 2 = 0;
+select setval('products_seq', $PRODUCTS + 1);
+analyze;
+SQL
+
+run_queries() {
+  echo "== $1"
+  psql -q -d $DB <<'SQL'
+\timing on
+\echo products of a shop, by price
+explain (analyze, buffers, costs off, summary on)
+select * from products where shop_id = 42 order by price, id limit 20;
+\echo products of a shop in a category
+explain (analyze, buffers, costs off, summary on)
+select * from products p where p.shop_id = 42 and exists (select 1 from products_categories pc
+  join category_closure cc on cc.descendant_id = pc.category_id
+  where pc.product_id = p.id and pc.shop_id = 42 and cc.ancestor_id = 7) limit 20;
+\echo counts of a shop (formulas of Shop)
+explain (analyze, buffers, costs off, summary on)
+select (select count(*) from products p where p.shop_id = 42),
+       (select count(distinct pc.category_id) from products_categories pc where pc.shop_id = 42);
+SQL
+}
+
+run_queries "unpartitioned"
+psql -q -d $DB -f "$SQL_DIR/partition_products.sql"
+run_queries "partitioned by shop"
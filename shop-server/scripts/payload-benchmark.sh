@@ -0,0 +1,35 @@
+#!/bin/sh
+# Compare the size on the wire and the response time of a product page across the response formats.
+# Usage: scripts/payload-benchmark.sh [base url] [page size] [runs]
+
+BASE_URL=${1:-http://localhost:8080}
+SIZE=${2:-100}
+RUNS=${3:-20}
+URL="$BASE_URL/api/v1/products?page=0&size=$SIZE"
+
+measure() {
+  label=$1
+  accept=$2
+  encoding=$3
+  query=$4
+  curl -s -o /dev/null -H "Accept: $accept" -H "Accept-Encoding: $encoding" "$URL$query" # warm up
+  total=0
+  i=0
+  while [ "$i" -lt "$RUNS" ]; do
+    result=$(curl -s -o /dev/null -w '%{size_download} %{time_starttransfer}' \
+      -H "Accept: $accept" -H "Accept-Encoding: $encoding" "$URL$query")
+    bytes=${result% *}
+    total=$(echo "$total + ${result#* }" | bc -l)
+    i=$((i + 1))
+  done
+  printf '%-28s %10s bytes %10.2f ms\n' "$label" "$bytes" "$(echo "$total * 1000 / $RUNS" | bc -l)"
+}
+
+for envelope in "" "&envelope=compact"; do
+  for encoding in identity gzip; do
+    suffix="${envelope:+ compact}, $encoding"
+    measure "json$suffix" application/json "$encoding" "$envelope"
+    measure "smile$suffix" application/x-jackson-smile "$encoding" "$envelope"
+    measure "cbor$suffix" application/cbor "$encoding" "$envelope"
+  done
+done
@@ -0,0 +1,22 @@
+#!/bin/sh
+# Unpacks the application jar into a layout usable by class data sharing (CDS), then creates the CDS archive with a
+# training run that stops right after the context refresh.
+# Usage: scripts/prepare-cds.sh <application jar> <destination directory>
+set -e
+
+JAR=$(realpath "$1")
+DEST=$2
+
+rm -rf "$DEST"
+mkdir -p "$DEST/unpacked"
+cd "$DEST/unpacked"
+jar xf "$JAR"
+cd ..
+# CDS only archives classes loaded from plain jars, not from directories or nested jars
+jar cf application.jar -C unpacked/BOOT-INF/classes .
+mv unpacked/BOOT-INF/lib lib
+rm -rf unpacked
+
+java -XX:ArchiveClassesAtExit=application.jsa \
+  -Dspring.aot.enabled=true -Dspring.profiles.active=startup -Dspring.context.exit=onRefresh \
+  -cp "application.jar:lib/*" fr.fullstack.shopapp.ShopAppApplication
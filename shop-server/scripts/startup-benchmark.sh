@@ -0,0 +1,52 @@
+#!/bin/sh
+# Measures the time to first request and the resident memory (RSS) of the application, in the default mode and in the
+# startup optimized mode (AOT + lazy initialization + CDS archive). The database and Elasticsearch must be running.
+# Usage: scripts/startup-benchmark.sh [runs]
+# Build the jar with "mvn -Pstartup package" first: the AOT code it contains is only used in the startup mode.
+set -e
+
+RUNS=${1:-5}
+URL=http://localhost:8080/api/v1/categories?page=0\&size=1
+JAR=${JAR:-target/shop-app-0.0.1-SNAPSHOT.jar}
+STARTUP_DIR=${STARTUP_DIR:-target/cds}
+
+now_ms() {
+  date +%s%3N
+}
+
+# Starts the command in the background, waits for the first successful request, then prints time and RSS
+measure() {
+  label=$1
+  shift
+  total_time=0
+  total_rss=0
+  i=0
+  while [ "$i" -lt "$RUNS" ]; do
+    start=$(now_ms)
+    "$@" --shop.search.mass-index-on-startup=false > /dev/null 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$URL"; do
+      sleep 0.05
+    done
+    elapsed=$(($(now_ms) - start))
+    rss=$(awk '/VmRSS/ { print $2 }' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    total_time=$((total_time + elapsed))
+    total_rss=$((total_rss + rss))
+    i=$((i + 1))
+  done
+  printf '%-10s time to first request: %6d ms   RSS: %6d MB\n' \
+    "$label" $((total_time / RUNS)) $((total_rss / RUNS / 1024))
+}
+
+measure default java -jar "$JAR"
+
+if [ ! -f "$STARTUP_DIR/application.jsa" ]; then
+  scripts/prepare-cds.sh "$JAR" "$STARTUP_DIR" > /dev/null
+fi
+(
+  cd "$STARTUP_DIR"
+  measure startup java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+    -Dspring.profiles.active=startup -cp "application.jar:lib/*" fr.fullstack.shopapp.ShopAppApplication
+)
@@ -0,0 +1,60 @@
+#!/bin/sh
+# Throughput benchmark of the stock reservations: adds a few units to the stock of a product, sends many more
+# concurrent reservations than there are units, and reports the reservations per second and the size of the group
+# commits. The oversell checks under contention are the StripedCounterTest and StockServiceTest unit tests; the checks
+# at the end only catch a deployment gone wrong. The application must be running on a filled database, with no other
+# reservation of the product expiring during the run (the reservations made here last ttl seconds). ADMIN_TOKEN is the
+# shop.admin.token of the application.
+# Usage: scripts/stock-reservation-benchmark.sh [product id] [units] [requests] [concurrency] [ttl]
+set -e
+
+PRODUCT=${1:-1}
+UNITS=${2:-5000}
+REQUESTS=${3:-20000}
+CONCURRENCY=${4:-64}
+TTL=${5:-600}
+BASE_URL=${BASE_URL:-http://localhost:8080/api/v1}
+ADMIN_TOKEN=${ADMIN_TOKEN:?ADMIN_TOKEN must be set to the shop.admin.token of the application}
+CODES=$(mktemp)
+trap 'rm -f "$CODES"' EXIT
+
+# Value of a numeric field of a JSON object
+field() {
+  sed -n "s/.*\"$1\":\([0-9.-]*\).*/\1/p"
+}
+
+available=$(curl -s -X POST "$BASE_URL/stock/$PRODUCT/restock?units=$UNITS" | field available)
+if [ -z "$available" ]; then
+  echo "Unable to restock the product $PRODUCT"
+  exit 1
+fi
+echo "== $REQUESTS reservations of 1 unit, $CONCURRENCY at a time, $available units available"
+
+start=$(date +%s)
+i=0
+while [ "$i" -lt "$REQUESTS" ]; do
+  echo "$BASE_URL/stock/$PRODUCT/reservations?quantity=1&ttlSeconds=$TTL"
+  i=$((i + 1))
+done | xargs -P "$CONCURRENCY" -n 1 curl -s -o /dev/null -w '%{http_code}\n' -X POST > "$CODES"
+elapsed=$(($(date +%s) - start))
+
+accepted=$(grep -c '^200$' "$CODES" || true)
+refused=$(grep -c '^400$' "$CODES" || true)
+shed=$(grep -c '^503$' "$CODES" || true)
+left=$(curl -s "$BASE_URL/stock/$PRODUCT" | field available)
+curl -s -o /dev/null -H "Authorization: Bearer $ADMIN_TOKEN" -X POST "$BASE_URL/admin/stock/reconcile"
+status=$(curl -s -H "Authorization: Bearer $ADMIN_TOKEN" "$BASE_URL/admin/stock")
+echo "$status" | field averageBatchSize | awk '{ printf "average group commit size %.1f\n", $1 }'
+awk -v a="$accepted" -v r="$refused" -v s="$shed" -v e="$elapsed" 'BEGIN {
+  printf "accepted %d   sold out %d   shed %d   duration %d s   %.0f requests/s\n",
+    a, r, s, e, (a + r + s) / (e > 0 ? e : 1) }'
+
+if [ "$accepted" -gt "$available" ] || [ "$accepted" -ne $((available - left)) ]; then
+  echo "FAILED: $accepted reservations accepted for $available units, $left units left"
+  exit 1
+fi
+if [ "$(echo "$status" | field driftingStocks)" != "0" ]; then
+  echo "FAILED: stock counters differ from the reservation log"
+  exit 1
+fi
+echo "OK: $accepted units reserved out of $available, $left left"
@@ -1,14 +1,23 @@
 create table categories (
     id int8 not null,
     name varchar(255) not null,
+    parent_id int8,
     primary key (id)
 );
 
-create table localized_product (
-    id int8 not null,
-    description varchar(255),
-    locale varchar(255) not null,
-    name varchar(255) not null,
+create table category_closure (
+    ancestor_id int8 not null,
+    descendant_id int8 not null,
+    depth int4 not null,
+    primary key (ancestor_id, descendant_id)
+);
+
+create table change_log (
+    id bigserial not null,
+    entity_type varchar(16) not null,
+    entity_id int8 not null,
+    action varchar(16) not null,
+    changed_at timestamp(6) with time zone not null,
     primary key (id)
 );
 
@@ -20,27 +29,33 @@ create table opening_hours (
     primary key (id)
 );
 
+create table product_stocks (
+    product_id int8 not null,
+    quantity int8 not null,
+    updated_at timestamp(6) with time zone not null,
+    primary key (product_id)
+);
+
 create table products (
     id int8 not null,
     price float4 not null,
     shop_id int8,
+    localized_products jsonb not null default '[]',
     primary key (id)
 );
 
 create table products_categories (
     product_id int8 not null,
-    category_id int8 not null
-);
-
-create table products_localized_product (
-    product_id int8 not null,
-    localized_product_id int8 not null
+    category_id int8 not null,
+    shop_id int8
 );
 
 create table shops (
     id int8 not null,
     created_at date not null,
     in_vacations boolean not null,
+    latitude float8,
+    longitude float8,
     name varchar(255) not null,
     primary key (id)
 );
@@ -50,6 +65,39 @@ create table shops_opening_hours (
     opening_hours_id int8 not null
 );
 
+create table shop_statistics (
+    shop_id int8 not null,
+    nb_products int8 not null,
+    min_price float8,
+    max_price float8,
+    sum_price float8 not null,
+    nb_localized_fr int8 not null,
+    nb_localized_en int8 not null,
+    refreshed_at timestamp not null,
+    primary key (shop_id)
+);
+
+create table shop_category_statistics (
+    shop_id int8 not null,
+    category_id int8 not null,
+    nb_products int8 not null,
+    min_price float8,
+    max_price float8,
+    sum_price float8 not null,
+    primary key (shop_id, category_id)
+);
+
+create table stock_reservations (
+    id varchar(36) not null,
+    product_id int8 not null,
+    quantity int4 not null,
+    status varchar(16) not null,
+    created_at timestamp(6) with time zone not null,
+    expires_at timestamp(6) with time zone not null,
+    updated_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+
 create table translation (
     id int8 not null,
     field_type varchar(255) not null,
@@ -58,8 +106,26 @@ create table translation (
     primary key (id)
 );
 
-alter table products_localized_product
-add constraint UK_n8q0vltkv2dgjclj2aqn26l03 unique(localized_product_id);
+create index idx_categories_parent on categories (parent_id);
+
+create index idx_category_closure_descendant on category_closure (descendant_id, ancestor_id);
+
+create index idx_products_shop_price on products (shop_id, price, id);
+
+create index idx_products_price on products (price, id);
+
+create index idx_products_categories_category on products_categories (category_id, product_id);
+
+create index idx_products_categories_product on products_categories (product_id, category_id);
+
+create index idx_products_categories_shop on products_categories (shop_id, category_id);
+
+create index idx_stock_reservations_status_product on stock_reservations (status, product_id);
+
+create index idx_stock_reservations_status_expires on stock_reservations (status, expires_at);
+
+alter table categories
+add constraint fk_categories_parent foreign key (parent_id) references categories;
 
 alter table shops_opening_hours
 add constraint UK_cnkerx0e3gn4yuhpjkr1d7heu unique (opening_hours_id);
@@ -73,12 +139,6 @@ add constraint FKqt6m2o5dly3luqcm00f5t4h2p foreign key (category_id) references
 alter table products_categories
 add constraint FKtj1vdea8qwerbjqie4xldl1el foreign key (product_id) references products;
 
-alter table products_localized_product
-add constraint FKjs8yfvw4we59oaei8c9txb4wy foreign key (localized_product_id) references localized_product;
-
-alter table products_localized_product add constraint
-FK6i2yelx9i3lagm1u7n6v0xnfh foreign key (product_id) references products;
-
 alter table shops_opening_hours
 add constraint FKti43xlm3mfbeodhgi4qn1yhgw foreign key (opening_hours_id) references opening_hours;
 
@@ -0,0 +1,76 @@
+-- Opt-in: hash partitioning of products and products_categories by shop_id (PostgreSQL 15+).
+--
+-- Run once, with the application stopped, after the application has started at least once with this version (it adds
+-- products_categories.shop_id). Afterwards, run the application with spring.jpa.hibernate.ddl-auto=none (or the
+-- startup profile): Hibernate cannot update partitioned tables.
+--
+-- Ids keep coming from products_seq. The primary key of products becomes a unique (id, shop_id) key since the unique
+-- keys of a partitioned table must contain the partition key; ids stay unique through the sequence. The links refer
+-- to (product_id, shop_id), so they follow their product, partition included, when it changes shop.
+
+begin;
+
+drop trigger if exists products_shop_changed on products;
+drop function if exists products_categories_follow_shop();
+
+alter table products rename to products_unpartitioned;
+alter table products_categories rename to products_categories_unpartitioned;
+
+create table products (
+    id int8 not null,
+    price float4 not null,
+    shop_id int8,
+    localized_products jsonb not null default '[]',
+    constraint uk_products_id_shop unique (id, shop_id)
+) partition by hash (shop_id);
+
+create table products_categories (
+    product_id int8 not null,
+    category_id int8 not null,
+    shop_id int8
+) partition by hash (shop_id);
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('create table products_p%s partition of products '
+            || 'for values with (modulus 16, remainder %s)', i, i);
+        execute format('create table products_categories_p%s partition of products_categories '
+            || 'for values with (modulus 16, remainder %s)', i, i);
+    end loop;
+end $$;
+
+insert into products (id, price, shop_id, localized_products)
+select id, price, shop_id, localized_products from products_unpartitioned;
+
+insert into products_categories (product_id, category_id, shop_id)
+select pc.product_id, pc.category_id, p.shop_id
+from products_categories_unpartitioned pc join products_unpartitioned p on p.id = pc.product_id;
+
+drop table products_categories_unpartitioned;
+drop table products_unpartitioned;
+
+create index idx_products_shop_price on products (shop_id, price, id);
+
+create index idx_products_price on products (price, id);
+
+create index idx_products_categories_category on products_categories (category_id, product_id);
+
+create index idx_products_categories_product on products_categories (product_id, category_id);
+
+create index idx_products_categories_shop on products_categories (shop_id, category_id);
+
+alter table products
+add constraint FK7kp8sbhxboponhx3lxqtmkcoj foreign key (shop_id) references shops;
+
+alter table products_categories
+add constraint FKqt6m2o5dly3luqcm00f5t4h2p foreign key (category_id) references categories;
+
+alter table products_categories
+add constraint FKtj1vdea8qwerbjqie4xldl1el foreign key (product_id, shop_id) references products (id, shop_id)
+on update cascade on delete cascade;
+
+commit;
+
+analyze products;
+analyze products_categories;
@@ -3,9 +3,11 @@ package fr.fullstack.shopapp;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @OpenAPIDefinition
 @SpringBootApplication
+@EnableScheduling
 public class ShopAppApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,38 @@
+package fr.fullstack.shopapp.config;
+
+import fr.fullstack.shopapp.dto.CompactPage;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Replaces the Spring Data page of any listing by a {@link CompactPage} when the request has {@code envelope=compact}.
+ */
+@ControllerAdvice
+public class CompactPageAdvice implements ResponseBodyAdvice<Object> {
+  public static final String ENVELOPE_PARAMETER = "envelope";
+
+  public static final String COMPACT_ENVELOPE = "compact";
+
+  @Override
+  public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+    return true;
+  }
+
+  @Override
+  public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+      Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+      ServerHttpResponse response) {
+    if (body instanceof Slice<?> slice && request instanceof ServletServerHttpRequest servletRequest
+        && COMPACT_ENVELOPE.equals(servletRequest.getServletRequest().getParameter(ENVELOPE_PARAMETER))) {
+      return new CompactPage<>(slice);
+    }
+    return body;
+  }
+}
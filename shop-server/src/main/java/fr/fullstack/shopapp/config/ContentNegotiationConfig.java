@@ -0,0 +1,31 @@
+package fr.fullstack.shopapp.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Adds the binary Smile ({@code application/x-jackson-smile}) and CBOR ({@code application/cbor}) encodings to all the
+ * controllers, selected with the {@code Accept} header. JSON stays the default.
+ * <p>
+ * Spring MVC already registers Smile and CBOR converters when their Jackson modules are present, built without the
+ * Spring Boot settings. Declared as beans, these ones take their place in the converters of Spring Boot.
+ */
+@Configuration
+public class ContentNegotiationConfig {
+
+  // The builder is a prototype carrying the Spring Boot customizations, so both mappers behave like the JSON one
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+  }
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+  }
+}
@@ -0,0 +1,37 @@
+package fr.fullstack.shopapp.config;
+
+import java.sql.Connection;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * The read-only transactions of the services start before they know whether the in-memory snapshot answers them, so
+ * the data source hands out lazy connections: the pool connection is only taken at the first statement, with the
+ * read-only flag and the auto-commit mode of the transaction applied then. A request served from memory holds no
+ * connection.
+ */
+@Configuration
+public class DataSourceConfig {
+
+  @Bean
+  public static BeanPostProcessor lazyConnectionDataSourcePostProcessor() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LazyConnectionDataSourceProxy)) {
+          LazyConnectionDataSourceProxy lazyDataSource = new LazyConnectionDataSourceProxy();
+          // Defaults of the pool and PostgreSQL, so that no connection is opened to find them out
+          lazyDataSource.setDefaultAutoCommit(true);
+          lazyDataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+          lazyDataSource.setTargetDataSource(dataSource);
+          lazyDataSource.afterPropertiesSet();
+          return lazyDataSource;
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -0,0 +1,25 @@
+package fr.fullstack.shopapp.config;
+
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fills the category closure table for the categories created before it existed (or inserted by SQL scripts).
+ */
+@Component
+public class MigrationCategoryClosure implements CommandLineRunner {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Override
+    @Transactional
+    public void run(String... args) throws Exception {
+        if (categoryRepository.countMissingClosures() > 0) {
+            categoryRepository.rebuildClosure();
+        }
+    }
+}
@@ -1,23 +1,29 @@
 package fr.fullstack.shopapp.config;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.transaction.Transactional;
-import org.hibernate.search.mapper.orm.Search;
-import org.springframework.boot.CommandLineRunner;
+import fr.fullstack.shopapp.service.CatalogReindexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Rebuilds the search indexes once the application is ready. The mass indexer runs in the background so the port opens
+ * without waiting for it; searches return partial results until it is done.
+ */
 @Component
-public class MigrationElasticSearch implements CommandLineRunner {
+public class MigrationElasticSearch {
+    @Autowired
+    private CatalogReindexService reindexService;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Value("${shop.search.mass-index-on-startup:true}")
+    private boolean massIndexOnStartup;
 
-    @Override
-    @Transactional
-    public void run(String... args) throws Exception {
-        var searchSession = Search.session(entityManager);
-        var indexer = searchSession.massIndexer();
-        indexer.startAndWait();
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        if (!massIndexOnStartup) {
+            return;
+        }
+        reindexService.startMassIndexing();
     }
 }
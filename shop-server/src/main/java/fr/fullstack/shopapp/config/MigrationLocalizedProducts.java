@@ -0,0 +1,42 @@
+package fr.fullstack.shopapp.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the translations of the products from the former localized_product and products_localized_product tables
+ * to the inline localized_products JSONB column, then drops the former tables.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MigrationLocalizedProducts implements CommandLineRunner {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void run(String... args) throws Exception {
+        Object legacyTable = entityManager
+                .createNativeQuery("SELECT CAST(to_regclass('products_localized_product') AS text)")
+                .getSingleResult();
+        if (legacyTable == null) {
+            return;
+        }
+
+        entityManager.createNativeQuery("UPDATE products p SET localized_products = COALESCE(("
+                + "SELECT jsonb_agg(jsonb_strip_nulls(jsonb_build_object('locale', lp.locale, 'name', lp.name, "
+                + "'description', lp.description)) ORDER BY lp.id) "
+                + "FROM products_localized_product plp JOIN localized_product lp ON lp.id = plp.localized_product_id "
+                + "WHERE plp.product_id = p.id), CAST('[]' AS jsonb)) "
+                + "WHERE p.localized_products IS NULL OR p.localized_products = CAST('[]' AS jsonb)")
+                .executeUpdate();
+        entityManager.createNativeQuery("DROP TABLE products_localized_product").executeUpdate();
+        entityManager.createNativeQuery("DROP TABLE localized_product").executeUpdate();
+    }
+}
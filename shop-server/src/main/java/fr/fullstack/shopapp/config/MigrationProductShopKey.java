@@ -0,0 +1,52 @@
+package fr.fullstack.shopapp.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains {@code products_categories.shop_id}, a copy of the shop of the product, so the per-shop queries can filter
+ * the links by shop (and prune the partitions when the tables are partitioned by shop, see
+ * {@code sql/partition_products.sql}).
+ * <p>
+ * The links inserted by Hibernate get the shop from their product (custom SQL insert of {@code Product.categories}).
+ * When a product changes shop, its links follow: through a trigger on unpartitioned tables, through the cascading
+ * foreign key on partitioned ones.
+ */
+@Component
+public class MigrationProductShopKey implements CommandLineRunner {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void run(String... args) throws Exception {
+        Number hasColumn = (Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_name = 'products_categories' AND column_name = 'shop_id'").getSingleResult();
+        if (hasColumn.intValue() == 0) {
+            entityManager.createNativeQuery("ALTER TABLE products_categories ADD COLUMN shop_id int8").executeUpdate();
+            entityManager.createNativeQuery("UPDATE products_categories pc SET shop_id = p.shop_id FROM products p "
+                    + "WHERE p.id = pc.product_id").executeUpdate();
+            entityManager.createNativeQuery("CREATE INDEX IF NOT EXISTS idx_products_categories_shop "
+                    + "ON products_categories (shop_id, category_id)").executeUpdate();
+        }
+
+        Object productsKind = entityManager.createNativeQuery(
+                "SELECT CAST(relkind AS text) FROM pg_class WHERE oid = to_regclass('products')").getSingleResult();
+        if (!"r".equals(productsKind)) {
+            // Partitioned: the foreign key of the links cascades the updates of the shop
+            return;
+        }
+        entityManager.createNativeQuery("CREATE OR REPLACE FUNCTION products_categories_follow_shop() "
+                + "RETURNS trigger AS $$ BEGIN "
+                + "UPDATE products_categories SET shop_id = NEW.shop_id WHERE product_id = NEW.id; "
+                + "RETURN NULL; END $$ LANGUAGE plpgsql").executeUpdate();
+        entityManager.createNativeQuery("DROP TRIGGER IF EXISTS products_shop_changed ON products").executeUpdate();
+        entityManager.createNativeQuery("CREATE TRIGGER products_shop_changed AFTER UPDATE OF shop_id ON products "
+                + "FOR EACH ROW WHEN (OLD.shop_id IS DISTINCT FROM NEW.shop_id) "
+                + "EXECUTE FUNCTION products_categories_follow_shop()").executeUpdate();
+    }
+}
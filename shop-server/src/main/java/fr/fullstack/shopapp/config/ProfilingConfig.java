@@ -0,0 +1,20 @@
+package fr.fullstack.shopapp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.fullstack.shopapp.profiling.ProfiledJsonHttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Replaces the JSON converter of Spring Boot by one reporting the serialization of the responses to the flight
+ * recordings started with {@link fr.fullstack.shopapp.service.ProfilingService}.
+ */
+@Configuration
+public class ProfilingConfig {
+
+  @Bean
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+    return new ProfiledJsonHttpMessageConverter(objectMapper);
+  }
+}
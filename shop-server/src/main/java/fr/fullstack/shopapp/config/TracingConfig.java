@@ -0,0 +1,28 @@
+package fr.fullstack.shopapp.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+/**
+ * Tracing of the requests: the HTTP server spans come from Spring MVC, the JDBC ones from datasource-micrometer
+ * (prepared statement text, without the parameter values), and this configuration adds a span for each method of
+ * the services annotated with {@code @Observed}. The spans are kept in memory by
+ * {@link fr.fullstack.shopapp.service.TraceStore}, sampled with {@code management.tracing.sampling.probability}.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean
+  public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+    return new ObservedAspect(observationRegistry);
+  }
+
+  // Applied by Spring Boot to its task executors, so the tasks they run continue the trace of their caller
+  @Bean
+  public ContextPropagatingTaskDecorator contextPropagatingTaskDecorator() {
+    return new ContextPropagatingTaskDecorator();
+  }
+}
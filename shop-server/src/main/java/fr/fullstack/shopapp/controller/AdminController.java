@@ -0,0 +1,223 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.dto.SlowQuery;
+import fr.fullstack.shopapp.dto.SnapshotStatus;
+import fr.fullstack.shopapp.dto.TraceSpan;
+import fr.fullstack.shopapp.service.CatalogReindexService;
+import fr.fullstack.shopapp.service.CatalogSnapshotService;
+import fr.fullstack.shopapp.service.ProductMembershipIndex;
+import fr.fullstack.shopapp.service.ProfilingService;
+import fr.fullstack.shopapp.service.ResponseCache;
+import fr.fullstack.shopapp.service.SlowQueryLog;
+import fr.fullstack.shopapp.service.StockService;
+import fr.fullstack.shopapp.service.TraceStore;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+  @Autowired
+  private ProductMembershipIndex membershipIndex;
+
+  @Autowired
+  private ProfilingService profilingService;
+
+  @Autowired
+  private CatalogReindexService reindexService;
+
+  @Autowired
+  private ResponseCache responseCache;
+
+  @Autowired
+  private SlowQueryLog slowQueryLog;
+
+  @Autowired
+  private StockService stockService;
+
+  @Autowired
+  private CatalogSnapshotService snapshotService;
+
+  @Autowired
+  private TraceStore traceStore;
+
+  @Operation(description = "Get the state of the product bitmaps of the shops and categories (size, last build)")
+  @GetMapping("/bitmaps")
+  public ResponseEntity<Map<String, Object>> getBitmapsStatus() {
+    return ResponseEntity.ok(membershipIndex.getStatus());
+  }
+
+  @Operation(description = "Rebuild the product bitmaps of the shops and categories from the database")
+  @PostMapping("/bitmaps/rebuild")
+  public ResponseEntity<Map<String, Object>> rebuildBitmaps() {
+    membershipIndex.rebuild();
+    return ResponseEntity.ok(membershipIndex.getStatus());
+  }
+
+  @Operation(description = "Get the state of the last flight recording and the available profiles")
+  @GetMapping("/profiling")
+  public ResponseEntity<Map<String, Object>> getProfilingStatus() {
+    try {
+      return ResponseEntity.ok(profilingService.getStatus());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Download the file of the last flight recording, once stopped")
+  @GetMapping("/profiling/recording")
+  public ResponseEntity<Resource> getProfilingRecording() {
+    try {
+      return ResponseEntity.ok()
+          .contentType(MediaType.APPLICATION_OCTET_STREAM)
+          .header(HttpHeaders.CONTENT_DISPOSITION,
+              ContentDisposition.attachment().filename("shop-app.jfr").build().toString())
+          .body(new FileSystemResource(profilingService.getRecordingFile()));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Start a flight recording with the given profile (default or profile), stopped after "
+      + "durationSeconds or on demand")
+  @PostMapping("/profiling/start")
+  public ResponseEntity<Map<String, Object>> startProfiling(
+      @RequestParam(defaultValue = "profile") String profile,
+      @RequestParam Optional<Long> durationSeconds
+  ) {
+    try {
+      return ResponseEntity.ok(profilingService.start(profile, durationSeconds));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Stop the running flight recording, its file can then be downloaded")
+  @PostMapping("/profiling/stop")
+  public ResponseEntity<Map<String, Object>> stopProfiling() {
+    try {
+      return ResponseEntity.ok(profilingService.stop());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Forget the slow SQL statements kept in memory")
+  @DeleteMapping("/slow-queries")
+  public HttpStatus clearSlowQueries() {
+    slowQueryLog.clear();
+    return HttpStatus.NO_CONTENT;
+  }
+
+  @Operation(description = "Get the last SQL statements slower than the threshold, the most recent first, with their "
+      + "parameters (masked unless shop.slow-queries.show-parameters), the repository method that ran them and the "
+      + "EXPLAIN (ANALYZE, BUFFERS) plan of the SELECTs (only without parameters while they are masked)")
+  @GetMapping("/slow-queries")
+  public ResponseEntity<List<SlowQuery>> getSlowQueries(
+      @RequestParam Optional<Long> minElapsedMs,
+      @RequestParam(defaultValue = "50") int limit
+  ) {
+    return ResponseEntity.ok(slowQueryLog.getSlowQueries(minElapsedMs, limit));
+  }
+
+  @Operation(description = "Get the state of the rebuild of the search indexes")
+  @GetMapping("/reindex")
+  public ResponseEntity<Map<String, Object>> getReindexStatus() {
+    return ResponseEntity.ok(reindexService.getStatus());
+  }
+
+  @Operation(description = "Rebuild what is derived from the catalog after a bulk load (statistics, bitmaps, snapshot, "
+      + "suggestions, counts) and start rebuilding the search indexes in the background")
+  @PostMapping("/reindex")
+  public ResponseEntity<Map<String, Object>> reindex() {
+    try {
+      return ResponseEntity.ok(reindexService.reindex());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Drop all the serialized responses kept in memory")
+  @DeleteMapping("/response-cache")
+  public HttpStatus clearResponseCache() {
+    responseCache.invalidateAll();
+    return HttpStatus.NO_CONTENT;
+  }
+
+  @Operation(description = "Get the state of the serialized responses cache (entries, bytes used out of the budget, "
+      + "hits, misses, evictions)")
+  @GetMapping("/response-cache")
+  public ResponseEntity<Map<String, Object>> getResponseCacheStatus() {
+    return ResponseEntity.ok(responseCache.getStatus());
+  }
+
+  @Operation(description = "Get the state of the stock counters and of the reservation log (groups committed, last "
+      + "reconciliation, counters differing from the log)")
+  @GetMapping("/stock")
+  public ResponseEntity<Map<String, Object>> getStockStatus() {
+    return ResponseEntity.ok(stockService.getStatus());
+  }
+
+  @Operation(description = "Settle the confirmed reservations and reconcile the stock counters with the database now")
+  @PostMapping("/stock/reconcile")
+  public ResponseEntity<Map<String, Object>> reconcileStock() {
+    stockService.reconcile();
+    return ResponseEntity.ok(stockService.getStatus());
+  }
+
+  @Operation(description = "Get the state of the in-memory catalog snapshot, the result of its last consistency "
+      + "check and its estimated memory footprint (total and per million products)")
+  @GetMapping("/snapshot")
+  public ResponseEntity<SnapshotStatus> getSnapshotStatus() {
+    return ResponseEntity.ok(snapshotService.getStatus());
+  }
+
+  @Operation(description = "Reload the in-memory catalog snapshot from the database")
+  @PostMapping("/snapshot/reload")
+  public ResponseEntity<SnapshotStatus> reloadSnapshot() {
+    if (!snapshotService.getStatus().getEnabled()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The catalog snapshot is not enabled");
+    }
+    return ResponseEntity.ok(snapshotService.reload());
+  }
+
+  @Operation(description = "Get the most recent sampled traces still in memory (their root span), optionally only "
+      + "the ones that lasted at least minDurationMs milliseconds")
+  @GetMapping("/traces")
+  public ResponseEntity<List<TraceSpan>> getRecentTraces(
+      @RequestParam(defaultValue = "0") long minDurationMs,
+      @RequestParam(defaultValue = "50") int limit
+  ) {
+    return ResponseEntity.ok(traceStore.getRecentTraces(minDurationMs, limit));
+  }
+
+  @Operation(description = "Get the spans of a sampled trace still in memory, in the order they started")
+  @GetMapping("/traces/{traceId}")
+  public ResponseEntity<List<TraceSpan>> getTrace(@PathVariable String traceId) {
+    try {
+      return ResponseEntity.ok(traceStore.getTrace(traceId));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.dto.BatchResult;
 import fr.fullstack.shopapp.model.Category;
 import fr.fullstack.shopapp.service.CategoryService;
 import fr.fullstack.shopapp.util.ErrorValidation;
@@ -8,8 +9,8 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
@@ -20,9 +21,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/api/v1/categories")
 public class CategoryController {
@@ -46,7 +51,7 @@ public class CategoryController {
     }
   }
 
-  @Operation(description = "Delete a category by its id")
+  @Operation(description = "Delete a category and all its subcategories by its id")
   @DeleteMapping("/{id}")
   public HttpStatus deleteCategory(@PathVariable long id) {
     try {
@@ -66,8 +71,17 @@ public class CategoryController {
       @Parameter(name = "size",
           description = "Number of records per page", example = "5"),
   })
-  public ResponseEntity<Page<Category>> getAllCategories(@Parameter(hidden = true) Pageable pageable) {
-    return ResponseEntity.ok(service.getCategoryList(pageable));
+  public ResponseEntity<Slice<Category>> getAllCategories(
+      @Parameter(hidden = true) Pageable pageable,
+      @Parameter(description = "How the total is computed: 'exact' (COUNT query), 'estimated' (approximate, "
+          + "cheap) or 'slice' (no total, only whether a next page exists)", example = "slice")
+      @RequestParam(required = false) Optional<String> pagination
+  ) {
+    try {
+      return ResponseEntity.ok(service.getCategoryList(pagination, pageable));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
   }
 
   @Operation(description = "Get a category by id")
@@ -80,6 +94,49 @@ public class CategoryController {
     }
   }
 
+  @Operation(description = "Get the direct subcategories of a category")
+  @GetMapping("/{id}/children")
+  public ResponseEntity<List<Category>> getCategoryChildren(@PathVariable long id) {
+    try {
+      return ResponseEntity.ok().body(service.getCategoryChildren(id));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get all the subcategories of a category, whatever their depth")
+  @GetMapping("/{id}/descendants")
+  public ResponseEntity<List<Category>> getCategoryDescendants(@PathVariable long id) {
+    try {
+      return ResponseEntity.ok().body(service.getCategoryDescendants(id));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get several categories by their ids in a single call")
+  @GetMapping("/batch")
+  public ResponseEntity<BatchResult<Category>> getCategoriesByIds(
+      @Parameter(description = "Ids of the categories, in the order they must be returned", example = "1,2,3")
+      @RequestParam List<Long> ids
+  ) {
+    try {
+      return ResponseEntity.ok().body(service.getCategoriesByIds(ids));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get several categories by their ids in a single call (ids given in the body)")
+  @PostMapping("/batch")
+  public ResponseEntity<BatchResult<Category>> getCategoriesByIdsInBody(@RequestBody List<Long> ids) {
+    try {
+      return ResponseEntity.ok().body(service.getCategoriesByIds(ids));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
   @Operation(description = "Update a category")
   @PutMapping
   public ResponseEntity<Category> updateCategory(@Valid @RequestBody Category category,
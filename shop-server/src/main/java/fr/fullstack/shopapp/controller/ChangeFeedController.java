@@ -0,0 +1,41 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.service.ChangeFeedService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/v1/changes")
+public class ChangeFeedController {
+
+  @Autowired
+  private ChangeFeedService service;
+
+  @Operation(description = "Stream the creations, updates and deletions of shops, products and categories "
+      + "(server-sent events named 'change', whose id is the sequence number of the change). A 'reset' event means "
+      + "the missed changes are no longer available and the lists must be reloaded.")
+  @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamChanges(
+      @Parameter(description = "Sequence number of the last change received, to resume after it", example = "42")
+      @RequestParam(required = false) Optional<Long> since,
+      @Parameter(hidden = true) @RequestHeader(value = "Last-Event-ID", required = false) Optional<Long> lastEventId
+  ) {
+    try {
+      // The browsers send Last-Event-ID when they reconnect, it is more recent than the since of the URL
+      return service.subscribe(lastEventId.or(() -> since));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
@@ -1,15 +1,23 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.dto.CursorPage;
+import fr.fullstack.shopapp.dto.FacetedResult;
+import fr.fullstack.shopapp.dto.IngestTicket;
+import fr.fullstack.shopapp.dto.ProductUpdate;
 import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.service.ProductIngestService;
 import fr.fullstack.shopapp.service.ProductService;
 import fr.fullstack.shopapp.util.ErrorValidation;
+import fr.fullstack.shopapp.util.LocaleNegotiation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
@@ -19,11 +27,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -33,6 +43,9 @@ public class ProductController {
   @Autowired
   private ProductService service;
 
+  @Autowired
+  private ProductIngestService ingestService;
+
   @Operation(description = "Create a product")
   @PostMapping
   public ResponseEntity<Product> createProduct(@Valid @RequestBody Product product, Errors errors) {
@@ -61,15 +74,64 @@ public class ProductController {
 
   @Operation(description = "Get a product by id")
   @GetMapping("/{id}")
-  public ResponseEntity<Product> getProductById(@PathVariable long id) {
+  public ResponseEntity<Product> getProductById(
+      @PathVariable long id,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage
+  ) {
     try {
-      return ResponseEntity.ok().body(service.getProductById(id));
+      Product product = service.getProductById(id);
+      LocaleNegotiation.apply(List.of(product), LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok().body(product);
     } catch (Exception e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
     }
   }
 
-  @Operation(description = "Get products (filtering by shop and category is possible)")
+  @Operation(description = "Get several products by their ids in a single call")
+  @GetMapping("/batch")
+  public ResponseEntity<BatchResult<Product>> getProductsByIds(
+      @Parameter(description = "Ids of the products, in the order they must be returned", example = "1,2,3")
+      @RequestParam List<Long> ids,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage
+  ) {
+    try {
+      BatchResult<Product> products = service.getProductsByIds(ids);
+      LocaleNegotiation.apply(products.getItems(), LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok().body(products);
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get several products by their ids in a single call (ids given in the body)")
+  @PostMapping("/batch")
+  public ResponseEntity<BatchResult<Product>> getProductsByIdsInBody(
+      @RequestBody List<Long> ids,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage
+  ) {
+    try {
+      BatchResult<Product> products = service.getProductsByIds(ids);
+      LocaleNegotiation.apply(products.getItems(), LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok().body(products);
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get products (filtering by shop, by one or several categories and by price, and "
+      + "sorting by price are possible)")
   @GetMapping
   @Parameters({
       @Parameter(name = "page",
@@ -78,15 +140,140 @@ public class ProductController {
       @Parameter(name = "size",
           description = "Number of records per page", example = "5"),
   })
-  public ResponseEntity<Page<Product>> getProductsOfShop(
+  public ResponseEntity<Slice<Product>> getProductsOfShop(
       @Parameter(hidden = true) Pageable pageable,
       @Parameter(description = "Id of the shop", example = "1") @RequestParam(required = false) Optional<Long> shopId,
-      @Parameter(description = "Id of the category", example = "1") @RequestParam(required = false)
-      Optional<Long> categoryId
+      @Parameter(description = "Id of the category (its subcategories are included)", example = "1")
+      @RequestParam(required = false) Optional<Long> categoryId,
+      @Parameter(description = "Ids of several categories (their subcategories are included), combined according "
+          + "to categoryMatch. categoryId is added to them.", example = "1,2")
+      @RequestParam(required = false) Optional<List<Long>> categoryIds,
+      @Parameter(description = "Whether the products must be in 'all' the categories of categoryIds or in 'any' "
+          + "of them", example = "all")
+      @RequestParam(required = false) Optional<String> categoryMatch,
+      @Parameter(description = "Minimum price (included)", example = "10") @RequestParam(required = false)
+      Optional<Float> minPrice,
+      @Parameter(description = "Maximum price (included)", example = "50") @RequestParam(required = false)
+      Optional<Float> maxPrice,
+      @Parameter(description = "To sort the products. Possible values are 'id' and 'price', ties are broken by id",
+          example = "price")
+      @RequestParam(required = false) Optional<String> sortBy,
+      @Parameter(description = "Direction of the sort, 'asc' or 'desc'", example = "desc")
+      @RequestParam(required = false) Optional<String> direction,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage,
+      @Parameter(description = "How the total is computed: 'exact' (COUNT query), 'estimated' (approximate, "
+          + "cheap) or 'slice' (no total, only whether a next page exists)", example = "slice")
+      @RequestParam(required = false) Optional<String> pagination
+  ) {
+    try {
+      Slice<Product> products = service.getShopProductList(shopId, categoryId, categoryIds.orElse(List.of()),
+          categoryMatch, minPrice, maxPrice, sortBy, direction, pagination, pageable);
+      LocaleNegotiation.apply(products, LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok(products);
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get products page after page with a cursor (keyset pagination), which stays fast on "
+      + "deep pages. Filtering by shop, category and price, and sorting by price are possible.")
+  @GetMapping("/scroll")
+  public ResponseEntity<CursorPage<Product>> scrollProducts(
+      @Parameter(description = "Cursor returned by the previous page (nextCursor), none for the first page")
+      @RequestParam(required = false) Optional<String> cursor,
+      @Parameter(description = "Number of records per page", example = "20")
+      @RequestParam(defaultValue = "20") int size,
+      @Parameter(description = "Id of the shop", example = "1") @RequestParam(required = false) Optional<Long> shopId,
+      @Parameter(description = "Id of the category (its subcategories are included)", example = "1")
+      @RequestParam(required = false) Optional<Long> categoryId,
+      @Parameter(description = "Minimum price (included)", example = "10") @RequestParam(required = false)
+      Optional<Float> minPrice,
+      @Parameter(description = "Maximum price (included)", example = "50") @RequestParam(required = false)
+      Optional<Float> maxPrice,
+      @Parameter(description = "To sort the products. Possible values are 'id' and 'price', ties are broken by id",
+          example = "price")
+      @RequestParam(required = false) Optional<String> sortBy,
+      @Parameter(description = "Direction of the sort, 'asc' or 'desc'", example = "desc")
+      @RequestParam(required = false) Optional<String> direction,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage
   ) {
-    return ResponseEntity.ok(
-        service.getShopProductList(shopId, categoryId, pageable)
-    );
+    try {
+      CursorPage<Product> products =
+          service.scrollProducts(shopId, categoryId, minPrice, maxPrice, sortBy, direction, cursor, size);
+      LocaleNegotiation.apply(products.getContent(), LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok(products);
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Search for products and count them per category and price bucket. "
+      + "The selected facets are applied as filters.")
+  @GetMapping("/facets")
+  @Parameters({
+      @Parameter(name = "page",
+          description = "Results page you want to retrieve (0..N)",
+          example = "0"),
+      @Parameter(name = "size",
+          description = "Number of records per page", example = "5"),
+  })
+  public ResponseEntity<FacetedResult<Product>> searchProductFacets(
+      @Parameter(hidden = true) Pageable pageable,
+      @Parameter(description = "Terms searched in the names of the products", example = "Produit")
+      @RequestParam(required = false) Optional<String> query,
+      @Parameter(description = "Id of the shop", example = "1") @RequestParam(required = false) Optional<Long> shopId,
+      @Parameter(description = "Id of the category (its subcategories are included)", example = "1")
+      @RequestParam(required = false) Optional<Long> categoryId,
+      @Parameter(description = "Minimum price (included)", example = "10") @RequestParam(required = false)
+      Optional<Float> minPrice,
+      @Parameter(description = "Maximum price (included)", example = "50") @RequestParam(required = false)
+      Optional<Float> maxPrice,
+      @Parameter(description = "Only return the translation in this locale (FR, EN, or auto to negotiate it from "
+          + "the Accept-Language header), falling back to FR", example = "EN")
+      @RequestParam(required = false) Optional<String> locale,
+      @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+      String acceptLanguage
+  ) {
+    try {
+      FacetedResult<Product> result =
+          service.searchProductFacets(query, shopId, categoryId, minPrice, maxPrice, pageable);
+      LocaleNegotiation.apply(result.getHits(), LocaleNegotiation.resolve(locale, acceptLanguage));
+      return ResponseEntity.ok(result);
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Queue updates of products (price, translations) to be committed asynchronously in groups. "
+      + "The updates of a same product are merged, the latest one winning. The invalid updates are listed in the "
+      + "rejections of the returned ticket, poll it for the commit status of the others.")
+  @PostMapping("/ingest")
+  public ResponseEntity<IngestTicket> ingestProductUpdates(@RequestBody List<ProductUpdate> updates) {
+    try {
+      return ResponseEntity.accepted().body(ingestService.submit(updates));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get the commit status of queued product updates")
+  @GetMapping("/ingest/{ticketId}")
+  public ResponseEntity<IngestTicket> getIngestTicket(@PathVariable String ticketId) {
+    try {
+      return ResponseEntity.ok(ingestService.getTicket(ticketId));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
   }
 
   @Operation(description = "Update a product")
@@ -1,18 +1,25 @@
 package fr.fullstack.shopapp.controller;
 
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.dto.FacetedResult;
+import fr.fullstack.shopapp.dto.NearbyShop;
+import fr.fullstack.shopapp.dto.ShopSuggestion;
 import fr.fullstack.shopapp.model.Shop;
 import fr.fullstack.shopapp.service.ShopService;
+import fr.fullstack.shopapp.service.ShopSuggestionService;
 import fr.fullstack.shopapp.util.ErrorValidation;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
 import jakarta.validation.Valid;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
@@ -35,6 +42,9 @@ public class ShopController {
   @Autowired
   private ShopService service;
 
+  @Autowired
+  private ShopSuggestionService suggestionService;
+
   @Operation(description = "Create a shop")
   @PostMapping
   public ResponseEntity<Shop> createShop(@Valid @RequestBody Shop shop, Errors errors) {
@@ -70,7 +80,7 @@ public class ShopController {
       @Parameter(name = "size",
           description = "Number of records per page", example = "5"),
   })
-  public ResponseEntity<Page<Shop>> getAllShops(
+  public ResponseEntity<Slice<Shop>> getAllShops(
       @Parameter(hidden = true) Pageable pageable,
       @Parameter(description = "To sort the shops. Possible values are 'name', 'nbProducts' and 'createdAt'",
           example = "name")
@@ -82,12 +92,18 @@ public class ShopController {
       @Parameter(description = "Define that the shops must be created before this date", example = "2022-11-15")
       @RequestParam(required = false) Optional<String> createdBefore,
       @Parameter(description = "Termes de recherche", example = "Boutique du Madrillet")
-      @RequestParam(required = false) Optional<String> search
-
+      @RequestParam(required = false) Optional<String> search,
+      @Parameter(description = "How the total is computed: 'exact' (COUNT query), 'estimated' (approximate, "
+          + "cheap) or 'slice' (no total, only whether a next page exists)", example = "slice")
+      @RequestParam(required = false) Optional<String> pagination
   ) {
-    return ResponseEntity.ok(
-        service.getShopList(sortBy, inVacations, createdAfter, createdBefore, search, pageable)
-    );
+    try {
+      return ResponseEntity.ok(
+          service.getShopList(sortBy, inVacations, createdAfter, createdBefore, search, pagination, pageable)
+      );
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
   }
 
   @GetMapping("/search")
@@ -99,6 +115,75 @@ public class ShopController {
     return ResponseEntity.ok(shops);
   }
 
+  @GetMapping("/facets")
+  @Operation(description = "Search for shops and count them per vacation status and creation year. "
+      + "The selected facets are applied as filters.")
+  @Parameters({
+      @Parameter(name = "page",
+          description = "Results page you want to retrieve (0..N)",
+          example = "0"),
+      @Parameter(name = "size",
+          description = "Number of records per page", example = "5"),
+  })
+  public ResponseEntity<FacetedResult<Shop>> searchShopFacets(
+      @Parameter(hidden = true) Pageable pageable,
+      @Parameter(description = "Termes de recherche", example = "Boutique du Madrillet")
+      @RequestParam(required = false) Optional<String> query,
+      @Parameter(description = "Define that the shops must be in vacations or not", example = "true")
+      @RequestParam(required = false) Optional<Boolean> inVacations,
+      @Parameter(description = "Define that the shops must be created after this date", example = "2022-11-15")
+      @RequestParam(required = false) Optional<LocalDate> createdAfter,
+      @Parameter(description = "Define that the shops must be created before this date", example = "2022-11-15")
+      @RequestParam(required = false) Optional<LocalDate> createdBefore
+  ) {
+    return ResponseEntity.ok(
+        service.searchShopFacets(query, inVacations, createdAfter, createdBefore, pageable)
+    );
+  }
+
+  @GetMapping("/autocomplete")
+  @Operation(description = "Suggest shop names starting with the given prefix (typos are tolerated), "
+      + "the shops with the most products first.")
+  public ResponseEntity<List<ShopSuggestion>> suggestShops(
+      @Parameter(description = "Beginning of a word of the name of the shop", example = "madr")
+      @RequestParam String prefix,
+      @Parameter(description = "Maximum number of suggestions", example = "10")
+      @RequestParam(defaultValue = "10") int limit
+  ) {
+    try {
+      return ResponseEntity.ok(suggestionService.suggest(prefix, limit));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @GetMapping("/nearby")
+  @Operation(description = "Get the located shops closest to a point, the nearest first, within a radius "
+      + "or the k nearest ones.")
+  public ResponseEntity<List<NearbyShop>> getNearbyShops(
+      @Parameter(description = "Latitude of the point, in degrees", example = "49.3833")
+      @RequestParam double latitude,
+      @Parameter(description = "Longitude of the point, in degrees", example = "1.0667")
+      @RequestParam double longitude,
+      @Parameter(description = "Keep the shops within this distance, in kilometers", example = "5")
+      @RequestParam(required = false) Optional<Double> radiusKm,
+      @Parameter(description = "Maximum number of shops (k)", example = "10")
+      @RequestParam(defaultValue = "10") int limit,
+      @Parameter(description = "Define that the shops must be in vacations or not", example = "false")
+      @RequestParam(required = false) Optional<Boolean> inVacations,
+      @Parameter(description = "Keep the shops open at this day and time", example = "2024-05-02T10:30:00")
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+      Optional<LocalDateTime> openAt
+  ) {
+    try {
+      return ResponseEntity.ok(
+          service.getNearbyShops(latitude, longitude, radiusKm, limit, inVacations, openAt)
+      );
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
   @Operation(description = "Get a shop by id")
   @GetMapping("/{id}")
   public ResponseEntity<Shop> getShopById(@PathVariable long id) {
@@ -109,6 +194,29 @@ public class ShopController {
     }
   }
 
+  @Operation(description = "Get several shops by their ids in a single call")
+  @GetMapping("/batch")
+  public ResponseEntity<BatchResult<Shop>> getShopsByIds(
+      @Parameter(description = "Ids of the shops, in the order they must be returned", example = "1,2,3")
+      @RequestParam List<Long> ids
+  ) {
+    try {
+      return ResponseEntity.ok().body(service.getShopsByIds(ids));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get several shops by their ids in a single call (ids given in the body)")
+  @PostMapping("/batch")
+  public ResponseEntity<BatchResult<Shop>> getShopsByIdsInBody(@RequestBody List<Long> ids) {
+    try {
+      return ResponseEntity.ok().body(service.getShopsByIds(ids));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
   @Operation(description = "Update a shop")
   @PutMapping
   public ResponseEntity<Shop> updateShop(@Valid @RequestBody Shop shop, Errors errors) {
@@ -0,0 +1,38 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.dto.CatalogStatistics;
+import fr.fullstack.shopapp.model.ShopStatistics;
+import fr.fullstack.shopapp.service.StatisticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/v1/statistics")
+public class StatisticsController {
+
+  @Autowired
+  private StatisticsService service;
+
+  @Operation(description = "Get the statistics of the whole catalog")
+  @GetMapping
+  public ResponseEntity<CatalogStatistics> getCatalogStatistics() {
+    return ResponseEntity.ok(service.getCatalogStatistics());
+  }
+
+  @Operation(description = "Get the statistics of a shop (products per category, prices, translations)")
+  @GetMapping("/shops/{id}")
+  public ResponseEntity<ShopStatistics> getShopStatistics(@PathVariable long id) {
+    try {
+      return ResponseEntity.ok().body(service.getShopStatistics(id));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
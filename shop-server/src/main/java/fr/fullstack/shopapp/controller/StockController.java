@@ -0,0 +1,108 @@
+package fr.fullstack.shopapp.controller;
+
+import fr.fullstack.shopapp.dto.StockLevel;
+import fr.fullstack.shopapp.model.StockReservation;
+import fr.fullstack.shopapp.service.StockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/v1/stock")
+public class StockController {
+
+  @Autowired
+  private StockService service;
+
+  @Operation(description = "Get the stock of a product: units in stock, units left to reserve, reservations being "
+      + "committed")
+  @GetMapping("/{productId}")
+  public ResponseEntity<StockLevel> getStockLevel(@PathVariable long productId) {
+    try {
+      return ResponseEntity.ok(service.getStockLevel(productId));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Add units to the stock of a product, or remove units that are not reserved")
+  @PostMapping("/{productId}/restock")
+  public ResponseEntity<StockLevel> restock(
+      @PathVariable long productId,
+      @Parameter(description = "Units to add, negative to remove units", example = "100")
+      @RequestParam long units
+  ) {
+    try {
+      return ResponseEntity.ok(service.restock(productId, units));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Reserve units of a product until the reservation is confirmed, released or expires. "
+      + "Answered once the reservation is committed.")
+  @PostMapping("/{productId}/reservations")
+  public ResponseEntity<StockReservation> reserve(
+      @PathVariable long productId,
+      @Parameter(description = "Units to reserve", example = "1")
+      @RequestParam(defaultValue = "1") int quantity,
+      @Parameter(description = "Lifetime of the reservation if it is not confirmed, in seconds", example = "600")
+      @RequestParam(required = false) Optional<Long> ttlSeconds
+  ) {
+    try {
+      return ResponseEntity.ok(service.reserve(productId, quantity, ttlSeconds));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Get a reservation by id")
+  @GetMapping("/reservations/{id}")
+  public ResponseEntity<StockReservation> getReservation(@PathVariable String id) {
+    try {
+      return ResponseEntity.ok(service.getReservation(id));
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Confirm a reservation before it expires, its units are sold")
+  @PostMapping("/reservations/{id}/confirm")
+  public ResponseEntity<StockReservation> confirm(@PathVariable String id) {
+    try {
+      return ResponseEntity.ok(service.confirm(id));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  @Operation(description = "Release a reservation that is not confirmed, its units go back to the stock")
+  @PostMapping("/reservations/{id}/release")
+  public ResponseEntity<StockReservation> release(@PathVariable String id) {
+    try {
+      return ResponseEntity.ok(service.release(id));
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    } catch (Exception e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+}
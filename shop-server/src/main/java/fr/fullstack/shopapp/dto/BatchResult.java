@@ -0,0 +1,22 @@
+package fr.fullstack.shopapp.dto;
+
+import java.util.List;
+
+public class BatchResult<T> {
+    private final List<T> items;
+
+    private final List<Long> missingIds;
+
+    public BatchResult(List<T> items, List<Long> missingIds) {
+        this.items = items;
+        this.missingIds = missingIds;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+}
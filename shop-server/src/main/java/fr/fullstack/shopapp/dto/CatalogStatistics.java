@@ -0,0 +1,77 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogStatistics {
+    private List<CategoryStatistics> categories = new ArrayList<CategoryStatistics>();
+
+    private final Double maxPrice;
+
+    private final Double minPrice;
+
+    private final long nbLocalizedEn;
+
+    private final long nbLocalizedFr;
+
+    private final long nbProducts;
+
+    private final long nbShops;
+
+    private final LocalDateTime oldestRefresh;
+
+    private final double sumPrice;
+
+    public CatalogStatistics(Long nbShops, Long nbProducts, Double minPrice, Double maxPrice, Double sumPrice,
+                             Long nbLocalizedFr, Long nbLocalizedEn, LocalDateTime oldestRefresh) {
+        this.nbShops = nbShops == null ? 0 : nbShops;
+        this.nbProducts = nbProducts == null ? 0 : nbProducts;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sumPrice = sumPrice == null ? 0 : sumPrice;
+        this.nbLocalizedFr = nbLocalizedFr == null ? 0 : nbLocalizedFr;
+        this.nbLocalizedEn = nbLocalizedEn == null ? 0 : nbLocalizedEn;
+        this.oldestRefresh = oldestRefresh;
+    }
+
+    public Double getAvgPrice() {
+        return nbProducts == 0 ? null : sumPrice / nbProducts;
+    }
+
+    public List<CategoryStatistics> getCategories() {
+        return categories;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public long getNbLocalizedEn() {
+        return nbLocalizedEn;
+    }
+
+    public long getNbLocalizedFr() {
+        return nbLocalizedFr;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+
+    public long getNbShops() {
+        return nbShops;
+    }
+
+    public LocalDateTime getOldestRefresh() {
+        return oldestRefresh;
+    }
+
+    public void setCategories(List<CategoryStatistics> categories) {
+        this.categories = categories;
+    }
+}
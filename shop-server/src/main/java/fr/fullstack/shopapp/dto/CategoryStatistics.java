@@ -0,0 +1,49 @@
+package fr.fullstack.shopapp.dto;
+
+public class CategoryStatistics {
+    private final long categoryId;
+
+    private final String categoryName;
+
+    private final Double maxPrice;
+
+    private final Double minPrice;
+
+    private final long nbProducts;
+
+    private final double sumPrice;
+
+    public CategoryStatistics(Long categoryId, String categoryName, Long nbProducts, Double minPrice,
+                              Double maxPrice, Double sumPrice) {
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.nbProducts = nbProducts == null ? 0 : nbProducts;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sumPrice = sumPrice == null ? 0 : sumPrice;
+    }
+
+    public Double getAvgPrice() {
+        return nbProducts == 0 ? null : sumPrice / nbProducts;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+}
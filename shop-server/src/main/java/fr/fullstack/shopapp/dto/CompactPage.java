@@ -0,0 +1,51 @@
+package fr.fullstack.shopapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * Page envelope without the pageable and sort metadata of Spring Data.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactPage<T> {
+    private final List<T> content;
+
+    private final boolean hasNext;
+
+    private final int page;
+
+    private final int size;
+
+    private final Long totalElements;
+
+    public CompactPage(Slice<T> slice) {
+        this.content = slice.getContent();
+        this.page = slice.getNumber();
+        this.size = slice.getSize();
+        this.hasNext = slice.hasNext();
+        this.totalElements = slice instanceof Page<T> page ? page.getTotalElements() : null;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public boolean getHasNext() {
+        return hasNext;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+}
@@ -0,0 +1,26 @@
+package fr.fullstack.shopapp.dto;
+
+import java.util.List;
+
+/**
+ * Page of a keyset (cursor) pagination: the next page is requested with {@code nextCursor}, which is null on the last
+ * page.
+ */
+public class CursorPage<T> {
+    private final List<T> content;
+
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,30 @@
+package fr.fullstack.shopapp.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetedResult<T> {
+    private final Map<String, Map<String, Long>> facets;
+
+    private final List<T> hits;
+
+    private final long totalHits;
+
+    public FacetedResult(List<T> hits, long totalHits, Map<String, Map<String, Long>> facets) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.facets = facets;
+    }
+
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    public List<T> getHits() {
+        return hits;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+}
@@ -0,0 +1,87 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Commit status of a batch of product updates accepted by the ingestion pipeline.
+ */
+public class IngestTicket {
+    public enum Status {
+        PENDING, COMMITTED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Instant acceptedAt = Instant.now();
+
+    private final List<Long> missingIds = new ArrayList<>();
+
+    // Invalid updates, not queued
+    private final List<String> rejections;
+
+    private final int submitted;
+
+    private Instant completedAt;
+
+    private String error;
+
+    private int remaining;
+
+    private Status status = Status.PENDING;
+
+    public IngestTicket(int submitted, List<String> rejections) {
+        this.submitted = submitted;
+        this.rejections = List.copyOf(rejections);
+        this.remaining = submitted;
+    }
+
+    public synchronized void complete(int count, List<Long> missing, String failure) {
+        missingIds.addAll(missing);
+        if (failure != null) {
+            error = failure;
+            status = Status.FAILED;
+        }
+        remaining -= count;
+        if (remaining <= 0) {
+            completedAt = Instant.now();
+            if (status == Status.PENDING) {
+                status = Status.COMMITTED;
+            }
+        }
+    }
+
+    public Instant getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    public synchronized Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public synchronized List<Long> getMissingIds() {
+        return new ArrayList<>(missingIds);
+    }
+
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public int getSubmitted() {
+        return submitted;
+    }
+}
@@ -0,0 +1,22 @@
+package fr.fullstack.shopapp.dto;
+
+import fr.fullstack.shopapp.model.Shop;
+
+public class NearbyShop {
+    private final double distanceKm;
+
+    private final Shop shop;
+
+    public NearbyShop(Shop shop, Double distanceKm) {
+        this.shop = shop;
+        this.distanceKm = distanceKm;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    public Shop getShop() {
+        return shop;
+    }
+}
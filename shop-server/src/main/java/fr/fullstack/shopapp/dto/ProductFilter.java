@@ -0,0 +1,76 @@
+package fr.fullstack.shopapp.dto;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Filters and order of a product listing. The orders are stable: the ties are broken by id, in the same direction.
+ */
+public class ProductFilter {
+    public enum Sort {
+        ID, PRICE_ASC, PRICE_DESC
+    }
+
+    private final boolean allCategories;
+
+    private final Optional<Long> categoryId;
+
+    // Further categories, each one with its subtree, of which the products must be in all or in any
+    private final List<Long> categoryIds;
+
+    private final Optional<Float> maxPrice;
+
+    private final Optional<Float> minPrice;
+
+    private final Optional<Long> shopId;
+
+    private final Sort sort;
+
+    public ProductFilter(Optional<Long> shopId, Optional<Long> categoryId, List<Long> categoryIds,
+            boolean allCategories, Optional<Float> minPrice, Optional<Float> maxPrice, Sort sort) {
+        this.shopId = shopId;
+        this.categoryId = categoryId;
+        this.categoryIds = categoryIds;
+        this.allCategories = allCategories;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sort = sort;
+    }
+
+    public Optional<Long> getCategoryId() {
+        return categoryId;
+    }
+
+    public List<Long> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public Optional<Float> getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Optional<Float> getMinPrice() {
+        return minPrice;
+    }
+
+    public Optional<Long> getShopId() {
+        return shopId;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public boolean isAllCategories() {
+        return allCategories;
+    }
+
+    /**
+     * Key identifying the filtered set (not its order), for the cached counts.
+     */
+    public String countKey() {
+        return "shop=" + shopId.orElse(null) + ",category=" + categoryId.orElse(null)
+                + ",categories=" + categoryIds + (allCategories ? ",all" : ",any")
+                + ",minPrice=" + minPrice.orElse(null) + ",maxPrice=" + maxPrice.orElse(null);
+    }
+}
@@ -0,0 +1,52 @@
+package fr.fullstack.shopapp.dto;
+
+import fr.fullstack.shopapp.model.LocalizedProduct;
+
+import java.util.List;
+
+/**
+ * Partial update of a product sent to the ingestion pipeline: only the non null fields are applied.
+ */
+public class ProductUpdate {
+    private Long id;
+
+    private List<LocalizedProduct> localizedProducts;
+
+    private Float price;
+
+    public Long getId() {
+        return id;
+    }
+
+    public List<LocalizedProduct> getLocalizedProducts() {
+        return localizedProducts;
+    }
+
+    public Float getPrice() {
+        return price;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public void setLocalizedProducts(List<LocalizedProduct> localizedProducts) {
+        this.localizedProducts = localizedProducts;
+    }
+
+    public void setPrice(Float price) {
+        this.price = price;
+    }
+
+    /**
+     * Applies the fields of a more recent update on top of this one (last write wins field by field).
+     */
+    public void merge(ProductUpdate newer) {
+        if (newer.price != null) {
+            price = newer.price;
+        }
+        if (newer.localizedProducts != null) {
+            localizedProducts = newer.localizedProducts;
+        }
+    }
+}
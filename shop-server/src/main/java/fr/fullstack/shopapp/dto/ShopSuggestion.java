@@ -0,0 +1,27 @@
+package fr.fullstack.shopapp.dto;
+
+public class ShopSuggestion {
+    private final long id;
+
+    private final String name;
+
+    private final long nbProducts;
+
+    public ShopSuggestion(long id, String name, long nbProducts) {
+        this.id = id;
+        this.name = name;
+        this.nbProducts = nbProducts;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNbProducts() {
+        return nbProducts;
+    }
+}
@@ -0,0 +1,82 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * SQL statement that exceeded the slow-query threshold, with its plan once the asynchronous {@code EXPLAIN} is done.
+ */
+public class SlowQuery {
+    private final long id;
+
+    private final Instant executedAt;
+
+    private final long elapsedMs;
+
+    private final String sql;
+
+    private final List<List<String>> parameters;
+
+    private final String caller;
+
+    private final boolean success;
+
+    private volatile String plan;
+
+    private volatile String planError;
+
+    public SlowQuery(long id, Instant executedAt, long elapsedMs, String sql, List<List<String>> parameters,
+            String caller, boolean success) {
+        this.id = id;
+        this.executedAt = executedAt;
+        this.elapsedMs = elapsedMs;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.caller = caller;
+        this.success = success;
+    }
+
+    public String getCaller() {
+        return caller;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public Instant getExecutedAt() {
+        return executedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<List<String>> getParameters() {
+        return parameters;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    public String getPlanError() {
+        return planError;
+    }
+
+    public void setPlanError(String planError) {
+        this.planError = planError;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public boolean getSuccess() {
+        return success;
+    }
+}
@@ -0,0 +1,106 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * State of the in-memory catalog snapshot: its content, the result of the last consistency check and an estimate of
+ * its memory footprint.
+ */
+public class SnapshotStatus {
+    private final boolean enabled;
+
+    private final long version;
+
+    private final Instant loadedAt;
+
+    private final Instant updatedAt;
+
+    private final int nbShops;
+
+    private final int nbProducts;
+
+    private final int nbCategories;
+
+    private final int pendingChanges;
+
+    private final Instant lastCheckAt;
+
+    private final Boolean consistent;
+
+    private final List<String> mismatches;
+
+    private final long estimatedBytes;
+
+    private final long estimatedBytesPerMillionProducts;
+
+    public SnapshotStatus(boolean enabled, long version, Instant loadedAt, Instant updatedAt, int nbShops,
+            int nbProducts, int nbCategories, int pendingChanges, Instant lastCheckAt, Boolean consistent,
+            List<String> mismatches, long estimatedBytes, long estimatedBytesPerMillionProducts) {
+        this.enabled = enabled;
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.updatedAt = updatedAt;
+        this.nbShops = nbShops;
+        this.nbProducts = nbProducts;
+        this.nbCategories = nbCategories;
+        this.pendingChanges = pendingChanges;
+        this.lastCheckAt = lastCheckAt;
+        this.consistent = consistent;
+        this.mismatches = mismatches;
+        this.estimatedBytes = estimatedBytes;
+        this.estimatedBytesPerMillionProducts = estimatedBytesPerMillionProducts;
+    }
+
+    public Boolean getConsistent() {
+        return consistent;
+    }
+
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public long getEstimatedBytesPerMillionProducts() {
+        return estimatedBytesPerMillionProducts;
+    }
+
+    public Instant getLastCheckAt() {
+        return lastCheckAt;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public List<String> getMismatches() {
+        return mismatches;
+    }
+
+    public int getNbCategories() {
+        return nbCategories;
+    }
+
+    public int getNbProducts() {
+        return nbProducts;
+    }
+
+    public int getNbShops() {
+        return nbShops;
+    }
+
+    public int getPendingChanges() {
+        return pendingChanges;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
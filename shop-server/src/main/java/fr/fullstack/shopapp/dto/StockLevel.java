@@ -0,0 +1,45 @@
+package fr.fullstack.shopapp.dto;
+
+/**
+ * Stock of a product as seen by the in-memory counter: the units in stock, the units that can still be reserved, and
+ * the reservations waiting for their commit.
+ */
+public class StockLevel {
+    private final long available;
+
+    private final long pending;
+
+    private final long productId;
+
+    private final long quantity;
+
+    private final int stripes;
+
+    public StockLevel(long productId, long quantity, long available, long pending, int stripes) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.available = available;
+        this.pending = pending;
+        this.stripes = stripes;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+}
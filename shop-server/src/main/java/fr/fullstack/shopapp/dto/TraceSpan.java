@@ -0,0 +1,62 @@
+package fr.fullstack.shopapp.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Span kept by the in-memory trace store.
+ */
+public class TraceSpan {
+    private final String traceId;
+
+    private final String spanId;
+
+    private final String parentSpanId;
+
+    private final String name;
+
+    private final Instant startedAt;
+
+    private final long durationMicros;
+
+    private final Map<String, String> attributes;
+
+    public TraceSpan(String traceId, String spanId, String parentSpanId, String name, Instant startedAt,
+            long durationMicros, Map<String, String> attributes) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startedAt = startedAt;
+        this.durationMicros = durationMicros;
+        this.attributes = attributes;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+}
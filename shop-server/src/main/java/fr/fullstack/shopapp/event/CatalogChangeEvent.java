@@ -0,0 +1,38 @@
+package fr.fullstack.shopapp.event;
+
+/**
+ * Published by the services for each write on the catalog, inside the transaction of the write.
+ */
+public class CatalogChangeEvent {
+    public enum Action {
+        CREATED, UPDATED, DELETED
+    }
+
+    public enum EntityType {
+        CATEGORY, PRODUCT, SHOP
+    }
+
+    private final Action action;
+
+    private final long entityId;
+
+    private final EntityType entityType;
+
+    public CatalogChangeEvent(EntityType entityType, long entityId, Action action) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.action = action;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+}
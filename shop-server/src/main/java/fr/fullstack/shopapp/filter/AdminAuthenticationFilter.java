@@ -0,0 +1,56 @@
+package fr.fullstack.shopapp.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Restricts the administration endpoints ({@code /api/v1/admin/**}: flight recordings, slow queries, traces, caches
+ * and rebuilds) to the callers sending {@code Authorization: Bearer <shop.admin.token>}. Without a configured token,
+ * the endpoints are closed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AdminAuthenticationFilter extends OncePerRequestFilter {
+    private static final String BEARER = "Bearer ";
+
+    @Value("${shop.admin.token:}")
+    private String token;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // The servlet path is decoded and normalized, unlike the request URI. The CORS preflights carry no credentials.
+        return HttpMethod.OPTIONS.matches(request.getMethod()) || !request.getServletPath().startsWith("/api/v1/admin");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (token.isEmpty()) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "The administration endpoints are disabled");
+            return;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER)
+                || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                        authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8))) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "A valid administration token is required");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,58 @@
+package fr.fullstack.shopapp.filter;
+
+/**
+ * Concurrency limit adjusted by additive increase / multiplicative decrease (AIMD): the limit grows by one while the
+ * requests stay under the target latency with the limit actually used, and shrinks by the backoff ratio as soon as a
+ * request is slower than the target or fails.
+ */
+public class AimdLimiter {
+    private final double backoffRatio;
+
+    private final int maxLimit;
+
+    private final int minLimit;
+
+    private final long targetLatencyNanos;
+
+    private int inFlight;
+
+    private double limit;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs, double backoffRatio) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * @param reserved part of the limit kept for other requests (they have priority over this one)
+     * @return whether the request can run, in which case {@link #release} must be called once it is done
+     */
+    public synchronized boolean tryAcquire(int reserved) {
+        if (inFlight + reserved >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void release(long latencyNanos, boolean failed) {
+        inFlight--;
+        if (failed || latencyNanos > targetLatencyNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= limit) {
+            // Only grow when the limit is the bottleneck, otherwise an idle endpoint would grow it forever
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+}
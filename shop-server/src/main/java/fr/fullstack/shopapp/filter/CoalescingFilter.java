@@ -0,0 +1,194 @@
+package fr.fullstack.shopapp.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight for identical API reads: while a GET is running, the identical requests arriving meanwhile wait for it
+ * and receive a copy of its serialized response instead of querying the database again. Requests are identical when
+ * they have the same path, query parameters (in any order), Accept, Accept-Language and Origin (CORS) headers.
+ * <p>
+ * With {@code shop.coalescing.result-ttl-ms} above zero, the responses are also reused for that long after completion.
+ * Only 200 responses are shared; for any other outcome the waiting requests run on their own.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class CoalescingFilter extends OncePerRequestFilter {
+    private final Map<String, CompletableFuture<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, SharedResponse> recent = new ConcurrentHashMap<>();
+
+    private Counter cachedRequests;
+
+    private Counter followerRequests;
+
+    private Counter leaderRequests;
+
+    @Value("${shop.coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop.coalescing.excluded-paths:/api/v1/changes}")
+    private List<String> excludedPaths;
+
+    @Value("${shop.coalescing.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    @Value("${shop.coalescing.result-max-entries:1000}")
+    private int maxRecentEntries;
+
+    @Value("${shop.coalescing.result-ttl-ms:0}")
+    private long resultTtlMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void createMeters() {
+        // Coalescing ratio = (follower + cached) / all
+        leaderRequests = Counter.builder("shop.coalescing.requests").tag("outcome", "leader").register(meterRegistry);
+        followerRequests = Counter.builder("shop.coalescing.requests").tag("outcome", "follower")
+                .register(meterRegistry);
+        cachedRequests = Counter.builder("shop.coalescing.requests").tag("outcome", "cached").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !HttpMethod.GET.matches(request.getMethod()) || !path.startsWith("/api/")
+                || excludedPaths.stream().anyMatch(excluded -> !excluded.isEmpty() && path.startsWith(excluded));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = key(request);
+
+        SharedResponse cached = recent.get(key);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            cachedRequests.increment();
+            cached.writeTo(response);
+            return;
+        }
+
+        CompletableFuture<SharedResponse> flight = new CompletableFuture<>();
+        CompletableFuture<SharedResponse> leaderFlight = inFlight.putIfAbsent(key, flight);
+        if (leaderFlight != null) {
+            SharedResponse shared = await(leaderFlight);
+            if (shared != null) {
+                followerRequests.increment();
+                shared.writeTo(response);
+            } else {
+                chain.doFilter(request, response);
+            }
+            return;
+        }
+
+        leaderRequests.increment();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        SharedResponse shared = null;
+        try {
+            chain.doFilter(request, wrapper);
+            if (wrapper.getStatus() == HttpStatus.OK.value() && !request.isAsyncStarted()) {
+                shared = new SharedResponse(wrapper, System.currentTimeMillis() + resultTtlMs);
+                if (resultTtlMs > 0) {
+                    remember(key, shared);
+                }
+            }
+        } finally {
+            inFlight.remove(key, flight);
+            flight.complete(shared);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private SharedResponse await(CompletableFuture<SharedResponse> flight) {
+        try {
+            return flight.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private void remember(String key, SharedResponse shared) {
+        if (recent.size() >= maxRecentEntries) {
+            long now = System.currentTimeMillis();
+            recent.values().removeIf(response -> response.expiresAt <= now);
+            if (recent.size() >= maxRecentEntries) {
+                return;
+            }
+        }
+        recent.put(key, shared);
+    }
+
+    static String key(HttpServletRequest request) {
+        List<String> parameters = new ArrayList<>();
+        request.getParameterMap().forEach((name, values) -> {
+            for (String value : values) {
+                parameters.add(name + "=" + value);
+            }
+        });
+        Collections.sort(parameters);
+        return request.getRequestURI() + "?" + String.join("&", parameters)
+                + "|" + request.getHeader(HttpHeaders.ACCEPT)
+                + "|" + request.getHeader(HttpHeaders.ACCEPT_LANGUAGE)
+                + "|" + request.getHeader(HttpHeaders.ORIGIN);
+    }
+
+    private static class SharedResponse {
+        private final byte[] body;
+
+        private final String contentType;
+
+        private final long expiresAt;
+
+        private final Map<String, List<String>> headers = new ConcurrentHashMap<>();
+
+        SharedResponse(ContentCachingResponseWrapper response, long expiresAt) {
+            this.body = response.getContentAsByteArray();
+            this.contentType = response.getContentType();
+            this.expiresAt = expiresAt;
+            for (String name : response.getHeaderNames()) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+
+        void writeTo(HttpServletResponse response) throws IOException {
+            response.setStatus(HttpStatus.OK.value());
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
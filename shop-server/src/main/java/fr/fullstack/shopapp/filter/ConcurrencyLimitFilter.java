@@ -0,0 +1,125 @@
+package fr.fullstack.shopapp.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sheds the API requests over an adaptive concurrency limit instead of queueing them on the Tomcat threads and the
+ * connection pool. Each endpoint class has its own {@link AimdLimiter}; the requests over the limit are rejected at
+ * once with a 503 and a Retry-After header.
+ * <p>
+ * Writes have priority: the requests in flight on the writes limiter are subtracted from the limits of the reads.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    public enum EndpointClass {
+        SEARCH, LISTING, WRITE, STOCK
+    }
+
+    private final Map<EndpointClass, AimdLimiter> limiters = new EnumMap<>(EndpointClass.class);
+
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    @Value("${shop.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop.limiter.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void createLimiters() {
+        double backoffRatio = environment.getProperty("shop.limiter.backoff-ratio", Double.class, 0.9);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String prefix = "shop.limiter." + endpointClass.name().toLowerCase(Locale.ROOT) + ".";
+            AimdLimiter limiter = new AimdLimiter(
+                    environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+                    environment.getProperty(prefix + "min-limit", Integer.class, 2),
+                    environment.getProperty(prefix + "max-limit", Integer.class, 100),
+                    environment.getProperty(prefix + "target-latency-ms", Long.class, 500L),
+                    backoffRatio
+            );
+            limiters.put(endpointClass, limiter);
+
+            String tag = endpointClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("shop.limiter.limit", limiter, AimdLimiter::getLimit)
+                    .tag("endpoint", tag).register(meterRegistry);
+            Gauge.builder("shop.limiter.in-flight", limiter, AimdLimiter::getInFlight)
+                    .tag("endpoint", tag).register(meterRegistry);
+            rejections.put(endpointClass, Counter.builder("shop.limiter.rejected")
+                    .tag("endpoint", tag).register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        AimdLimiter limiter = limiters.get(endpointClass);
+        boolean read = endpointClass == EndpointClass.SEARCH || endpointClass == EndpointClass.LISTING;
+        int reserved = read ? limiters.get(EndpointClass.WRITE).getInFlight() : 0;
+        if (!limiter.tryAcquire(reserved)) {
+            rejections.get(endpointClass).increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many concurrent requests, retry later");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.endsWith("/search") || path.endsWith("/facets") || path.endsWith("/autocomplete")) {
+            return EndpointClass.SEARCH;
+        }
+        String method = request.getMethod();
+        // The reservations of a flash sale must neither starve the catalog writes nor be starved by them
+        if (path.startsWith("/api/v1/stock/") && HttpMethod.POST.matches(method)) {
+            return EndpointClass.STOCK;
+        }
+        boolean write = HttpMethod.POST.matches(method) || HttpMethod.PUT.matches(method)
+                || HttpMethod.DELETE.matches(method) || HttpMethod.PATCH.matches(method);
+        // POST /batch reads several entities
+        return write && !path.endsWith("/batch") ? EndpointClass.WRITE : EndpointClass.LISTING;
+    }
+}
@@ -0,0 +1,159 @@
+package fr.fullstack.shopapp.filter;
+
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.service.ProductMembershipIndex;
+import fr.fullstack.shopapp.service.ResponseCache;
+import fr.fullstack.shopapp.service.ResponseCache.CachedResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the catalog reads from the serialized responses of {@link ResponseCache}: a hit writes the stored bytes
+ * straight to the response, without running the controller, the queries nor the serialization. A response by id is
+ * stamped with the version of its entity (and a product with the version of its shop), a listing of the products of
+ * a shop or of categories with the listing versions of that shop or these categories, the other listings with the
+ * generations of the entity types they show. The search endpoints, whose results follow the asynchronous indexing,
+ * and the stock are not cached.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class ResponseCacheFilter extends OncePerRequestFilter {
+    private static final Pattern BY_ID = Pattern.compile("/api/v1/(shops|products|categories)/(\\d{1,18})");
+
+    private static final Pattern LISTING =
+            Pattern.compile("/api/v1/(shops|products|categories)(/batch|/scroll|/\\d{1,18}/(children|descendants))?");
+
+    @Autowired
+    private ResponseCache cache;
+
+    @Autowired
+    private ProductMembershipIndex membershipIndex;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !cache.isEnabled() || !HttpMethod.GET.matches(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/v1/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Taken before the response is built: a write committed meanwhile makes it stale right away
+        long[] stamp = stamp(request);
+        if (stamp == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = CoalescingFilter.key(request);
+        CachedResponse cached = cache.get(key, stamp);
+        if (cached != null) {
+            writeTo(cached, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() == HttpStatus.OK.value() && !request.isAsyncStarted()) {
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : wrapper.getHeaderNames()) {
+                headers.put(name, new ArrayList<>(wrapper.getHeaders(name)));
+            }
+            cache.put(key, stamp, wrapper.getContentAsByteArray(), wrapper.getContentType(), headers);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private long[] stamp(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        Matcher byId = BY_ID.matcher(path);
+        if (byId.matches()) {
+            EntityType entityType = entityType(byId.group(1));
+            long id = Long.parseLong(byId.group(2));
+            // The products embed their shop and their categories. The counts of a shop are refreshed with max-age.
+            return entityType == EntityType.PRODUCT
+                    ? cache.productStamp(id, membershipIndex.findShopId(id))
+                    : cache.stamp(entityType, id);
+        }
+        Matcher listing = LISTING.matcher(path);
+        if (!listing.matches()) {
+            return null;
+        }
+        switch (entityType(listing.group(1))) {
+            case CATEGORY:
+                return cache.stamp(null, null, EntityType.CATEGORY);
+            case SHOP:
+                // The counts of products and categories the shops are sorted by are refreshed with max-age
+                return cache.stamp(null, null, EntityType.SHOP);
+            default:
+                if (listing.group(2) != null && !listing.group(2).equals("/scroll")) {
+                    return cache.stamp(null, null, EntityType.SHOP, EntityType.PRODUCT, EntityType.CATEGORY);
+                }
+                try {
+                    List<Long> shopIds = ids(request, "shopId");
+                    if (shopIds.size() == 1) {
+                        return cache.listingStamp(EntityType.SHOP, shopIds);
+                    }
+                    List<Long> categoryIds = ids(request, "categoryId", "categoryIds");
+                    return categoryIds.isEmpty()
+                            ? cache.stamp(null, null, EntityType.SHOP, EntityType.PRODUCT, EntityType.CATEGORY)
+                            : cache.listingStamp(EntityType.CATEGORY, categoryIds);
+                } catch (NumberFormatException e) {
+                    // Refused by the controller
+                    return null;
+                }
+        }
+    }
+
+    private static List<Long> ids(HttpServletRequest request, String... names) {
+        List<Long> ids = new ArrayList<>();
+        for (String name : names) {
+            String[] values = request.getParameterValues(name);
+            for (String value : values == null ? new String[0] : values) {
+                for (String id : value.split(",")) {
+                    ids.add(Long.parseLong(id.trim()));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static EntityType entityType(String resource) {
+        switch (resource) {
+            case "shops":
+                return EntityType.SHOP;
+            case "products":
+                return EntityType.PRODUCT;
+            default:
+                return EntityType.CATEGORY;
+        }
+    }
+
+    private static void writeTo(CachedResponse cached, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        cached.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (cached.getContentType() != null) {
+            response.setContentType(cached.getContentType());
+        }
+        response.setContentLength(cached.getBody().length);
+        response.getOutputStream().write(cached.getBody());
+    }
+}
@@ -1,12 +1,15 @@
 package fr.fullstack.shopapp.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.search.engine.backend.types.Aggregable;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
@@ -15,10 +18,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "categories")
+@Table(name = "categories", indexes = @Index(name = "idx_categories_parent", columnList = "parent_id"))
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
+    @GenericField(aggregable = Aggregable.YES)
     private long id;
 
     @Size(min = 1, max = 255, message = "Name must be between 1 and 255 characters")
@@ -26,6 +30,9 @@ public class Category {
     @Column(nullable = false)
     private String name;
 
+    @Column(name = "parent_id")
+    private Long parentId;
+
     @ManyToMany(mappedBy = "categories")
     @JsonIgnore
     private List<Product> products = new ArrayList<Product>();
@@ -38,6 +45,10 @@ public class Category {
         return name;
     }
 
+    public Long getParentId() {
+        return parentId;
+    }
+
     public List<Product> getProducts() {
         return products;
     }
@@ -50,6 +61,10 @@ public class Category {
         this.name = name;
     }
 
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+
     public void setProducts(List<Product> products) {
         this.products = products;
     }
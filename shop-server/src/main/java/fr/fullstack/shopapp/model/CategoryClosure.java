@@ -0,0 +1,66 @@
+package fr.fullstack.shopapp.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One row per (ancestor, descendant) pair of the category tree, including the (category, category) pair at depth 0.
+ * Rows are maintained with SQL by {@code CategoryService}.
+ */
+@Entity
+@IdClass(CategoryClosure.Key.class)
+@Table(name = "category_closure", indexes = @Index(name = "idx_category_closure_descendant",
+        columnList = "descendant_id, ancestor_id"))
+public class CategoryClosure {
+    @Id
+    @Column(name = "ancestor_id")
+    private long ancestorId;
+
+    @Column(nullable = false)
+    private int depth;
+
+    @Id
+    @Column(name = "descendant_id")
+    private long descendantId;
+
+    public long getAncestorId() {
+        return ancestorId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getDescendantId() {
+        return descendantId;
+    }
+
+    public static class Key implements Serializable {
+        private long ancestorId;
+
+        private long descendantId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return ancestorId == key.ancestorId && descendantId == key.descendantId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ancestorId, descendantId);
+        }
+    }
+}
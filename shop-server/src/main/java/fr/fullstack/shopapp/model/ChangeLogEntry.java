@@ -0,0 +1,78 @@
+package fr.fullstack.shopapp.model;
+
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * One write on the catalog, as streamed by the change feed. The id is the sequence number the clients resume from.
+ */
+@Entity
+@Table(name = "change_log")
+public class ChangeLogEntry {
+    @Column(nullable = false, length = 16)
+    @Enumerated(EnumType.STRING)
+    private Action action;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    @Column(name = "entity_id", nullable = false)
+    private long entityId;
+
+    @Column(name = "entity_type", nullable = false, length = 16)
+    @Enumerated(EnumType.STRING)
+    private EntityType entityType;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    public Action getAction() {
+        return action;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public void setChangedAt(Instant changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public void setEntityId(long entityId) {
+        this.entityId = entityId;
+    }
+
+    public void setEntityType(EntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+}
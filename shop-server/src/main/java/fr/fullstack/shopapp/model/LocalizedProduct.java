@@ -1,45 +1,35 @@
 package fr.fullstack.shopapp.model;
 
 import fr.fullstack.shopapp.validation.StringEnumeration;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
 
-import jakarta.persistence.Column;
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import java.util.Objects;
 
-@Entity
-@Table(name = "LocalizedProduct")
+/**
+ * Name and description of a product in one locale. Stored inline in the {@code localized_products} JSONB column of
+ * the products.
+ */
 public class LocalizedProduct {
-    @Column
     @Size(min = 1, max = 255, message = "Description must be between 1 and 255 characters")
     private String description;
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    private long id;
-
-    @Column(nullable = false)
     @StringEnumeration(enumClass = Locale.class, message = "Locale must be FR or EN")
     @NotNull(message = "Locale may not be null")
+    @KeywordField
     private String locale;
 
-    @Column(nullable = false)
     @Size(min = 1, max = 255, message = "Name must be between 1 and 255 characters")
     @NotNull(message = "Name may not be null")
+    @FullTextField
     private String name;
 
     public String getDescription() {
         return description;
     }
 
-    public long getId() {
-        return id;
-    }
-
     public String getLocale() {
         return locale;
     }
@@ -52,10 +42,6 @@ public class LocalizedProduct {
         this.description = description;
     }
 
-    public void setId(long id) {
-        this.id = id;
-    }
-
     public void setLocale(String locale) {
         this.locale = locale;
     }
@@ -63,4 +49,23 @@ public class LocalizedProduct {
     public void setName(String name) {
         this.name = name;
     }
+
+    // Used by Hibernate to detect changes of the JSON column
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LocalizedProduct)) {
+            return false;
+        }
+        LocalizedProduct that = (LocalizedProduct) o;
+        return Objects.equals(description, that.description) && Objects.equals(locale, that.locale)
+                && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(description, locale, name);
+    }
 }
@@ -1,6 +1,7 @@
 package fr.fullstack.shopapp.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -19,12 +20,14 @@ public class OpeningHoursShop {
     @Column(nullable = false)
     @JsonFormat(pattern = "HH:mm:ss")
     @NotNull(message = "CloseAt may not be null")
+    @GenericField
     private LocalTime closeAt;
 
     @Column(nullable = false)
     @NotNull(message = "Day may not be null")
     @Min(value = 1, message = "Day should not be less than 1")
     @Max(value = 7, message = "Day should not be greater than 7")
+    @GenericField
     private int day;
 
     @Id
@@ -34,6 +37,7 @@ public class OpeningHoursShop {
     @Column(nullable = false)
     @JsonFormat(pattern = "HH:mm:ss")
     @NotNull(message = "OpenAt may not be null")
+    @GenericField
     private LocalTime openAt;
 
     public LocalTime getCloseAt() {
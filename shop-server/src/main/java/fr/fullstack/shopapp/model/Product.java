@@ -1,5 +1,18 @@
 package fr.fullstack.shopapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.SQLInsert;
+import org.hibernate.search.engine.backend.types.Aggregable;
+import org.hibernate.search.engine.backend.types.Sortable;
+import org.hibernate.search.mapper.pojo.automaticindexing.ReindexOnUpdate;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexedEmbedded;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexingDependency;
+import org.hibernate.type.SqlTypes;
+
 import jakarta.persistence.*;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
@@ -13,29 +26,54 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+    // Price listings with keyset continuation, per shop and on the whole catalog
+    @Index(name = "idx_products_shop_price", columnList = "shop_id, price, id"),
+    @Index(name = "idx_products_price", columnList = "price, id")
+})
+@Indexed(index = "idx_products")
 public class Product {
     @ManyToMany
     @JoinTable(
             name = "products_categories",
             joinColumns = @JoinColumn(name = "product_id"),
-            inverseJoinColumns = @JoinColumn(name = "category_id"))
+            inverseJoinColumns = @JoinColumn(name = "category_id"),
+            indexes = {
+                @Index(name = "idx_products_categories_category", columnList = "category_id, product_id"),
+                @Index(name = "idx_products_categories_product", columnList = "product_id, category_id")
+            })
+    // The links keep a copy of the shop of the product for the per-shop queries, see MigrationProductShopKey
+    @SQLInsert(sql = "INSERT INTO products_categories (product_id, category_id, shop_id) "
+            + "SELECT v.product_id, v.category_id, (SELECT p.shop_id FROM products p WHERE p.id = v.product_id) "
+            + "FROM (VALUES (CAST(? AS int8), CAST(? AS int8))) v(product_id, category_id)")
+    @IndexedEmbedded(includePaths = {"id"})
     private List<Category> categories = new ArrayList<Category>();
 
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private long id;
 
-    @OneToMany(cascade = {CascadeType.ALL}, orphanRemoval = true)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "localized_products", columnDefinition = "jsonb")
+    @IndexedEmbedded(includePaths = {"locale", "name"})
+    @IndexingDependency(reindexOnUpdate = ReindexOnUpdate.SHALLOW)
     @Size(min = 1, message = "At least one name and one description must be provided")
     private List<@Valid LocalizedProduct> localizedProduct = new ArrayList<LocalizedProduct>();
 
     @Column(nullable = false)
     @PositiveOrZero(message = "Price must be positive")
     @NotNull(message = "Price may not be null")
+    @GenericField(aggregable = Aggregable.YES, sortable = Sortable.YES)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private float price;
 
+    // Locale negotiated for the response, only the matching translation is serialized when it is set
+    @Transient
+    @JsonIgnore
+    private String resolvedLocale;
+
     @ManyToOne
+    @IndexedEmbedded(includePaths = {"id"})
     private Shop shop;
 
     public List<Category> getCategories() {
@@ -47,7 +85,18 @@ public class Product {
     }
 
     public List<LocalizedProduct> getLocalizedProducts() {
-        return localizedProduct;
+        if (resolvedLocale == null) {
+            return localizedProduct;
+        }
+        // Fallback to french, which is always provided
+        return localizedProduct.stream().filter(o -> o.getLocale().equals(resolvedLocale)).findFirst()
+                .or(() -> localizedProduct.stream().filter(o -> o.getLocale().equals(Locale.FR.name())).findFirst())
+                .map(List::of)
+                .orElse(localizedProduct);
+    }
+
+    public float getPrice() {
+        return price;
     }
 
     public float getPriceEUR() {
@@ -80,6 +129,10 @@ public class Product {
         this.price = price;
     }
 
+    public void setResolvedLocale(String resolvedLocale) {
+        this.resolvedLocale = resolvedLocale;
+    }
+
     public void setShop(Shop shop) {
         this.shop = shop;
     }
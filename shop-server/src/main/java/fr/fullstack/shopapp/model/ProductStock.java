@@ -0,0 +1,40 @@
+package fr.fullstack.shopapp.model;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Units of a product in stock, the confirmed reservations not settled yet included. Rows are maintained with SQL by
+ * {@code StockService}, never through JPA.
+ */
+@Entity
+@Immutable
+@Table(name = "product_stocks")
+public class ProductStock {
+    @Id
+    @Column(name = "product_id")
+    private long productId;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public long getProductId() {
+        return productId;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
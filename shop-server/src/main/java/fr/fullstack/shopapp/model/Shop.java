@@ -4,9 +4,18 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.Formula;
+import org.hibernate.search.engine.backend.types.Aggregable;
+import org.hibernate.search.engine.backend.types.ObjectStructure;
+import org.hibernate.search.engine.backend.types.Sortable;
+import org.hibernate.search.mapper.pojo.automaticindexing.ReindexOnUpdate;
+import org.hibernate.search.mapper.pojo.bridge.builtin.annotation.GeoPointBinding;
+import org.hibernate.search.mapper.pojo.bridge.builtin.annotation.Latitude;
+import org.hibernate.search.mapper.pojo.bridge.builtin.annotation.Longitude;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexedEmbedded;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexingDependency;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
@@ -18,6 +27,8 @@ import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDate;
@@ -27,35 +38,54 @@ import java.util.List;
 @Entity
 @Table(name = "shops")
 @Indexed(index = "idx_shops")
+// Indexed as a geo_point, see ShopService#getNearbyShops
+@GeoPointBinding(fieldName = "location", sortable = Sortable.YES)
 public class Shop {
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     @JsonFormat(pattern = "yyyy-MM-dd")
+    @GenericField(aggregable = Aggregable.YES)
     private LocalDate createdAt;
 
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
+    @GenericField
     private long id;
 
     @Column(nullable = false)
     @NotNull(message = "InVacations may not be null")
-    @GenericField
+    @GenericField(aggregable = Aggregable.YES)
     private boolean inVacations;
 
+    // Both null when the shop is not located
+    @DecimalMin(value = "-90", message = "Latitude should not be less than -90")
+    @DecimalMax(value = "90", message = "Latitude should not be greater than 90")
+    @Latitude
+    private Double latitude;
+
+    @DecimalMin(value = "-180", message = "Longitude should not be less than -180")
+    @DecimalMax(value = "180", message = "Longitude should not be greater than 180")
+    @Longitude
+    private Double longitude;
+
     @Column(nullable = false)
     @Size(min = 1, max = 255, message = "Name must be between 1 and 255 characters")
     @NotNull(message = "Name may not be null")
     @FullTextField
     private String name;
 
-    @Formula(value = "(SELECT COUNT(DISTINCT pc.category_id) FROM products_categories pc "
-            + "WHERE pc.product_id IN (SELECT p.id FROM products p WHERE p.shop_id = id))")
+    // Counted on the rollup kept up to date with the products of the shop, see StatisticsService
+    @Formula(value = "(SELECT COUNT(*) FROM shop_category_statistics s WHERE s.shop_id = id)")
     private Long nbCategories;
 
     @Formula(value = "(SELECT COUNT(*) FROM products p WHERE p.shop_id = id)")
     private Long nbProducts;
 
+    // Nested so that the day and the hours of a search match the same opening hours. The changes of the hours are not
+    // tracked, ShopService#saveShop reindexes the shop.
     @OneToMany(cascade = {CascadeType.ALL})
+    @IndexedEmbedded(structure = ObjectStructure.NESTED)
+    @IndexingDependency(reindexOnUpdate = ReindexOnUpdate.SHALLOW)
     private List<@Valid OpeningHoursShop> openingHours = new ArrayList<OpeningHoursShop>();
 
     @OneToMany(mappedBy = "shop", fetch = FetchType.LAZY)
@@ -74,6 +104,14 @@ public class Shop {
         return inVacations;
     }
 
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
     public String getName() {
         return name;
     }
@@ -102,6 +140,14 @@ public class Shop {
         this.inVacations = inVacations;
     }
 
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -0,0 +1,98 @@
+package fr.fullstack.shopapp.model;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Rollup of the products of a shop within one category. Rows are maintained with SQL by {@code StatisticsService}.
+ */
+@Entity
+@Immutable
+@IdClass(ShopCategoryStatistics.Key.class)
+@Table(name = "shop_category_statistics")
+public class ShopCategoryStatistics {
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "category_id", insertable = false, updatable = false)
+    private Category category;
+
+    @Id
+    @Column(name = "category_id")
+    private long categoryId;
+
+    @Column(name = "max_price")
+    private Double maxPrice;
+
+    @Column(name = "min_price")
+    private Double minPrice;
+
+    @Column(name = "nb_products", nullable = false)
+    private Long nbProducts;
+
+    @Id
+    @Column(name = "shop_id")
+    private long shopId;
+
+    @Column(name = "sum_price", nullable = false)
+    private Double sumPrice;
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Long getNbProducts() {
+        return nbProducts;
+    }
+
+    public long getShopId() {
+        return shopId;
+    }
+
+    public Double getSumPrice() {
+        return sumPrice;
+    }
+
+    public static class Key implements Serializable {
+        private long categoryId;
+
+        private long shopId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return categoryId == key.categoryId && shopId == key.shopId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(categoryId, shopId);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fr.fullstack.shopapp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.fullstack.shopapp.dto.CategoryStatistics;
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rollup of the products of a shop. Rows are maintained with SQL by {@code StatisticsService}, never through JPA.
+ */
+@Entity
+@Immutable
+@Table(name = "shop_statistics")
+public class ShopStatistics {
+    @Transient
+    private List<CategoryStatistics> categories = new ArrayList<CategoryStatistics>();
+
+    @Column(name = "max_price")
+    private Double maxPrice;
+
+    @Column(name = "min_price")
+    private Double minPrice;
+
+    @Column(name = "nb_localized_en", nullable = false)
+    private Long nbLocalizedEn;
+
+    @Column(name = "nb_localized_fr", nullable = false)
+    private Long nbLocalizedFr;
+
+    @Column(name = "nb_products", nullable = false)
+    private Long nbProducts;
+
+    @Column(name = "refreshed_at", nullable = false)
+    private LocalDateTime refreshedAt;
+
+    @Id
+    @Column(name = "shop_id")
+    private long shopId;
+
+    @Column(name = "sum_price", nullable = false)
+    @JsonIgnore
+    private Double sumPrice;
+
+    /**
+     * Statistics of a shop whose rollup is not written yet: a shop just created, or created outside the API.
+     */
+    public static ShopStatistics empty(long shopId) {
+        ShopStatistics statistics = new ShopStatistics();
+        statistics.shopId = shopId;
+        statistics.nbProducts = 0L;
+        statistics.nbLocalizedFr = 0L;
+        statistics.nbLocalizedEn = 0L;
+        statistics.sumPrice = 0.0;
+        return statistics;
+    }
+
+    public Double getAvgPrice() {
+        return nbProducts == 0 ? null : sumPrice / nbProducts;
+    }
+
+    public List<CategoryStatistics> getCategories() {
+        return categories;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Long getNbLocalizedEn() {
+        return nbLocalizedEn;
+    }
+
+    public Long getNbLocalizedFr() {
+        return nbLocalizedFr;
+    }
+
+    public Long getNbProducts() {
+        return nbProducts;
+    }
+
+    public LocalDateTime getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    public long getShopId() {
+        return shopId;
+    }
+
+    public Double getSumPrice() {
+        return sumPrice;
+    }
+
+    public void setCategories(List<CategoryStatistics> categories) {
+        this.categories = categories;
+    }
+}
@@ -0,0 +1,39 @@
+package fr.fullstack.shopapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.fullstack.shopapp.ProductList")
+@Label("Product List")
+@Category({"Shop App", "Service"})
+@Description("Listing of the products, with the path that served it (snapshot, bitmaps, filter, shop, category...)")
+public class ProductListEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Shop Id")
+    public long shopId;
+
+    @Label("Category Ids")
+    public String categoryIds;
+
+    @Label("Min Price")
+    public float minPrice;
+
+    @Label("Max Price")
+    public float maxPrice;
+
+    @Label("Sort By")
+    public String sortBy;
+
+    @Label("Pagination")
+    public String pagination;
+
+    @Label("Page Number")
+    public int pageNumber;
+
+    @Label("Page Size")
+    public int pageSize;
+}
@@ -0,0 +1,23 @@
+package fr.fullstack.shopapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.fullstack.shopapp.Serialization")
+@Label("Response Serialization")
+@Category({"Shop App", "Web"})
+@Description("Serialization of a response body by Jackson")
+public class SerializationEvent extends jdk.jfr.Event {
+    @Label("Type")
+    public String type;
+
+    @Label("Media Type")
+    public String mediaType;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
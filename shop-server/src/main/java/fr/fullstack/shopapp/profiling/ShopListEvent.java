@@ -0,0 +1,30 @@
+package fr.fullstack.shopapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.fullstack.shopapp.ShopList")
+@Label("Shop List")
+@Category({"Shop App", "Service"})
+@Description("Listing of the shops, with the path that served it (snapshot, sort, name, filters or none)")
+public class ShopListEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Sort By")
+    public String sortBy;
+
+    @Label("Search")
+    public String search;
+
+    @Label("Pagination")
+    public String pagination;
+
+    @Label("Page Number")
+    public int pageNumber;
+
+    @Label("Page Size")
+    public int pageSize;
+}
@@ -0,0 +1,21 @@
+package fr.fullstack.shopapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.fullstack.shopapp.ShopSearch")
+@Label("Shop Search")
+@Category({"Shop App", "Search"})
+@Description("Full-text search of the shops, the hits being filtered in memory afterwards")
+public class ShopSearchEvent extends jdk.jfr.Event {
+    @Label("Query")
+    public String query;
+
+    @Label("Hits")
+    public int hits;
+
+    @Label("Kept")
+    public int kept;
+}
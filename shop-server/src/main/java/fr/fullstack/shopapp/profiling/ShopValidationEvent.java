@@ -0,0 +1,21 @@
+package fr.fullstack.shopapp.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("fr.fullstack.shopapp.ShopValidation")
+@Label("Shop Validation")
+@Category({"Shop App", "Service"})
+@Description("Check of the opening hours of a shop before it is saved")
+public class ShopValidationEvent extends jdk.jfr.Event {
+    @Label("Shop Id")
+    public long shopId;
+
+    @Label("Opening Hours")
+    public int openingHours;
+
+    @Label("Conflict")
+    public boolean conflict;
+}
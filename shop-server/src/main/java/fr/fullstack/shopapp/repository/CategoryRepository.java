@@ -3,8 +3,98 @@ package fr.fullstack.shopapp.repository;
 import fr.fullstack.shopapp.model.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Page<Category> findByOrderByIdAsc(Pageable pageable);
+
+    Slice<Category> findSliceByOrderByIdAsc(Pageable pageable);
+
+    List<Category> findByParentIdOrderByNameAsc(Long parentId);
+
+    // SUBTREE
+    @Query("SELECT c FROM Category c WHERE c.id IN "
+            + "(SELECT cc.descendantId FROM CategoryClosure cc WHERE cc.ancestorId = ?1 AND cc.depth > 0) "
+            + "ORDER BY c.name")
+    List<Category> findDescendants(long id);
+
+    @Query(value = "SELECT descendant_id FROM category_closure WHERE ancestor_id = ?1", nativeQuery = true)
+    List<Long> findSubtreeIds(long id);
+
+    @Query(value = "SELECT ancestor_id FROM category_closure WHERE descendant_id = ?1", nativeQuery = true)
+    List<Long> findAncestorIds(long id);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM category_closure WHERE ancestor_id = ?1 AND descendant_id = ?2)",
+           nativeQuery = true)
+    boolean isInSubtree(long rootId, long id);
+
+    // CLOSURE MAINTENANCE
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) "
+            + "SELECT ancestor_id, ?1, depth + 1 FROM category_closure WHERE descendant_id = ?2 "
+            + "UNION ALL SELECT ?1, ?1, 0",
+           nativeQuery = true)
+    void insertClosure(long id, long parentId);
+
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) VALUES (?1, ?1, 0)",
+           nativeQuery = true)
+    void insertRootClosure(long id);
+
+    // Removes the links between the subtree and its former ancestors
+    @Modifying
+    @Query(value = "DELETE FROM category_closure "
+            + "WHERE descendant_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?1) "
+            + "AND ancestor_id NOT IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = ?1)",
+           nativeQuery = true)
+    void detachSubtree(long id);
+
+    // Links every node of the subtree to every ancestor of its new parent (parent included)
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) "
+            + "SELECT sup.ancestor_id, sub.descendant_id, sup.depth + sub.depth + 1 "
+            + "FROM category_closure sup CROSS JOIN category_closure sub "
+            + "WHERE sup.descendant_id = ?2 AND sub.ancestor_id = ?1",
+           nativeQuery = true)
+    void attachSubtree(long id, long parentId);
+
+    @Query(value = "SELECT DISTINCT product_id FROM products_categories WHERE category_id IN (:ids)",
+           nativeQuery = true)
+    List<Long> findProductIdsInCategories(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM products_categories WHERE category_id IN (:ids)", nativeQuery = true)
+    void deleteProductLinks(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM categories WHERE id IN (:ids)", nativeQuery = true)
+    void deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM category_closure WHERE descendant_id IN (:ids)", nativeQuery = true)
+    void deleteClosure(@Param("ids") Collection<Long> ids);
+
+    // MIGRATION
+    @Query(value = "SELECT COUNT(*) FROM categories c WHERE NOT EXISTS "
+            + "(SELECT 1 FROM category_closure cc WHERE cc.ancestor_id = c.id AND cc.descendant_id = c.id)",
+           nativeQuery = true)
+    long countMissingClosures();
+
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) "
+            + "WITH RECURSIVE tree (ancestor_id, descendant_id, depth) AS ("
+            + "SELECT id, id, 0 FROM categories "
+            + "UNION ALL SELECT t.ancestor_id, c.id, t.depth + 1 FROM tree t "
+            + "JOIN categories c ON c.parent_id = t.descendant_id) "
+            + "SELECT ancestor_id, descendant_id, depth FROM tree "
+            + "ON CONFLICT (ancestor_id, descendant_id) DO NOTHING",
+           nativeQuery = true)
+    void rebuildClosure();
 }
@@ -0,0 +1,26 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.model.ChangeLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+    List<ChangeLogEntry> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    long countByIdGreaterThan(long id);
+
+    @Query("SELECT MAX(c.id) FROM ChangeLogEntry c")
+    Long findMaxId();
+
+    @Query("SELECT MIN(c.id) FROM ChangeLogEntry c")
+    Long findMinId();
+
+    @Modifying
+    @Query("DELETE FROM ChangeLogEntry c WHERE c.changedAt < ?1")
+    int deleteOlderThan(Instant limit);
+}
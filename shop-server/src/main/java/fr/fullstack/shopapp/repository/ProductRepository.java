@@ -3,17 +3,93 @@ package fr.fullstack.shopapp.repository;
 import fr.fullstack.shopapp.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     Page<Product> findByOrderByIdAsc(Pageable pageable);
 
     @Query(value = "SELECT * FROM Products WHERE shop_id = ?1", nativeQuery = true)
     Page<Product> findByShop(Long shopId, Pageable pageable);
 
-    @Query(value = "SELECT * FROM Products p WHERE p.shop_id = ?1 AND p.id IN (SELECT pc.product_id FROM "
-            + "products_categories pc WHERE pc.category_id = ?2)",
+    // The category filters include the whole subtree of the category
+    @Query(value = "SELECT * FROM Products p WHERE p.shop_id = ?1 AND EXISTS (SELECT 1 FROM products_categories pc "
+            + "JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+            + "WHERE pc.product_id = p.id AND pc.shop_id = ?1 AND cc.ancestor_id = ?2)",
+           countQuery = "SELECT COUNT(*) FROM Products p WHERE p.shop_id = ?1 AND EXISTS (SELECT 1 FROM "
+                   + "products_categories pc JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+                   + "WHERE pc.product_id = p.id AND pc.shop_id = ?1 AND cc.ancestor_id = ?2)",
            nativeQuery = true)
     Page<Product> findByShopAndCategory(Long shopId, Long categoryId, Pageable pageable);
+
+    @Query(value = "SELECT * FROM Products p WHERE EXISTS (SELECT 1 FROM products_categories pc "
+            + "JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+            + "WHERE pc.product_id = p.id AND cc.ancestor_id = ?1)",
+           countQuery = "SELECT COUNT(*) FROM Products p WHERE EXISTS (SELECT 1 FROM products_categories pc "
+                   + "JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+                   + "WHERE pc.product_id = p.id AND cc.ancestor_id = ?1)",
+           nativeQuery = true)
+    Page<Product> findByCategory(Long categoryId, Pageable pageable);
+
+    // SLICES (same queries as above, without the count)
+    Slice<Product> findSliceByOrderByIdAsc(Pageable pageable);
+
+    @Query(value = "SELECT * FROM Products WHERE shop_id = ?1", nativeQuery = true)
+    Slice<Product> findSliceByShop(Long shopId, Pageable pageable);
+
+    @Query(value = "SELECT * FROM Products p WHERE p.shop_id = ?1 AND EXISTS (SELECT 1 FROM products_categories pc "
+            + "JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+            + "WHERE pc.product_id = p.id AND pc.shop_id = ?1 AND cc.ancestor_id = ?2)",
+           nativeQuery = true)
+    Slice<Product> findSliceByShopAndCategory(Long shopId, Long categoryId, Pageable pageable);
+
+    @Query(value = "SELECT * FROM Products p WHERE EXISTS (SELECT 1 FROM products_categories pc "
+            + "JOIN category_closure cc ON cc.descendant_id = pc.category_id "
+            + "WHERE pc.product_id = p.id AND cc.ancestor_id = ?1)",
+           nativeQuery = true)
+    Slice<Product> findSliceByCategory(Long categoryId, Pageable pageable);
+
+    // Links of a product without shop are not followed by the cascading foreign key of the partitioned tables
+    @Modifying
+    @Query(value = "UPDATE products_categories SET shop_id = ?2 WHERE product_id = ?1 AND shop_id IS DISTINCT FROM ?2",
+           nativeQuery = true)
+    void updateCategoryLinksShop(long productId, Long shopId);
+
+    // BATCH
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.shop WHERE p.id IN :ids")
+    List<Product> findAllWithShopByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.categories WHERE p IN :products")
+    List<Product> fetchCategories(@Param("products") Collection<Product> products);
+
+    // SNAPSHOT (id, price, shop id and translations, without loading the entities)
+    @Query("SELECT p.id, p.price, s.id, p.localizedProduct FROM Product p LEFT JOIN p.shop s WHERE p.id > ?1 "
+            + "ORDER BY p.id")
+    List<Object[]> findSnapshotRowsAfter(long id, Pageable pageable);
+
+    @Query("SELECT p.id, p.price, s.id, p.localizedProduct FROM Product p LEFT JOIN p.shop s WHERE p.id IN ?1")
+    List<Object[]> findSnapshotRowsByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT product_id, category_id FROM products_categories WHERE product_id BETWEEN ?1 AND ?2 "
+            + "ORDER BY product_id, category_id",
+           nativeQuery = true)
+    List<Object[]> findCategoryLinksBetween(long firstProductId, long lastProductId);
+
+    @Query(value = "SELECT product_id, category_id FROM products_categories WHERE product_id IN ?1 "
+            + "ORDER BY product_id, category_id",
+           nativeQuery = true)
+    List<Object[]> findCategoryLinksByProductIdIn(Collection<Long> productIds);
+
+    // MEMBERSHIP (id and shop id)
+    @Query(value = "SELECT id, shop_id FROM products WHERE id > ?1 ORDER BY id LIMIT ?2", nativeQuery = true)
+    List<Object[]> findShopLinksAfter(long id, int limit);
+
+    @Query(value = "SELECT id, shop_id FROM products WHERE id IN ?1", nativeQuery = true)
+    List<Object[]> findShopLinksByIdIn(Collection<Long> ids);
 }
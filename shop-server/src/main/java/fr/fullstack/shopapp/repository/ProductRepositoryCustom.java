@@ -0,0 +1,26 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.dto.ProductFilter;
+import fr.fullstack.shopapp.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * Product listings whose filters and order are chosen at runtime, built with the Criteria API.
+ */
+public interface ProductRepositoryCustom {
+    Page<Product> findByFilter(ProductFilter filter, Pageable pageable);
+
+    Slice<Product> findSliceByFilter(ProductFilter filter, Pageable pageable);
+
+    /**
+     * Keyset continuation: the products following the (price, id) key in the order of the filter, without offset.
+     *
+     * @param afterPrice price of the last product of the previous page, ignored for the ID order
+     * @param afterId    id of the last product of the previous page, null for the first page
+     */
+    List<Product> findAfter(ProductFilter filter, Float afterPrice, Long afterId, int limit);
+}
@@ -0,0 +1,127 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.dto.ProductFilter;
+import fr.fullstack.shopapp.dto.ProductFilter.Sort;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.CategoryClosure;
+import fr.fullstack.shopapp.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The price orders are served by the indexes (shop_id, price, id) and (price, id) of the products.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Page<Product> findByFilter(ProductFilter filter, Pageable pageable) {
+        List<Product> content = find(filter, null, null, (int) pageable.getOffset(), pageable.getPageSize());
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        Root<Product> product = count.from(Product.class);
+        count.select(cb.count(product)).where(predicates(filter, cb, count, product).toArray(Predicate[]::new));
+        return new PageImpl<>(content, pageable, em.createQuery(count).getSingleResult());
+    }
+
+    @Override
+    public Slice<Product> findSliceByFilter(ProductFilter filter, Pageable pageable) {
+        List<Product> content = find(filter, null, null, (int) pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    @Override
+    public List<Product> findAfter(ProductFilter filter, Float afterPrice, Long afterId, int limit) {
+        return find(filter, afterPrice, afterId, 0, limit);
+    }
+
+    private List<Product> find(ProductFilter filter, Float afterPrice, Long afterId, int offset, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        List<Predicate> predicates = predicates(filter, cb, query, product);
+        Path<Float> price = product.get("price");
+        Path<Long> id = product.get("id");
+
+        if (afterId != null) {
+            switch (filter.getSort()) {
+                case PRICE_ASC:
+                    // price >= p narrows the index range, the rest of the key is the tiebreak
+                    predicates.add(cb.greaterThanOrEqualTo(price, afterPrice));
+                    predicates.add(cb.or(cb.greaterThan(price, afterPrice), cb.greaterThan(id, afterId)));
+                    break;
+                case PRICE_DESC:
+                    predicates.add(cb.lessThanOrEqualTo(price, afterPrice));
+                    predicates.add(cb.or(cb.lessThan(price, afterPrice), cb.lessThan(id, afterId)));
+                    break;
+                default:
+                    predicates.add(cb.greaterThan(id, afterId));
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if (filter.getSort() == Sort.PRICE_ASC) {
+            orders.add(cb.asc(price));
+        } else if (filter.getSort() == Sort.PRICE_DESC) {
+            orders.add(cb.desc(price));
+        }
+        orders.add(filter.getSort() == Sort.PRICE_DESC ? cb.desc(id) : cb.asc(id));
+
+        query.select(product).where(predicates.toArray(Predicate[]::new)).orderBy(orders);
+        return em.createQuery(query).setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    private List<Predicate> predicates(ProductFilter filter, CriteriaBuilder cb, CriteriaQuery<?> query,
+            Root<Product> product) {
+        List<Predicate> predicates = new ArrayList<>();
+        filter.getShopId().ifPresent(shopId -> predicates.add(cb.equal(product.get("shop").get("id"), shopId)));
+        filter.getMinPrice().ifPresent(min -> predicates.add(cb.greaterThanOrEqualTo(product.get("price"), min)));
+        filter.getMaxPrice().ifPresent(max -> predicates.add(cb.lessThanOrEqualTo(product.get("price"), max)));
+        // The category filters include the whole subtree of the categories
+        filter.getCategoryId().ifPresent(
+                categoryId -> predicates.add(inSubtrees(cb, query, product, List.of(categoryId))));
+        if (!filter.getCategoryIds().isEmpty()) {
+            if (filter.isAllCategories()) {
+                filter.getCategoryIds().forEach(
+                        categoryId -> predicates.add(inSubtrees(cb, query, product, List.of(categoryId))));
+            } else {
+                predicates.add(inSubtrees(cb, query, product, filter.getCategoryIds()));
+            }
+        }
+        return predicates;
+    }
+
+    /**
+     * The product is in one of the categories or in their subtrees.
+     */
+    private Predicate inSubtrees(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Product> product,
+            List<Long> categoryIds) {
+        Subquery<Long> inSubtree = query.subquery(Long.class);
+        Root<Product> correlated = inSubtree.correlate(product);
+        Join<Product, Category> category = correlated.join("categories");
+        Root<CategoryClosure> closure = inSubtree.from(CategoryClosure.class);
+        inSubtree.select(closure.get("descendantId")).where(
+                cb.equal(closure.get("descendantId"), category.get("id")),
+                closure.get("ancestorId").in(categoryIds));
+        return cb.exists(inSubtree);
+    }
+}
@@ -3,10 +3,14 @@ package fr.fullstack.shopapp.repository;
 import fr.fullstack.shopapp.model.Shop;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 public interface ShopRepository extends JpaRepository<Shop, Long> {
     Page<Shop> findByCreatedAtBetween(LocalDate dateStart, LocalDate dateEnd, Pageable pageable);
@@ -38,15 +42,59 @@ public interface ShopRepository extends JpaRepository<Shop, Long> {
 
     @Query(
             value = "SELECT *,"
-                    + "(SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) as nbProducts, "
-                    + "(SELECT COUNT(DISTINCT pc.category_id) FROM products_categories pc WHERE pc.product_id IN "
-                    + "(SELECT p.id FROM products p WHERE p.shop_id = s.id)) as nbCategories "
+                    + "(SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) as nbProducts "
                     + "FROM shops s "
                     + "ORDER BY (SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) DESC",
-            countQuery = "SELECT * "
+            countQuery = "SELECT COUNT(*) FROM shops",
+            nativeQuery = true
+    )
+    Page<Shop> findByOrderByNbProductsAsc(Pageable pageable);
+
+    // SLICES (same queries as above, without the count)
+    Slice<Shop> findSliceByCreatedAtBetween(LocalDate dateStart, LocalDate dateEnd, Pageable pageable);
+
+    Slice<Shop> findSliceByCreatedAtGreaterThan(LocalDate date, Pageable pageable);
+
+    Slice<Shop> findSliceByCreatedAtLessThan(LocalDate date, Pageable pageable);
+
+    Slice<Shop> findSliceByInVacations(boolean inVacations, Pageable pageable);
+
+    Slice<Shop> findSliceByInVacationsAndCreatedAtGreaterThan(boolean inVacations, LocalDate date, Pageable pageable);
+
+    Slice<Shop> findSliceByInVacationsAndCreatedAtGreaterThanAndCreatedAtLessThan(
+            boolean inVacations, LocalDate dateStart,
+            LocalDate dateEnd, Pageable pageable
+    );
+
+    Slice<Shop> findSliceByInVacationsAndCreatedAtLessThan(boolean inVacations, LocalDate date, Pageable pageable);
+
+    Slice<Shop> findSliceByOrderByCreatedAtAsc(Pageable pageable);
+
+    Slice<Shop> findSliceByOrderByIdAsc(Pageable pageable);
+
+    Slice<Shop> findSliceByNameContainingIgnoreCaseOrderByIdAsc(Pageable pageable, String name);
+
+    Slice<Shop> findSliceByOrderByNameAsc(Pageable pageable);
+
+    @Query(
+            value = "SELECT *,"
+                    + "(SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) as nbProducts "
                     + "FROM shops s "
                     + "ORDER BY (SELECT COUNT(*) FROM products p WHERE p.shop_id = s.id) DESC",
             nativeQuery = true
     )
-    Page<Shop> findByOrderByNbProductsAsc(Pageable pageable);
+    Slice<Shop> findSliceByOrderByNbProductsAsc(Pageable pageable);
+
+    // BATCH
+    @Query("SELECT DISTINCT s FROM Shop s LEFT JOIN FETCH s.openingHours WHERE s.id IN :ids")
+    List<Shop> findAllWithOpeningHoursByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT s FROM Shop s LEFT JOIN FETCH s.openingHours")
+    List<Shop> findAllWithOpeningHours();
+
+    // AUTOCOMPLETE (id, name, number of products)
+    @Query(value = "SELECT s.id, s.name, COALESCE(st.nb_products, 0) FROM shops s "
+            + "LEFT JOIN shop_statistics st ON st.shop_id = s.id",
+           nativeQuery = true)
+    List<Object[]> findSuggestionSources();
 }
@@ -0,0 +1,96 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.dto.CatalogStatistics;
+import fr.fullstack.shopapp.dto.CategoryStatistics;
+import fr.fullstack.shopapp.model.ShopStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ShopStatisticsRepository extends JpaRepository<ShopStatistics, Long> {
+    String SHOP_ROLLUP = "INSERT INTO shop_statistics (shop_id, nb_products, min_price, max_price, sum_price, "
+            + "nb_localized_fr, nb_localized_en, refreshed_at) "
+            + "SELECT s.id, COUNT(p.id), MIN(p.price), MAX(p.price), "
+            + "COALESCE(SUM(CAST(p.price AS double precision)), 0), "
+            + "COUNT(p.id) FILTER (WHERE p.localized_products @> '[{\"locale\": \"FR\"}]'), "
+            + "COUNT(p.id) FILTER (WHERE p.localized_products @> '[{\"locale\": \"EN\"}]'), "
+            + "now() "
+            + "FROM shops s LEFT JOIN products p ON p.shop_id = s.id ";
+
+    String SHOP_ROLLUP_CONFLICT = "GROUP BY s.id "
+            + "ON CONFLICT (shop_id) DO UPDATE SET nb_products = EXCLUDED.nb_products, "
+            + "min_price = EXCLUDED.min_price, max_price = EXCLUDED.max_price, sum_price = EXCLUDED.sum_price, "
+            + "nb_localized_fr = EXCLUDED.nb_localized_fr, nb_localized_en = EXCLUDED.nb_localized_en, "
+            + "refreshed_at = EXCLUDED.refreshed_at";
+
+    String CATEGORY_ROLLUP = "INSERT INTO shop_category_statistics (shop_id, category_id, nb_products, "
+            + "min_price, max_price, sum_price) "
+            + "SELECT p.shop_id, pc.category_id, COUNT(*), MIN(p.price), MAX(p.price), "
+            + "SUM(CAST(p.price AS double precision)) "
+            + "FROM products p "
+            + "JOIN products_categories pc ON pc.product_id = p.id AND pc.shop_id = p.shop_id ";
+
+    // Two writes on the same shop may recompute its categories at the same time
+    String CATEGORY_ROLLUP_CONFLICT = "GROUP BY p.shop_id, pc.category_id "
+            + "ON CONFLICT (shop_id, category_id) DO UPDATE SET nb_products = EXCLUDED.nb_products, "
+            + "min_price = EXCLUDED.min_price, max_price = EXCLUDED.max_price, sum_price = EXCLUDED.sum_price";
+
+    // SHOP
+    @Modifying
+    @Query(value = SHOP_ROLLUP + "WHERE s.id = ?1 " + SHOP_ROLLUP_CONFLICT, nativeQuery = true)
+    void refreshShop(long shopId);
+
+    @Modifying
+    @Query(value = "DELETE FROM shop_category_statistics WHERE shop_id = ?1", nativeQuery = true)
+    void deleteShopCategories(long shopId);
+
+    @Modifying
+    @Query(value = CATEGORY_ROLLUP + "WHERE p.shop_id = ?1 " + CATEGORY_ROLLUP_CONFLICT, nativeQuery = true)
+    void insertShopCategories(long shopId);
+
+    @Modifying
+    @Query(value = "DELETE FROM shop_statistics WHERE shop_id = ?1", nativeQuery = true)
+    void deleteShop(long shopId);
+
+    // CATEGORY
+    @Modifying
+    @Query(value = "DELETE FROM shop_category_statistics WHERE category_id IN (:ids)", nativeQuery = true)
+    void deleteCategories(@Param("ids") Collection<Long> categoryIds);
+
+    // FULL REFRESH
+    @Modifying
+    @Query(value = SHOP_ROLLUP + SHOP_ROLLUP_CONFLICT, nativeQuery = true)
+    void refreshAllShops();
+
+    @Modifying
+    @Query(value = "DELETE FROM shop_statistics WHERE shop_id NOT IN (SELECT id FROM shops)", nativeQuery = true)
+    void deleteOrphanShops();
+
+    @Modifying
+    @Query(value = "DELETE FROM shop_category_statistics", nativeQuery = true)
+    void deleteAllCategories();
+
+    @Modifying
+    @Query(value = CATEGORY_ROLLUP + "WHERE p.shop_id IS NOT NULL " + CATEGORY_ROLLUP_CONFLICT, nativeQuery = true)
+    void insertAllCategories();
+
+    // READ
+    @Query("SELECT new fr.fullstack.shopapp.dto.CategoryStatistics(c.categoryId, cat.name, c.nbProducts, "
+            + "c.minPrice, c.maxPrice, c.sumPrice) "
+            + "FROM ShopCategoryStatistics c JOIN c.category cat WHERE c.shopId = ?1 ORDER BY cat.name")
+    List<CategoryStatistics> findCategoriesOfShop(long shopId);
+
+    @Query("SELECT new fr.fullstack.shopapp.dto.CategoryStatistics(c.categoryId, cat.name, SUM(c.nbProducts), "
+            + "MIN(c.minPrice), MAX(c.maxPrice), SUM(c.sumPrice)) "
+            + "FROM ShopCategoryStatistics c JOIN c.category cat GROUP BY c.categoryId, cat.name ORDER BY cat.name")
+    List<CategoryStatistics> findCategoriesOfCatalog();
+
+    @Query("SELECT new fr.fullstack.shopapp.dto.CatalogStatistics(COUNT(s), SUM(s.nbProducts), MIN(s.minPrice), "
+            + "MAX(s.maxPrice), SUM(s.sumPrice), SUM(s.nbLocalizedFr), SUM(s.nbLocalizedEn), MIN(s.refreshedAt)) "
+            + "FROM ShopStatistics s")
+    CatalogStatistics findCatalog();
+}
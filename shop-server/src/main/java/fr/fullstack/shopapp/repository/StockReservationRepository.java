@@ -0,0 +1,7 @@
+package fr.fullstack.shopapp.repository;
+
+import fr.fullstack.shopapp.model.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+}
@@ -0,0 +1,99 @@
+package fr.fullstack.shopapp.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.search.mapper.orm.Search;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds what is derived from the catalog after it was written outside the API (bulk loads, SQL scripts): the
+ * statistics rollups, the product bitmaps, the in-memory snapshot, the shop suggestions, the cached counts and the
+ * search indexes. The mass indexing runs in the background.
+ */
+@Service
+public class CatalogReindexService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogReindexService.class);
+
+    private volatile boolean indexing;
+
+    private volatile Instant indexingStartedAt;
+
+    private volatile Long indexingMs;
+
+    private volatile String indexingError;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductMembershipIndex membershipIndex;
+
+    @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private CatalogSnapshotService snapshotService;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private ShopSuggestionService suggestionService;
+
+    public Map<String, Object> reindex() throws Exception {
+        if (indexing) {
+            throw new Exception("The search indexes are already being rebuilt");
+        }
+        long start = System.currentTimeMillis();
+        statisticsService.refreshAll();
+        membershipIndex.rebuild();
+        if (snapshotService.getStatus().getEnabled()) {
+            snapshotService.reload();
+        }
+        suggestionService.invalidate();
+        paginationService.refreshCachedCounts();
+        responseCache.invalidateAll();
+        LOGGER.info("Derived data of the catalog rebuilt in {} ms", System.currentTimeMillis() - start);
+        startMassIndexing();
+        return getStatus();
+    }
+
+    public synchronized void startMassIndexing() {
+        if (indexing) {
+            return;
+        }
+        indexing = true;
+        indexingStartedAt = Instant.now();
+        indexingMs = null;
+        indexingError = null;
+        long start = System.currentTimeMillis();
+        Search.mapping(entityManagerFactory).scope(Object.class).massIndexer().start().whenComplete((ignored, e) -> {
+            if (e != null) {
+                LOGGER.error("Mass indexing failed", e);
+                indexingError = String.valueOf(e.getMessage());
+            } else {
+                LOGGER.info("Mass indexing done in {} ms", System.currentTimeMillis() - start);
+            }
+            indexingMs = System.currentTimeMillis() - start;
+            indexing = false;
+        });
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("indexing", indexing);
+        status.put("indexingStartedAt", indexingStartedAt);
+        status.put("indexingMs", indexingMs);
+        status.put("indexingError", indexingError);
+        return status;
+    }
+}
@@ -0,0 +1,838 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.SnapshotStatus;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.model.Category;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.util.LongKeyedMap;
+import fr.fullstack.shopapp.util.PaginationMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+/**
+ * Optional read mode serving the listings and the lookups by id of shops, products and categories from an immutable
+ * in-memory snapshot of the catalog, enabled with {@code shop.snapshot.enabled}.
+ * <p>
+ * The snapshot keeps the entities in {@link LongKeyedMap}s, the products as compact entries referencing their shop
+ * and categories by id, with the shops presorted by name, creation date and number of products and the product ids
+ * grouped per shop and per category. It is loaded once the application is ready, the database serving the reads
+ * until then. The committed writes are applied every {@code shop.snapshot.refresh-delay-ms} by building a new
+ * snapshot from the current one and the changed rows, so readers never see a partial update and a read may lag the
+ * writes by that delay. Lookups by id missing from the snapshot fall back to the database.
+ * <p>
+ * A consistency check compares the snapshot with the database on a schedule and reloads it on a mismatch.
+ */
+@Service
+@Lazy(false)
+public class CatalogSnapshotService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    private static final long[] NO_IDS = new long[0];
+
+    private final Set<Long> pendingCategories = ConcurrentHashMap.newKeySet();
+
+    private final Set<Long> pendingProducts = ConcurrentHashMap.newKeySet();
+
+    private final Set<Long> pendingShops = ConcurrentHashMap.newKeySet();
+
+    private final Object updateLock = new Object();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    private volatile Instant lastCheckAt;
+
+    private volatile Boolean consistent;
+
+    private volatile List<String> mismatches = List.of();
+
+    @Value("${shop.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${shop.snapshot.load-chunk-size:10000}")
+    private int loadChunkSize;
+
+    @Value("${shop.snapshot.check-sample-size:100}")
+    private int checkSampleSize;
+
+    @Value("${shop.snapshot.reload-on-mismatch:true}")
+    private boolean reloadOnMismatch;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public boolean isActive() {
+        return enabled && snapshot != null;
+    }
+
+    // LOOKUPS (null when the snapshot is not active or does not know the id yet)
+    public Category getCategory(long id) {
+        Snapshot current = active();
+        return current == null ? null : current.categories.get(id);
+    }
+
+    public Product getProduct(long id) {
+        Snapshot current = active();
+        if (current == null) {
+            return null;
+        }
+        ProductEntry entry = current.products.get(id);
+        return entry == null ? null : current.toProduct(entry);
+    }
+
+    public Shop getShop(long id) {
+        Snapshot current = active();
+        return current == null ? null : current.shops.get(id);
+    }
+
+    // LISTINGS (null when the snapshot can not serve the listing)
+    public Slice<Category> getCategoryList(PaginationMode mode, Pageable pageable) {
+        Snapshot current = active();
+        if (current == null || pageable.getSort().isSorted()) {
+            return null;
+        }
+        return page(current.categories.size(), current.categories::valueAt, mode, pageable);
+    }
+
+    /**
+     * Products of a shop and/or of a category subtree, by id like the repository queries.
+     */
+    public Slice<Product> getProductList(Optional<Long> shopId, Optional<Long> categoryId, PaginationMode mode,
+            Pageable pageable) {
+        Snapshot current = active();
+        if (current == null || pageable.getSort().isSorted()) {
+            return null;
+        }
+        if (!shopId.isPresent() && !categoryId.isPresent()) {
+            return page(current.products.size(), i -> current.toProduct(current.products.valueAt(i)), mode, pageable);
+        }
+        long[] ids;
+        if (categoryId.isPresent()) {
+            ids = current.productIdsInSubtree(categoryId.get());
+            if (shopId.isPresent()) {
+                // The products of a deleted shop keep its id in their entries
+                long shop = shopId.get();
+                ids = !current.shops.containsKey(shop) ? NO_IDS
+                        : Arrays.stream(ids).filter(id -> current.products.get(id).shopId == shop).toArray();
+            }
+        } else {
+            ids = Objects.requireNonNullElse(current.productIdsByShop.get(shopId.get()), NO_IDS);
+        }
+        long[] matches = ids;
+        return page(matches.length, i -> current.toProduct(current.products.get(matches[i])), mode, pageable);
+    }
+
+    /**
+     * Same listings as {@link ShopService#getShopList}, with the same bounds on the creation dates.
+     */
+    public Slice<Shop> getShopList(
+            Optional<String> sortBy,
+            Optional<Boolean> inVacations,
+            Optional<String> createdAfter,
+            Optional<String> createdBefore,
+            Optional<String> search,
+            PaginationMode mode,
+            Pageable pageable
+    ) {
+        Snapshot current = active();
+        if (current == null || pageable.getSort().isSorted()) {
+            return null;
+        }
+
+        // SORT
+        if (sortBy.isPresent()) {
+            Shop[] sorted;
+            switch (sortBy.get()) {
+                case "name":
+                    sorted = current.shopsByName;
+                    break;
+                case "createdAt":
+                    sorted = current.shopsByCreatedAt;
+                    break;
+                default:
+                    sorted = current.shopsByNbProducts;
+            }
+            return page(sorted.length, i -> sorted[i], mode, pageable);
+        }
+
+        // NAME
+        Predicate<Shop> filter;
+        if (search.isPresent()) {
+            String name = search.get().toLowerCase();
+            filter = shop -> shop.getName().toLowerCase().contains(name);
+        } else if (inVacations.isPresent() || createdAfter.isPresent() || createdBefore.isPresent()) {
+            // FILTERS: the bounds are strict, except for the date range without vacation filter (BETWEEN)
+            boolean inclusive = !inVacations.isPresent() && createdAfter.isPresent() && createdBefore.isPresent();
+            Optional<LocalDate> after = createdAfter.map(LocalDate::parse);
+            Optional<LocalDate> before = createdBefore.map(LocalDate::parse);
+            filter = shop -> inVacations.map(v -> v == shop.getInVacations()).orElse(true)
+                    && after.map(d -> inclusive ? !shop.getCreatedAt().isBefore(d) : shop.getCreatedAt().isAfter(d))
+                            .orElse(true)
+                    && before.map(d -> inclusive ? !shop.getCreatedAt().isAfter(d) : shop.getCreatedAt().isBefore(d))
+                            .orElse(true);
+        } else {
+            // NONE
+            return page(current.shops.size(), current.shops::valueAt, mode, pageable);
+        }
+        List<Shop> matches = current.shops.values().stream().filter(filter).toList();
+        return page(matches.size(), matches::get, mode, pageable);
+    }
+
+    @TransactionalEventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        switch (event.getEntityType()) {
+            case CATEGORY:
+                pendingCategories.add(event.getEntityId());
+                break;
+            case PRODUCT:
+                pendingProducts.add(event.getEntityId());
+                break;
+            default:
+                pendingShops.add(event.getEntityId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        // The database serves the reads while the snapshot loads
+        Thread loader = new Thread(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not load the catalog snapshot, the reads stay on the database", e);
+            }
+        }, "catalog-snapshot-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public SnapshotStatus reload() {
+        synchronized (updateLock) {
+            long start = System.currentTimeMillis();
+            snapshot = readOnly().execute(status -> load());
+            responseCache.invalidateAll();
+            LOGGER.info("Catalog snapshot {} loaded in {} ms: {} shops, {} products, {} categories",
+                    snapshot.version, System.currentTimeMillis() - start, snapshot.shops.size(),
+                    snapshot.products.size(), snapshot.categories.size());
+        }
+        return getStatus();
+    }
+
+    @Scheduled(fixedDelayString = "${shop.snapshot.refresh-delay-ms:1000}")
+    public void applyPendingChanges() {
+        if (!isActive()) {
+            return;
+        }
+        synchronized (updateLock) {
+            applyPending();
+        }
+    }
+
+    @Scheduled(cron = "${shop.snapshot.check-cron:0 */10 * * * *}")
+    public void checkConsistency() {
+        if (!isActive()) {
+            return;
+        }
+        synchronized (updateLock) {
+            applyPending();
+            Snapshot checked = snapshot;
+            List<String> found = readOnly().execute(status -> compare(checked));
+            if (!found.isEmpty() && pendingChanges() > 0) {
+                // Writes committed during the check, the next check will tell
+                return;
+            }
+            lastCheckAt = Instant.now();
+            mismatches = found;
+            consistent = found.isEmpty();
+            if (found.isEmpty()) {
+                return;
+            }
+            LOGGER.warn("Catalog snapshot {} differs from the database: {}", checked.version, found);
+            if (reloadOnMismatch) {
+                reload();
+            }
+        }
+    }
+
+    /**
+     * Content of the snapshot, last consistency check and estimated memory footprint. The estimate assumes a 64-bit
+     * JVM with compressed references (12-byte object headers, 4-byte references, 8-byte alignment).
+     */
+    public SnapshotStatus getStatus() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return new SnapshotStatus(enabled, 0, null, null, 0, 0, 0, pendingChanges(), lastCheckAt, consistent,
+                    mismatches, 0, 0);
+        }
+        long productBytes = current.estimateProductBytes();
+        long totalBytes = productBytes + current.estimateShopAndCategoryBytes();
+        long perMillion = current.products.size() == 0 ? 0 : productBytes * 1_000_000L / current.products.size();
+        return new SnapshotStatus(enabled, current.version, current.loadedAt, current.updatedAt,
+                current.shops.size(), current.products.size(), current.categories.size(), pendingChanges(),
+                lastCheckAt, consistent, mismatches, totalBytes, perMillion);
+    }
+
+    private Snapshot active() {
+        return enabled ? snapshot : null;
+    }
+
+    private int pendingChanges() {
+        return pendingCategories.size() + pendingProducts.size() + pendingShops.size();
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private Snapshot load() {
+        LongKeyedMap<Category> categories = LongKeyedMap.of(categoryRepository.findAll(), Category::getId);
+        LongKeyedMap<Shop> shops = LongKeyedMap.of(detach(shopRepository.findAllWithOpeningHours()), Shop::getId);
+
+        // The products are read as plain rows, by chunks in the order of their ids
+        List<ProductEntry> entries = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<Object[]> rows = productRepository.findSnapshotRowsAfter(lastId, PageRequest.of(0, loadChunkSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            long firstId = ((Number) rows.get(0)[0]).longValue();
+            lastId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+            entries.addAll(toEntries(rows, productRepository.findCategoryLinksBetween(firstId, lastId)));
+        }
+        LongKeyedMap<ProductEntry> products = LongKeyedMap.of(entries, entry -> entry.id);
+
+        Map<Long, LongArrayBuilder> byShop = new HashMap<>();
+        Map<Long, LongArrayBuilder> byCategory = new HashMap<>();
+        for (ProductEntry entry : entries) {
+            if (entry.shopId != ProductEntry.NO_SHOP) {
+                byShop.computeIfAbsent(entry.shopId, k -> new LongArrayBuilder()).add(entry.id);
+            }
+            for (long categoryId : entry.categoryIds) {
+                byCategory.computeIfAbsent(categoryId, k -> new LongArrayBuilder()).add(entry.id);
+            }
+        }
+        Instant now = Instant.now();
+        return new Snapshot(versions.incrementAndGet(), now, now, shops, products, categories,
+                toGroups(byShop), toGroups(byCategory));
+    }
+
+    private void applyPending() {
+        Set<Long> categoryIds = drain(pendingCategories);
+        Set<Long> productIds = drain(pendingProducts);
+        Set<Long> shopIds = drain(pendingShops);
+        if (categoryIds.isEmpty() && productIds.isEmpty() && shopIds.isEmpty()) {
+            return;
+        }
+        try {
+            Snapshot current = snapshot;
+            Snapshot next = readOnly().execute(status -> applyChanges(current, categoryIds, productIds, shopIds));
+            snapshot = next;
+            // The responses cached from the previous snapshot since the commit of these writes
+            responseCache.invalidate(EntityType.CATEGORY, categoryIds);
+            responseCache.invalidate(EntityType.PRODUCT, productIds);
+            responseCache.invalidate(EntityType.SHOP, shopIds);
+            Set<Long> scopedShops = new HashSet<>();
+            Set<Long> scopedCategories = new HashSet<>();
+            for (long productId : productIds) {
+                for (Snapshot version : List.of(current, next)) {
+                    ProductEntry entry = version.products.get(productId);
+                    if (entry != null) {
+                        if (entry.shopId != ProductEntry.NO_SHOP) {
+                            scopedShops.add(entry.shopId);
+                        }
+                        Arrays.stream(entry.categoryIds).forEach(scopedCategories::add);
+                    }
+                }
+            }
+            responseCache.invalidateListings(scopedShops, scopedCategories);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not update the catalog snapshot, retrying with the next changes", e);
+            pendingCategories.addAll(categoryIds);
+            pendingProducts.addAll(productIds);
+            pendingShops.addAll(shopIds);
+        }
+    }
+
+    private Snapshot applyChanges(Snapshot current, Set<Long> categoryIds, Set<Long> productIds, Set<Long> shopIds) {
+        // CATEGORIES
+        Map<Long, Category> categoryUpserts = new HashMap<>();
+        categoryRepository.findAllById(categoryIds)
+                .forEach(category -> categoryUpserts.put(category.getId(), category));
+        Set<Long> categoryRemovals = new HashSet<>(categoryIds);
+        categoryRemovals.removeAll(categoryUpserts.keySet());
+
+        // PRODUCTS
+        Map<Long, ProductEntry> productUpserts = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            toEntries(productRepository.findSnapshotRowsByIdIn(productIds),
+                    productRepository.findCategoryLinksByProductIdIn(productIds))
+                    .forEach(entry -> productUpserts.put(entry.id, entry));
+        }
+        Set<Long> productRemovals = new HashSet<>(productIds);
+        productRemovals.removeAll(productUpserts.keySet());
+
+        Map<Long, Set<Long>> removedFromShops = new HashMap<>();
+        Map<Long, Set<Long>> addedToShops = new HashMap<>();
+        Map<Long, Set<Long>> removedFromCategories = new HashMap<>();
+        Map<Long, Set<Long>> addedToCategories = new HashMap<>();
+        // The number of products and categories of the shops of the changed products change too
+        Set<Long> touchedShops = new HashSet<>(shopIds);
+        for (long productId : productIds) {
+            ProductEntry previous = current.products.get(productId);
+            if (previous != null) {
+                group(removedFromShops, previous.shopId, productId);
+                for (long categoryId : previous.categoryIds) {
+                    group(removedFromCategories, categoryId, productId);
+                }
+                touchedShops.add(previous.shopId);
+            }
+            ProductEntry next = productUpserts.get(productId);
+            if (next != null) {
+                group(addedToShops, next.shopId, productId);
+                for (long categoryId : next.categoryIds) {
+                    group(addedToCategories, categoryId, productId);
+                }
+                touchedShops.add(next.shopId);
+            }
+        }
+        // The deleted categories were unlinked from their products in SQL, which changed the counts of their shops
+        for (long categoryId : categoryRemovals) {
+            for (long productId : Objects.requireNonNullElse(current.productIdsByCategory.get(categoryId), NO_IDS)) {
+                touchedShops.add(current.products.get(productId).shopId);
+            }
+        }
+        touchedShops.remove(ProductEntry.NO_SHOP);
+
+        // SHOPS
+        Map<Long, Shop> shopUpserts = new HashMap<>();
+        if (!touchedShops.isEmpty()) {
+            detach(shopRepository.findAllWithOpeningHoursByIdIn(touchedShops))
+                    .forEach(shop -> shopUpserts.put(shop.getId(), shop));
+        }
+        Set<Long> shopRemovals = new HashSet<>(touchedShops);
+        shopRemovals.removeAll(shopUpserts.keySet());
+
+        // The links of the deleted shops and categories are dropped with them
+        removedFromShops.keySet().removeAll(shopRemovals);
+        addedToShops.keySet().removeAll(shopRemovals);
+        removedFromCategories.keySet().removeAll(categoryRemovals);
+        addedToCategories.keySet().removeAll(categoryRemovals);
+        LongKeyedMap<long[]> productIdsByShop = updateGroups(current.productIdsByShop, removedFromShops, addedToShops)
+                .with(Map.of(), shopRemovals);
+        LongKeyedMap<long[]> productIdsByCategory = updateGroups(current.productIdsByCategory, removedFromCategories,
+                addedToCategories).with(Map.of(), categoryRemovals);
+
+        return new Snapshot(versions.incrementAndGet(), current.loadedAt, Instant.now(),
+                current.shops.with(shopUpserts, shopRemovals),
+                current.products.with(productUpserts, productRemovals),
+                current.categories.with(categoryUpserts, categoryRemovals),
+                productIdsByShop, productIdsByCategory);
+    }
+
+    private List<String> compare(Snapshot checked) {
+        List<String> found = new ArrayList<>();
+        compareCount(found, "shops", checked.shops.size(), shopRepository.count());
+        compareCount(found, "products", checked.products.size(), productRepository.count());
+        compareCount(found, "categories", checked.categories.size(), categoryRepository.count());
+
+        // The categories are few, they are all compared
+        for (Category category : categoryRepository.findAll()) {
+            Category known = checked.categories.get(category.getId());
+            if (known == null || !known.getName().equals(category.getName())
+                    || !Objects.equals(known.getParentId(), category.getParentId())) {
+                found.add("category " + category.getId());
+            }
+        }
+
+        Map<Long, Shop> shops = new HashMap<>();
+        List<Long> sampledShops = sample(checked.shops.size(), checked.shops::keyAt);
+        if (!sampledShops.isEmpty()) {
+            shopRepository.findAllWithOpeningHoursByIdIn(sampledShops).forEach(shop -> shops.put(shop.getId(), shop));
+        }
+        for (long shopId : sampledShops) {
+            Shop known = checked.shops.get(shopId);
+            Shop shop = shops.get(shopId);
+            long grouped = Objects.requireNonNullElse(checked.productIdsByShop.get(shopId), NO_IDS).length;
+            if (shop == null || !known.getName().equals(shop.getName())
+                    || known.getInVacations() != shop.getInVacations()
+                    || known.getNbProducts() != shop.getNbProducts()
+                    || known.getNbCategories() != shop.getNbCategories()
+                    || grouped != shop.getNbProducts()) {
+                found.add("shop " + shopId);
+            }
+        }
+
+        List<Long> sampledProducts = sample(checked.products.size(), checked.products::keyAt);
+        Map<Long, ProductEntry> products = new HashMap<>();
+        if (!sampledProducts.isEmpty()) {
+            toEntries(productRepository.findSnapshotRowsByIdIn(sampledProducts),
+                    productRepository.findCategoryLinksByProductIdIn(sampledProducts))
+                    .forEach(entry -> products.put(entry.id, entry));
+        }
+        for (long productId : sampledProducts) {
+            ProductEntry known = checked.products.get(productId);
+            ProductEntry product = products.get(productId);
+            // The ids of deleted shops and categories are kept by the entries but never served
+            long knownShopId = checked.shops.containsKey(known.shopId) ? known.shopId : ProductEntry.NO_SHOP;
+            long[] knownCategoryIds = Arrays.stream(known.categoryIds).filter(checked.categories::containsKey)
+                    .toArray();
+            if (product == null || known.price != product.price || knownShopId != product.shopId
+                    || !Arrays.equals(knownCategoryIds, product.categoryIds)
+                    || !known.localizedProducts.equals(product.localizedProducts)) {
+                found.add("product " + productId);
+            }
+        }
+        return found;
+    }
+
+    private void compareCount(List<String> found, String table, long known, long actual) {
+        if (known != actual) {
+            found.add(table + " count " + known + " instead of " + actual);
+        }
+    }
+
+    private List<Long> sample(int size, IntFunction<Long> keyAt) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Long> sampled = new HashSet<>();
+        int count = Math.min(checkSampleSize, size);
+        while (sampled.size() < count) {
+            sampled.add(keyAt.apply(random.nextInt(size)));
+        }
+        return new ArrayList<>(sampled);
+    }
+
+    private static <T> Slice<T> page(int total, IntFunction<T> element, PaginationMode mode, Pageable pageable) {
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+        int to = pageable.isPaged() ? (int) Math.min((long) from + pageable.getPageSize(), total) : total;
+        List<T> content = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            content.add(element.apply(i));
+        }
+        // The total is known for free, it is only left out when the client asked for a slice
+        if (mode == PaginationMode.SLICE) {
+            return new SliceImpl<>(content, pageable, to < total);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ProductEntry> toEntries(List<Object[]> rows, List<Object[]> links) {
+        Map<Long, LongArrayBuilder> categoriesByProduct = new HashMap<>();
+        for (Object[] link : links) {
+            categoriesByProduct.computeIfAbsent(((Number) link[0]).longValue(), k -> new LongArrayBuilder())
+                    .add(((Number) link[1]).longValue());
+        }
+        List<ProductEntry> entries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            long id = ((Number) row[0]).longValue();
+            LongArrayBuilder categoryIds = categoriesByProduct.get(id);
+            entries.add(new ProductEntry(id, ((Number) row[1]).floatValue(),
+                    row[2] == null ? ProductEntry.NO_SHOP : ((Number) row[2]).longValue(),
+                    categoryIds == null ? NO_IDS : categoryIds.toArray(),
+                    List.copyOf((List<LocalizedProduct>) row[3])));
+        }
+        return entries;
+    }
+
+    private static List<Shop> detach(List<Shop> shops) {
+        // Plain lists instead of the collections of the persistence context
+        shops.forEach(shop -> shop.setOpeningHours(new ArrayList<>(shop.getOpeningHours())));
+        return shops;
+    }
+
+    private static Set<Long> drain(Set<Long> pending) {
+        Set<Long> drained = new HashSet<>();
+        for (Iterator<Long> iterator = pending.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    private static void group(Map<Long, Set<Long>> groups, long key, long id) {
+        if (key != ProductEntry.NO_SHOP) {
+            groups.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static LongKeyedMap<long[]> toGroups(Map<Long, LongArrayBuilder> builders) {
+        Map<Long, long[]> groups = new HashMap<>();
+        builders.forEach((key, builder) -> groups.put(key, builder.toArray()));
+        return LongKeyedMap.<long[]>empty().with(groups, Set.of());
+    }
+
+    /**
+     * New groups of sorted ids, only the touched groups being copied.
+     */
+    private static LongKeyedMap<long[]> updateGroups(LongKeyedMap<long[]> groups, Map<Long, Set<Long>> removed,
+            Map<Long, Set<Long>> added) {
+        Set<Long> keys = new HashSet<>(removed.keySet());
+        keys.addAll(added.keySet());
+        Map<Long, long[]> upserts = new HashMap<>();
+        Set<Long> removals = new HashSet<>();
+        for (long key : keys) {
+            Set<Long> removedIds = removed.getOrDefault(key, Set.of());
+            long[] ids = LongStream.concat(
+                    Arrays.stream(Objects.requireNonNullElse(groups.get(key), NO_IDS))
+                            .filter(id -> !removedIds.contains(id)),
+                    added.getOrDefault(key, Set.of()).stream().mapToLong(Long::longValue)
+            ).sorted().distinct().toArray();
+            if (ids.length == 0) {
+                removals.add(key);
+            } else {
+                upserts.put(key, ids);
+            }
+        }
+        return groups.with(upserts, removals);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long stringBytes(String value) {
+        // String object and its byte array, one byte per character for latin-1 text
+        return value == null ? 0 : align(24) + align(16 + value.length());
+    }
+
+    /**
+     * Product as kept by the snapshot, its shop and categories being resolved when it is served.
+     */
+    private static final class ProductEntry {
+        static final long NO_SHOP = -1;
+
+        final long id;
+
+        final float price;
+
+        final long shopId;
+
+        final long[] categoryIds;
+
+        final List<LocalizedProduct> localizedProducts;
+
+        ProductEntry(long id, float price, long shopId, long[] categoryIds,
+                List<LocalizedProduct> localizedProducts) {
+            this.id = id;
+            this.price = price;
+            this.shopId = shopId;
+            this.categoryIds = categoryIds;
+            this.localizedProducts = localizedProducts;
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+
+        final Instant loadedAt;
+
+        final Instant updatedAt;
+
+        final LongKeyedMap<Shop> shops;
+
+        final LongKeyedMap<ProductEntry> products;
+
+        final LongKeyedMap<Category> categories;
+
+        // Precomputed sort orders, the ties being broken by id
+        final Shop[] shopsByName;
+
+        final Shop[] shopsByCreatedAt;
+
+        final Shop[] shopsByNbProducts;
+
+        // Sorted ids of the products of each shop and of each category (without its subcategories)
+        final LongKeyedMap<long[]> productIdsByShop;
+
+        final LongKeyedMap<long[]> productIdsByCategory;
+
+        final Map<Long, List<Long>> childrenByCategory = new HashMap<>();
+
+        Snapshot(long version, Instant loadedAt, Instant updatedAt, LongKeyedMap<Shop> shops,
+                LongKeyedMap<ProductEntry> products, LongKeyedMap<Category> categories,
+                LongKeyedMap<long[]> productIdsByShop, LongKeyedMap<long[]> productIdsByCategory) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.updatedAt = updatedAt;
+            this.shops = shops;
+            this.products = products;
+            this.categories = categories;
+            this.productIdsByShop = productIdsByShop;
+            this.productIdsByCategory = productIdsByCategory;
+
+            this.shopsByName = sorted(Comparator.comparing(Shop::getName));
+            this.shopsByCreatedAt = sorted(Comparator.comparing(Shop::getCreatedAt));
+            this.shopsByNbProducts = sorted(Comparator.comparingLong(Shop::getNbProducts).reversed());
+            for (Category category : categories.values()) {
+                if (category.getParentId() != null) {
+                    childrenByCategory.computeIfAbsent(category.getParentId(), k -> new ArrayList<>())
+                            .add(category.getId());
+                }
+            }
+        }
+
+        /**
+         * Sorted ids of the products of the category and of its whole subtree.
+         */
+        long[] productIdsInSubtree(long categoryId) {
+            if (!categories.containsKey(categoryId)) {
+                return NO_IDS;
+            }
+            List<long[]> groups = new ArrayList<>();
+            Deque<Long> toVisit = new ArrayDeque<>(List.of(categoryId));
+            while (!toVisit.isEmpty()) {
+                long id = toVisit.pop();
+                Optional.ofNullable(productIdsByCategory.get(id)).ifPresent(groups::add);
+                toVisit.addAll(childrenByCategory.getOrDefault(id, List.of()));
+            }
+            if (groups.size() == 1) {
+                return groups.get(0);
+            }
+            return groups.stream().flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+        }
+
+        /**
+         * New product instance for each read, since the responses set the negotiated locale on the products.
+         */
+        Product toProduct(ProductEntry entry) {
+            Product product = new Product();
+            product.setId(entry.id);
+            product.setPrice(entry.price);
+            product.setLocalizedProducts(entry.localizedProducts);
+            product.setShop(shops.get(entry.shopId));
+            List<Category> productCategories = new ArrayList<>(entry.categoryIds.length);
+            for (long categoryId : entry.categoryIds) {
+                Optional.ofNullable(categories.get(categoryId)).ifPresent(productCategories::add);
+            }
+            product.setCategories(productCategories);
+            return product;
+        }
+
+        long estimateProductBytes() {
+            // Keys and references of the map, then the entries with their arrays and translations
+            long bytes = align(16 + 8L * products.size()) + align(16 + 4L * products.size());
+            for (ProductEntry entry : products.values()) {
+                bytes += align(12 + 8 + 4 + 8 + 4 + 4) + align(16 + 8L * entry.categoryIds.length);
+                bytes += align(16 + 4L * entry.localizedProducts.size()) + 16;
+                for (LocalizedProduct localizedProduct : entry.localizedProducts) {
+                    bytes += align(12 + 3 * 4) + stringBytes(localizedProduct.getDescription())
+                            + stringBytes(localizedProduct.getLocale()) + stringBytes(localizedProduct.getName());
+                }
+            }
+            // The per shop and per category groups of ids
+            bytes += groupBytes(productIdsByShop) + groupBytes(productIdsByCategory);
+            return bytes;
+        }
+
+        long estimateShopAndCategoryBytes() {
+            long bytes = 3 * align(16 + 4L * shops.size());
+            for (Shop shop : shops.values()) {
+                bytes += align(12 + 8 + 4 + 1 + 4 * 7) + align(16 + 8) + 2 * align(16 + 8)
+                        + (shop.getLatitude() == null ? 0 : 2 * align(12 + 8))
+                        + stringBytes(shop.getName()) + align(40 + 4L * shop.getOpeningHours().size())
+                        + shop.getOpeningHours().size() * (align(12 + 8 + 8 + 4 + 4) + 2 * align(12 + 8));
+            }
+            for (Category category : categories.values()) {
+                bytes += align(12 + 8 + 4 + 4 + 4) + stringBytes(category.getName()) + align(16 + 8);
+            }
+            return bytes + align(16 + 12L * categories.size());
+        }
+
+        private static long groupBytes(LongKeyedMap<long[]> groups) {
+            long bytes = align(16 + 12L * groups.size());
+            for (long[] ids : groups.values()) {
+                bytes += align(16 + 8L * ids.length);
+            }
+            return bytes;
+        }
+
+        private Shop[] sorted(Comparator<Shop> order) {
+            return shops.values().stream().sorted(order.thenComparingLong(Shop::getId)).toArray(Shop[]::new);
+        }
+    }
+
+    /**
+     * Growable array of primitive longs.
+     */
+    private static final class LongArrayBuilder {
+        private long[] values = new long[4];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,48 +1,110 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
 import fr.fullstack.shopapp.model.Category;
 import fr.fullstack.shopapp.model.Product;
 import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.util.BatchLookup;
+import fr.fullstack.shopapp.util.PaginationMode;
+import io.micrometer.observation.annotation.Observed;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.work.SearchIndexingPlan;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
+@Observed(name = "shop.service")
 public class CategoryService {
+    @Value("${shop.batch.max-size:100}")
+    private int maxBatchSize;
+
     @Autowired
     private CategoryRepository categoryRepository;
 
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogSnapshotService snapshotService;
+
+    @Autowired
+    private PaginationService paginationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Transactional
     public Category createCategory(Category category) throws Exception {
         try {
-            return categoryRepository.save(category);
+            checkParent(category);
+            Category newCategory = categoryRepository.saveAndFlush(category);
+            if (newCategory.getParentId() == null) {
+                categoryRepository.insertRootClosure(newCategory.getId());
+            } else {
+                categoryRepository.insertClosure(newCategory.getId(), newCategory.getParentId());
+            }
+            eventPublisher.publishEvent(
+                    new CatalogChangeEvent(EntityType.CATEGORY, newCategory.getId(), Action.CREATED));
+            return newCategory;
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    /**
+     * Deletes the category and its whole subtree, with a fixed number of statements whatever the size of the subtree.
+     */
     @Transactional
     public void deleteCategoryById(long id) throws Exception {
         try {
-            Category category = getCategory(id);
+            getCategory(id);
+            List<Long> subtreeIds = categoryRepository.findSubtreeIds(id);
+            List<Long> productIds = categoryRepository.findProductIdsInCategories(subtreeIds);
             // delete nested relations with products
-            deleteNestedRelations(category);
-            categoryRepository.deleteById(id);
+            categoryRepository.deleteProductLinks(subtreeIds);
+            statisticsService.removeCategories(subtreeIds);
+            categoryRepository.deleteAllByIdIn(subtreeIds);
+            categoryRepository.deleteClosure(subtreeIds);
+            // The links were deleted with SQL, so the search index must be told about the products which lost them
+            SearchIndexingPlan indexingPlan = Search.session(em).indexingPlan();
+            for (Product product : productRepository.findAllById(productIds)) {
+                indexingPlan.addOrUpdate(product);
+            }
+            for (Long categoryId : subtreeIds) {
+                eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.CATEGORY, categoryId, Action.DELETED));
+            }
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
+    @Transactional(readOnly = true)
     public Category getCategoryById(long id) throws Exception {
+        Category snapshotCategory = snapshotService.getCategory(id);
+        if (snapshotCategory != null) {
+            return snapshotCategory;
+        }
         try {
             return getCategory(id);
         } catch (Exception e) {
@@ -50,28 +112,77 @@ public class CategoryService {
         }
     }
 
-    public Page<Category> getCategoryList(Pageable pageable) {
-        return categoryRepository.findByOrderByIdAsc(pageable);
+    @Transactional(readOnly = true)
+    public BatchResult<Category> getCategoriesByIds(List<Long> ids) throws Exception {
+        List<Long> distinctIds = BatchLookup.normalizeIds(ids, maxBatchSize);
+        return BatchLookup.toResult(distinctIds, categoryRepository.findAllById(distinctIds), Category::getId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Category> getCategoryChildren(long id) throws Exception {
+        try {
+            getCategory(id);
+            return categoryRepository.findByParentIdOrderByNameAsc(id);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<Category> getCategoryDescendants(long id) throws Exception {
+        try {
+            getCategory(id);
+            return categoryRepository.findDescendants(id);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
     }
 
+    @Transactional(readOnly = true)
+    public Slice<Category> getCategoryList(Optional<String> pagination, Pageable pageable) throws Exception {
+        PaginationMode mode = paginationService.parseMode(pagination);
+        Slice<Category> snapshotList = snapshotService.getCategoryList(mode, pageable);
+        if (snapshotList != null) {
+            return snapshotList;
+        }
+        return paginationService.paginate(mode, pageable,
+                () -> paginationService.estimateRows("categories", categoryRepository::count),
+                categoryRepository::findByOrderByIdAsc, categoryRepository::findSliceByOrderByIdAsc);
+    }
+
+    /**
+     * Updates the category. When its parent changes, the whole subtree is moved with it.
+     */
+    @Transactional
     public Category updateCategory(Category category) throws Exception {
         try {
-            getCategory(category.getId());
-            return this.createCategory(category);
+            Long previousParentId = getCategory(category.getId()).getParentId();
+            checkParent(category);
+            Category updatedCategory = categoryRepository.saveAndFlush(category);
+            if (!Objects.equals(previousParentId, updatedCategory.getParentId())) {
+                categoryRepository.detachSubtree(updatedCategory.getId());
+                if (updatedCategory.getParentId() != null) {
+                    categoryRepository.attachSubtree(updatedCategory.getId(), updatedCategory.getParentId());
+                }
+            }
+            eventPublisher.publishEvent(
+                    new CatalogChangeEvent(EntityType.CATEGORY, updatedCategory.getId(), Action.UPDATED));
+            return updatedCategory;
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    private void deleteNestedRelations(Category category) {
-        List<Product> products = category.getProducts();
-        for (int i = 0; i < products.size(); i++) {
-            Product product = products.get(i);
-            List<Category> categories = product.getCategories();
-            categories.remove(category);
-            product.setCategories(categories);
-            em.merge(product);
-            em.flush();
+    private void checkParent(Category category) throws Exception {
+        Long parentId = category.getParentId();
+        if (parentId == null) {
+            return;
+        }
+        getCategory(parentId);
+        // A category can not be moved below itself or one of its descendants
+        if (category.getId() != 0 && categoryRepository.isInSubtree(category.getId(), parentId)) {
+            throw new Exception("Category with id " + parentId + " is in the subtree of category with id "
+                    + category.getId());
         }
     }
 
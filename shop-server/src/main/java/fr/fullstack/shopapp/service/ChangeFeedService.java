@@ -0,0 +1,373 @@
+package fr.fullstack.shopapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.model.ChangeLogEntry;
+import fr.fullstack.shopapp.repository.ChangeLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Change feed of the catalog, streamed with server-sent events.
+ * <p>
+ * Every write on the catalog is appended to the {@code change_log} table and announced with a PostgreSQL
+ * {@code NOTIFY}, in the transaction of the write: the notification is only delivered on commit. Each replica
+ * {@code LISTEN}s on a dedicated connection and forwards the notifications to its own subscribers. A subscriber
+ * resuming from a sequence number first receives the entries it missed from the change log.
+ * <p>
+ * Each replica also applies the notified writes to what it derives from the catalog: the cached responses, the
+ * bitmaps and the snapshot are invalidated or updated as they are by the writes of the replica itself, so the writes
+ * of the other replicas reach them once notified instead of after their full refreshes. The writes of the replica are
+ * applied a second time, which changes nothing.
+ * <p>
+ * The sequence numbers are only allocated once the transaction holds a transaction-scoped advisory lock, released on
+ * commit: the entries are committed in the order of their numbers, so a number is never made visible after a greater
+ * one was dispatched.
+ * <p>
+ * The listener thread never writes to the clients: the live entries and the heartbeats are queued to each subscriber
+ * (up to {@code shop.changes.subscriber-queue-size} events) and sent by a pool of {@code shop.changes.sender-threads}
+ * threads, so a slow client only delays itself. A subscriber whose queue overflows is disconnected, and resumes from
+ * its last entry with {@code Last-Event-ID} or {@code since}.
+ */
+@Service
+@Lazy(false)
+public class ChangeFeedService {
+    public static final String CHANNEL = "catalog_changes";
+
+    // Key of the advisory lock ordering the appends to the change log
+    private static final long APPEND_LOCK = 0x63686e676c6f67L;
+
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    // Events sent to a subscriber before its sender moves on to the other subscribers
+    private static final int SEND_BATCH_SIZE = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Last entry forwarded to the subscribers, to catch up after a reconnection of the listener
+    private volatile long lastDispatchedId;
+
+    private volatile boolean running = true;
+
+    private ExecutorService senders;
+
+    @Value("${shop.changes.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${shop.changes.listen-poll-ms:1000}")
+    private int listenPollMs;
+
+    @Value("${shop.changes.replay-max:10000}")
+    private long maxReplay;
+
+    @Value("${shop.changes.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${shop.changes.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${shop.changes.subscriber-queue-size:1000}")
+    private int subscriberQueueSize;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private ProductMembershipIndex membershipIndex;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onCatalogChange(CatalogChangeEvent event) throws IOException {
+        // Held until the end of the transaction, taking it again in the same transaction does not wait
+        em.createNativeQuery("SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(?1)) l")
+                .setParameter(1, APPEND_LOCK)
+                .getSingleResult();
+        ChangeLogEntry entry = new ChangeLogEntry();
+        entry.setEntityType(event.getEntityType());
+        entry.setEntityId(event.getEntityId());
+        entry.setAction(event.getAction());
+        entry.setChangedAt(Instant.now());
+        changeLogRepository.save(entry);
+        // pg_notify returns void, which cannot be read as a result
+        em.createNativeQuery("SELECT COUNT(*) FROM (SELECT pg_notify(?1, ?2)) n")
+                .setParameter(1, CHANNEL)
+                .setParameter(2, objectMapper.writeValueAsString(entry))
+                .getSingleResult();
+    }
+
+    /**
+     * @param since sequence number of the last entry received by the client, the stream starts after it
+     */
+    public SseEmitter subscribe(Optional<Long> since) throws IOException {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, since.orElse(lastDispatchedId));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        synchronized (subscriber) {
+            if (since.isPresent() && !canReplay(since.get())) {
+                // The client must reload the lists, then it follows the changes from now
+                subscriber.lastId = Math.max(lastDispatchedId, Optional.ofNullable(changeLogRepository.findMaxId())
+                        .orElse(0L));
+                emitter.send(SseEmitter.event().name("reset").data(subscriber.lastId));
+            }
+            replay(subscriber);
+            subscribers.add(subscriber);
+            // The entries committed during the first replay, the live ones are held until this block exits
+            replay(subscriber);
+        }
+        return emitter;
+    }
+
+    @PostConstruct
+    public void startSenders() {
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListener() {
+        lastDispatchedId = Optional.ofNullable(changeLogRepository.findMaxId()).orElse(0L);
+        Thread listener = new Thread(this::listen, "change-feed-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stopListener() {
+        running = false;
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${shop.changes.heartbeat-ms:30000}")
+    public void sendHeartbeats() {
+        // Keeps the idle connections open through the proxies
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    @Scheduled(cron = "${shop.changes.purge-cron:0 0 3 * * *}")
+    @Transactional
+    public void purge() {
+        changeLogRepository.deleteOlderThan(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+    }
+
+    private boolean canReplay(long since) {
+        Long minId = changeLogRepository.findMinId();
+        // Entries after since were purged, or there are too many to replay
+        return (minId == null || since >= minId - 1) && changeLogRepository.countByIdGreaterThan(since) <= maxReplay;
+    }
+
+    private void replay(Subscriber subscriber) {
+        List<ChangeLogEntry> entries;
+        do {
+            entries = changeLogRepository.findByIdGreaterThanOrderByIdAsc(
+                    subscriber.lastId, PageRequest.of(0, REPLAY_BATCH_SIZE));
+            entries.forEach(subscriber::replayEntry);
+        } while (entries.size() == REPLAY_BATCH_SIZE);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Entries committed while the listener was not connected
+                List<ChangeLogEntry> missed;
+                do {
+                    missed = changeLogRepository.findByIdGreaterThanOrderByIdAsc(
+                            lastDispatchedId, PageRequest.of(0, REPLAY_BATCH_SIZE));
+                    missed.forEach(this::dispatch);
+                } while (missed.size() == REPLAY_BATCH_SIZE);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(listenPollMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(objectMapper.readValue(notification.getParameter(), ChangeLogEntry.class));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    LOGGER.warn("Change feed listener disconnected, reconnecting", e);
+                    try {
+                        Thread.sleep(listenPollMs);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch(ChangeLogEntry entry) {
+        lastDispatchedId = Math.max(lastDispatchedId, entry.getId());
+        CatalogChangeEvent event =
+                new CatalogChangeEvent(entry.getEntityType(), entry.getEntityId(), entry.getAction());
+        responseCache.onCatalogChange(event);
+        membershipIndex.onCatalogChange(event);
+        catalogSnapshotService.onCatalogChange(event);
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                subscriber.sendEntry(entry);
+            }
+        }
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+
+        // Events waiting for a sender, the subscriber is disconnected when it is full
+        private final BlockingQueue<SseEmitter.SseEventBuilder> outbox = new ArrayBlockingQueue<>(subscriberQueueSize);
+
+        // Set while a sender is sending the queued events, so that they are sent in order
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private volatile boolean overflowed;
+
+        private long lastId;
+
+        Subscriber(SseEmitter emitter, long lastId) {
+            this.emitter = emitter;
+            this.lastId = lastId;
+        }
+
+        /**
+         * Sends an entry of the change log on the thread of the subscription, before the live entries.
+         */
+        void replayEntry(ChangeLogEntry entry) {
+            if (entry.getId() > lastId) {
+                lastId = entry.getId();
+                try {
+                    emitter.send(toEvent(entry));
+                } catch (IOException | IllegalStateException e) {
+                    close(e);
+                }
+            }
+        }
+
+        void sendEntry(ChangeLogEntry entry) {
+            // Skips the entries already sent by the replay
+            if (entry.getId() > lastId) {
+                lastId = entry.getId();
+                enqueue(toEvent(entry));
+            }
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!outbox.offer(event)) {
+                LOGGER.info("Change feed subscriber disconnected, {} events were waiting to be sent", outbox.size());
+                overflowed = true;
+                closed = true;
+                subscribers.remove(this);
+                outbox.clear();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::sendQueued);
+            }
+        }
+
+        private void sendQueued() {
+            SseEmitter.SseEventBuilder event;
+            for (int i = 0; i < SEND_BATCH_SIZE && !closed && (event = outbox.poll()) != null; i++) {
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    close(e);
+                    return;
+                }
+            }
+            if (closed) {
+                // Completed once, by the last sender: the client resumes from its last entry
+                if (overflowed) {
+                    emitter.complete();
+                }
+                return;
+            }
+            sending.set(false);
+            // Events queued, or an overflow, after the loop stopped polling
+            if (closed || !outbox.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private SseEmitter.SseEventBuilder toEvent(ChangeLogEntry entry) {
+            return SseEmitter.event().id(String.valueOf(entry.getId())).name("change")
+                    .data(entry, MediaType.APPLICATION_JSON);
+        }
+
+        private void close(Exception e) {
+            closed = true;
+            subscribers.remove(this);
+            outbox.clear();
+            emitter.completeWithError(e);
+        }
+    }
+}
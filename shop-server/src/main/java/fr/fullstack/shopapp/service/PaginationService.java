@@ -0,0 +1,128 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.util.PaginationMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the listings in the requested {@link PaginationMode}.
+ * <p>
+ * The estimated totals of unfiltered listings come from the row count kept by the planner statistics of PostgreSQL.
+ * The estimated totals of filtered listings are exact counts cached per filter and refreshed in the background, so a
+ * listing only pays for its count the first time its filter is seen.
+ */
+@Service
+@Lazy(false)
+public class PaginationService {
+    private final Map<String, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+
+    @Value("${shop.pagination.count-cache-max-entries:1000}")
+    private int maxCachedCounts;
+
+    @Value("${shop.pagination.default-mode:exact}")
+    private String defaultMode;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public PaginationMode parseMode(Optional<String> mode) throws Exception {
+        return PaginationMode.parse(mode.or(() -> Optional.of(defaultMode)), PaginationMode.EXACT);
+    }
+
+    /**
+     * @param estimatedTotal total used by the estimated mode, see {@link #estimateRows} and {@link #cachedCount}
+     * @param pageQuery      query returning a page with its exact total
+     * @param sliceQuery     query returning a slice, without counting
+     */
+    public <T> Slice<T> paginate(
+            PaginationMode mode,
+            Pageable pageable,
+            LongSupplier estimatedTotal,
+            Function<Pageable, Page<T>> pageQuery,
+            Function<Pageable, Slice<T>> sliceQuery
+    ) {
+        switch (mode) {
+            case SLICE:
+                return sliceQuery.apply(pageable);
+            case ESTIMATED:
+                Slice<T> slice = sliceQuery.apply(pageable);
+                // The estimate must stay consistent with what this page has just seen
+                long seen = pageable.getOffset() + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0);
+                return new PageImpl<>(slice.getContent(), pageable, Math.max(estimatedTotal.getAsLong(), seen));
+            default:
+                return pageQuery.apply(pageable);
+        }
+    }
+
+    /**
+     * Number of rows of a table according to the planner statistics, which are refreshed by autovacuum.
+     */
+    public long estimateRows(String table, LongSupplier exactCount) {
+        Number rows = (Number) em.createNativeQuery("SELECT reltuples FROM pg_class WHERE oid = to_regclass(?1)")
+                .setParameter(1, table)
+                .getResultStream().findFirst().orElse(-1);
+        // A table never analyzed yet has no statistics (-1)
+        return rows.longValue() >= 0 ? rows.longValue() : cachedCount(table, exactCount);
+    }
+
+    /**
+     * Exact count cached under the given key until the next background refresh.
+     */
+    public long cachedCount(String key, LongSupplier exactCount) {
+        CachedCount cached = cachedCounts.get(key);
+        if (cached != null) {
+            cached.used = true;
+            return cached.value;
+        }
+        long value = exactCount.getAsLong();
+        if (cachedCounts.size() < maxCachedCounts) {
+            cachedCounts.put(key, new CachedCount(exactCount, value));
+        }
+        return value;
+    }
+
+    /**
+     * Exact count of a page query, using a one-row page since only its total matters.
+     */
+    public static <T> LongSupplier countOf(Function<Pageable, Page<T>> pageQuery) {
+        return () -> pageQuery.apply(PageRequest.of(0, 1)).getTotalElements();
+    }
+
+    @Scheduled(fixedDelayString = "${shop.pagination.count-refresh-delay-ms:60000}")
+    public void refreshCachedCounts() {
+        // The counts not used since the last refresh are dropped instead of refreshed
+        cachedCounts.entrySet().removeIf(entry -> !entry.getValue().used);
+        cachedCounts.values().forEach(cached -> {
+            cached.used = false;
+            cached.value = cached.exactCount.getAsLong();
+        });
+    }
+
+    private static class CachedCount {
+        private final LongSupplier exactCount;
+
+        private volatile boolean used = true;
+
+        private volatile long value;
+
+        CachedCount(LongSupplier exactCount, long value) {
+            this.exactCount = exactCount;
+            this.value = value;
+        }
+    }
+}
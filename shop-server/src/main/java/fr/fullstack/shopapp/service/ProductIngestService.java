@@ -0,0 +1,373 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.IngestTicket;
+import fr.fullstack.shopapp.dto.ProductUpdate;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.model.LocalizedProduct;
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous ingestion of product updates for the partner feeds.
+ * <p>
+ * The updates are accepted into a bounded queue coalesced per product id (the fields of the latest update win), and a
+ * small pool of writers commits them in groups of {@code shop.ingest.batch-size} products per transaction, with JDBC
+ * batching. A product being written is never taken by another writer, so the updates of a product are committed in
+ * order. A batch whose commit fails is split in halves until the failing updates are isolated, so that the other
+ * updates are committed. The callers poll the returned {@link IngestTicket} to know when their updates are committed.
+ * <p>
+ * A batch is committed in the trace of the first request that queued one of its updates.
+ */
+@Service
+@Lazy(false)
+public class ProductIngestService {
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final Map<Long, Pending> queue = new LinkedHashMap<>();
+
+    private final Set<Long> writing = new HashSet<>();
+
+    // Products queued and not being written, which a writer can take
+    private int writable;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<String, IngestTicket> tickets = new ConcurrentHashMap<>();
+
+    private ExecutorService writers;
+
+    private volatile boolean running = true;
+
+    @Value("${shop.ingest.batch-size:200}")
+    private int batchSize;
+
+    @Value("${shop.ingest.linger-ms:20}")
+    private long lingerMs;
+
+    @Value("${shop.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${shop.ingest.ticket-retention-ms:600000}")
+    private long ticketRetentionMs;
+
+    @Value("${shop.ingest.writers:2}")
+    private int writerCount;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @PostConstruct
+    public void startWriters() {
+        writers = Executors.newFixedThreadPool(writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "product-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writerCount; i++) {
+            writers.execute(this::write);
+        }
+    }
+
+    @PreDestroy
+    public void stopWriters() throws InterruptedException {
+        running = false;
+        writers.shutdownNow();
+        writers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues the valid updates, the invalid ones are listed in the rejections of the ticket.
+     *
+     * @throws IllegalStateException when the queue cannot take them, the caller must retry later
+     */
+    public IngestTicket submit(List<ProductUpdate> updates) throws Exception {
+        if (updates.isEmpty()) {
+            throw new Exception("At least one update must be provided");
+        }
+        Map<Long, ProductUpdate> byId = new LinkedHashMap<>();
+        List<String> rejections = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            ProductUpdate update = updates.get(i);
+            String error = check(update);
+            if (error != null) {
+                rejections.add("Update " + i + ": " + error);
+                continue;
+            }
+            byId.merge(update.getId(), update, (older, newer) -> {
+                older.merge(newer);
+                return older;
+            });
+        }
+        if (byId.isEmpty()) {
+            throw new Exception(String.join("; ", rejections));
+        }
+
+        IngestTicket ticket = new IngestTicket(byId.size(), rejections);
+        ContextSnapshot context = CONTEXT_SNAPSHOTS.captureAll();
+        lock.lock();
+        try {
+            long newIds = byId.keySet().stream().filter(id -> !queue.containsKey(id)).count();
+            if (queue.size() + newIds > queueCapacity) {
+                throw new IllegalStateException("The ingestion queue is full, retry later");
+            }
+            byId.forEach((id, update) -> {
+                Pending pending = queue.get(id);
+                if (pending == null) {
+                    queue.put(id, new Pending(update, ticket, context));
+                    if (!writing.contains(id)) {
+                        writable++;
+                    }
+                } else {
+                    pending.update.merge(update);
+                    pending.tickets.add(ticket);
+                }
+            });
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        tickets.put(ticket.getId(), ticket);
+        return ticket;
+    }
+
+    public IngestTicket getTicket(String id) throws Exception {
+        IngestTicket ticket = tickets.get(id);
+        if (ticket == null) {
+            throw new Exception("Ingestion ticket with id " + id + " not found");
+        }
+        return ticket;
+    }
+
+    @Scheduled(fixedDelayString = "${shop.ingest.ticket-retention-ms:600000}")
+    public void purgeTickets() {
+        Instant limit = Instant.now().minusMillis(ticketRetentionMs);
+        tickets.values().removeIf(ticket -> ticket.getCompletedAt() != null && ticket.getCompletedAt().isBefore(limit));
+    }
+
+    private void write() {
+        while (running) {
+            Map<Long, Pending> batch;
+            try {
+                batch = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                commit(batch);
+            } finally {
+                lock.lock();
+                try {
+                    for (Long id : batch.keySet()) {
+                        writing.remove(id);
+                        if (queue.containsKey(id)) {
+                            writable++;
+                        }
+                    }
+                    // The products released may have pending updates that other writers skipped
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for updates, then lingers a little so that the batch fills up, and takes up to batchSize of them.
+     */
+    private Map<Long, Pending> take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (writable == 0) {
+                notEmpty.await();
+            }
+            if (writable < batchSize) {
+                notEmpty.await(lingerMs, TimeUnit.MILLISECONDS);
+            }
+            Map<Long, Pending> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<Long, Pending>> entries = queue.entrySet().iterator();
+            while (entries.hasNext() && batch.size() < batchSize) {
+                Map.Entry<Long, Pending> entry = entries.next();
+                if (!writing.contains(entry.getKey())) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+            writing.addAll(batch.keySet());
+            writable -= batch.size();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void commit(Map<Long, Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try (ContextSnapshot.Scope scope = batch.values().iterator().next().context.setThreadLocals()) {
+            Observation.createNotStarted("product.ingest.batch", observationRegistry)
+                    .highCardinalityKeyValue("size", String.valueOf(batch.size()))
+                    .observe(() -> commitInTransaction(batch));
+        }
+    }
+
+    /**
+     * Commits the batch, or splits it in halves when it fails, so that only the tickets of the failing updates fail.
+     */
+    private void commitInTransaction(Map<Long, Pending> batch) {
+        List<Long> missingIds = new ArrayList<>();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Map<Long, Product> products = productRepository.findAllById(batch.keySet()).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+                Set<Long> shopIds = new HashSet<>();
+                batch.forEach((id, pending) -> {
+                    Product product = products.get(id);
+                    if (product == null) {
+                        missingIds.add(id);
+                        return;
+                    }
+                    apply(pending.update, product);
+                    Optional.ofNullable(product.getShop()).ifPresent(shop -> shopIds.add(shop.getId()));
+                    eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.PRODUCT, id, Action.UPDATED));
+                });
+                // The dirty products are flushed as JDBC batches of hibernate.jdbc.batch_size updates
+                productRepository.flush();
+                shopIds.forEach(statisticsService::markStale);
+            });
+            complete(batch, missingIds, null);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                complete(batch, List.of(), Objects.toString(e.getMessage(), e.getClass().getSimpleName()));
+                return;
+            }
+            // The events and statistics of the rolled back transaction are dropped with it
+            Map<Long, Pending> firstHalf = new LinkedHashMap<>();
+            Map<Long, Pending> secondHalf = new LinkedHashMap<>();
+            batch.forEach((id, pending) -> (firstHalf.size() < batch.size() / 2 ? firstHalf : secondHalf)
+                    .put(id, pending));
+            commitInTransaction(firstHalf);
+            commitInTransaction(secondHalf);
+        }
+    }
+
+    private void complete(Map<Long, Pending> batch, List<Long> missingIds, String error) {
+        Map<IngestTicket, List<Long>> idsByTicket = new LinkedHashMap<>();
+        batch.forEach((id, pending) -> pending.tickets.forEach(
+                ticket -> idsByTicket.computeIfAbsent(ticket, t -> new ArrayList<>()).add(id)));
+        idsByTicket.forEach((ticket, ids) -> ticket.complete(
+                ids.size(), ids.stream().filter(missingIds::contains).toList(), error));
+    }
+
+    private static void apply(ProductUpdate update, Product product) {
+        if (update.getPrice() != null) {
+            product.setPrice(update.getPrice());
+        }
+        if (update.getLocalizedProducts() != null) {
+            product.setLocalizedProducts(update.getLocalizedProducts());
+        }
+    }
+
+    /**
+     * Same checks as a PUT of the product, the translations being validated with their bean constraints.
+     *
+     * @return the reason of the rejection, null when the update is valid
+     */
+    private String check(ProductUpdate update) {
+        if (update == null || update.getId() == null) {
+            return "The id of the product to update must be provided";
+        }
+        if (update.getPrice() != null && update.getPrice() < 0) {
+            return "Price must be positive";
+        }
+        if (update.getLocalizedProducts() == null) {
+            return null;
+        }
+        for (LocalizedProduct localizedProduct : update.getLocalizedProducts()) {
+            if (localizedProduct == null) {
+                return "Translations may not be null";
+            }
+            Set<ConstraintViolation<LocalizedProduct>> violations = validator.validate(localizedProduct);
+            if (!violations.isEmpty()) {
+                return violations.stream().map(ConstraintViolation::getMessage).sorted()
+                        .collect(Collectors.joining(", "));
+            }
+        }
+        if (update.getLocalizedProducts().stream()
+                .noneMatch(localizedProduct -> "FR".equals(localizedProduct.getLocale()))) {
+            return "A name in french must be at least provided";
+        }
+        return null;
+    }
+
+    private static class Pending {
+        private final ProductUpdate update;
+
+        // Tickets of the updates coalesced into this one
+        private final List<IngestTicket> tickets = new ArrayList<>();
+
+        // Tracing context of the request that queued the update
+        private final ContextSnapshot context;
+
+        Pending(ProductUpdate update, IngestTicket ticket, ContextSnapshot context) {
+            this.update = update;
+            this.tickets.add(ticket);
+            this.context = context;
+        }
+    }
+}
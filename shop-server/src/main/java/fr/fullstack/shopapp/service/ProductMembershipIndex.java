@@ -0,0 +1,500 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed bitmaps (Roaring) of the product ids of each shop and of each category, answering the listings by
+ * category (several categories combined with AND or OR, optionally in one shop) without touching
+ * {@code products_categories}. The listings then fetch their page by primary key.
+ * <p>
+ * The bitmaps are built in the background once the application is ready, without holding up its startup, and the
+ * committed product writes are applied every {@code shop.bitmaps.refresh-delay-ms}, a changed product leaving the
+ * bitmaps of its previous shop and categories only. The full rebuild ({@code shop.bitmaps.rebuild-cron}) catches up
+ * the writes made outside the API; the writes committed while it reads the database are replayed on the new bitmaps
+ * before they replace the current ones. Until the first build, or when a product id does not fit in the 32-bit ids of
+ * the bitmaps, {@link #isReady()} is false and the callers use SQL.
+ * <p>
+ * The shops and categories of the products also scope the listings cached by {@link ResponseCache}: a product write
+ * drops the listings of its former shop and categories once committed, and those of its former and new ones once
+ * applied on the bitmaps, the listings cached in between showing the former memberships. A product created, or not
+ * in the bitmaps, drops all the scoped listings.
+ */
+@Service
+@Lazy(false)
+public class ProductMembershipIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductMembershipIndex.class);
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Changes pending = new Changes();
+
+    // Serializes the application of the pending changes and the replacement of the bitmaps by a rebuild
+    private final Object updateLock = new Object();
+
+    private Bitmaps bitmaps = new Bitmaps();
+
+    // Changes committed since the running rebuild started, null when none is running
+    private volatile Changes rebuildChanges;
+
+    private volatile boolean ready;
+
+    private volatile Instant builtAt;
+
+    private volatile long buildMs;
+
+    @Value("${shop.bitmaps.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop.bitmaps.load-chunk-size:50000}")
+    private int loadChunkSize;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Ids of the products in the given categories (each one with its subtree), all of them or any of them, and in
+     * the shop when there is one.
+     */
+    public RoaringBitmap match(Long shopId, List<Long> categoryIds, boolean allCategories) {
+        // The subtrees are read before locking, from the closure table
+        List<List<Long>> subtrees = new ArrayList<>();
+        for (Long categoryId : categoryIds) {
+            subtrees.add(categoryRepository.findSubtreeIds(categoryId));
+        }
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> perCategory = new ArrayList<>();
+            for (List<Long> subtree : subtrees) {
+                perCategory.add(FastAggregation.or(subtree.stream()
+                        .map(id -> bitmaps.byCategory.getOrDefault(id, EMPTY)).iterator()));
+            }
+            RoaringBitmap matches = perCategory.isEmpty() ? bitmaps.byShop.getOrDefault(shopId, EMPTY).clone()
+                    : allCategories ? FastAggregation.and(perCategory.iterator())
+                    : FastAggregation.or(perCategory.iterator());
+            if (shopId != null && !perCategory.isEmpty()) {
+                matches = RoaringBitmap.and(matches, bitmaps.byShop.getOrDefault(shopId, EMPTY));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Shop of the product as last applied on the bitmaps, null when it is not known.
+     */
+    public Long findShopId(long productId) {
+        if (!isReady() || productId > Integer.MAX_VALUE) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Membership membership = bitmaps.memberships.get((int) productId);
+            return membership == null ? null : membership.shopId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the page, in increasing order.
+     */
+    public static List<Long> page(RoaringBitmap ids, long offset, int size) {
+        List<Long> page = new ArrayList<>(size);
+        if (offset >= ids.getLongCardinality()) {
+            return page;
+        }
+        PeekableIntIterator iterator = ids.getIntIterator();
+        iterator.advanceIfNeeded(ids.select((int) offset));
+        while (iterator.hasNext() && page.size() < size) {
+            page.add((long) iterator.next());
+        }
+        return page;
+    }
+
+    public Map<String, Object> getStatus() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (RoaringBitmap bitmap : bitmaps.byShop.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            for (RoaringBitmap bitmap : bitmaps.byCategory.values()) {
+                bytes += bitmap.getLongSizeInBytes();
+            }
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("enabled", enabled);
+            status.put("ready", ready);
+            status.put("builtAt", builtAt);
+            status.put("buildMs", buildMs);
+            status.put("shops", bitmaps.byShop.size());
+            status.put("categories", bitmaps.byCategory.size());
+            status.put("products", bitmaps.memberships.size());
+            status.put("bitmapBytes", bytes);
+            status.put("pendingChanges", pending.size());
+            return status;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() == EntityType.PRODUCT) {
+            Set<Long> shopIds = new HashSet<>();
+            Set<Long> categoryIds = new HashSet<>();
+            boolean known = event.getAction() != Action.CREATED
+                    && collectScopes(List.of(event.getEntityId()), shopIds, categoryIds);
+            if (known) {
+                responseCache.invalidateListings(shopIds, categoryIds);
+            } else {
+                responseCache.invalidateAllListings();
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        pending.add(event);
+        Changes rebuilding = rebuildChanges;
+        if (rebuilding != null) {
+            rebuilding.add(event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        // The listings stay on SQL while the bitmaps build
+        Thread builder = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not build the product bitmaps, the listings stay on SQL", e);
+            }
+        }, "product-bitmaps-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @Scheduled(cron = "${shop.bitmaps.rebuild-cron:0 */15 * * * *}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        // Installed before reading, so a write missed by the reads is recorded
+        Changes missed = new Changes();
+        rebuildChanges = missed;
+        try {
+            Bitmaps built = new Bitmaps();
+            boolean fits = readOnly().execute(status -> {
+                long lastId = 0;
+                while (true) {
+                    List<Object[]> rows = productRepository.findShopLinksAfter(lastId, loadChunkSize);
+                    if (rows.isEmpty()) {
+                        return true;
+                    }
+                    long firstId = ((Number) rows.get(0)[0]).longValue();
+                    lastId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+                    if (lastId > Integer.MAX_VALUE) {
+                        return false;
+                    }
+                    built.addAll(rows, productRepository.findCategoryLinksBetween(firstId, lastId));
+                }
+            });
+            if (!fits) {
+                LOGGER.warn("Product ids exceed the 32-bit range of the bitmaps, the listings stay on SQL");
+                ready = false;
+                return;
+            }
+            built.byShop.values().forEach(RoaringBitmap::runOptimize);
+            built.byCategory.values().forEach(RoaringBitmap::runOptimize);
+
+            synchronized (updateLock) {
+                // The changes applied meanwhile to the current bitmaps are replayed on the new ones
+                rebuildChanges = null;
+                if (!missed.isEmpty() && !apply(built, missed)) {
+                    return;
+                }
+                lock.writeLock().lock();
+                try {
+                    bitmaps = built;
+                    ready = true;
+                    builtAt = Instant.now();
+                    buildMs = builtAt.toEpochMilli() - start;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            LOGGER.info("Product bitmaps built in {} ms: {} shops, {} categories", buildMs, built.byShop.size(),
+                    built.byCategory.size());
+        } finally {
+            rebuildChanges = null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shop.bitmaps.refresh-delay-ms:1000}")
+    public void applyPendingChanges() {
+        if (!isReady()) {
+            return;
+        }
+        synchronized (updateLock) {
+            Changes changes = pending.drain();
+            if (changes.isEmpty()) {
+                return;
+            }
+            Set<Long> shopIds = new HashSet<>();
+            Set<Long> categoryIds = new HashSet<>();
+            collectScopes(changes.products, shopIds, categoryIds);
+            if (apply(bitmaps, changes)) {
+                collectScopes(changes.products, shopIds, categoryIds);
+                responseCache.invalidate(EntityType.PRODUCT, changes.products);
+                responseCache.invalidate(EntityType.SHOP, changes.shops);
+                responseCache.invalidate(EntityType.CATEGORY, changes.categories);
+                responseCache.invalidateListings(shopIds, categoryIds);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes on the bitmaps, under the write lock.
+     *
+     * @return false when a product id does not fit in the bitmaps, which are then no longer used
+     */
+    private boolean apply(Bitmaps target, Changes changes) {
+        List<Object[]> shopLinks = new ArrayList<>();
+        List<Object[]> categoryLinks = new ArrayList<>();
+        if (!changes.products.isEmpty()) {
+            readOnly().executeWithoutResult(status -> {
+                shopLinks.addAll(productRepository.findShopLinksByIdIn(changes.products));
+                categoryLinks.addAll(productRepository.findCategoryLinksByProductIdIn(changes.products));
+            });
+        }
+        if (changes.products.stream().anyMatch(id -> id > Integer.MAX_VALUE)) {
+            LOGGER.warn("Product ids exceed the 32-bit range of the bitmaps, the listings stay on SQL");
+            ready = false;
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (long productId : changes.products) {
+                target.remove((int) productId);
+            }
+            target.addAll(shopLinks, categoryLinks);
+            changes.shops.forEach(target.byShop::remove);
+            changes.categories.forEach(target.byCategory::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the shops and categories of the products as last applied on the bitmaps.
+     *
+     * @return false when one of the products is not in the bitmaps
+     */
+    private boolean collectScopes(Collection<Long> productIds, Set<Long> shopIds, Set<Long> categoryIds) {
+        if (!isReady()) {
+            return false;
+        }
+        boolean known = true;
+        lock.readLock().lock();
+        try {
+            for (long productId : productIds) {
+                Membership membership =
+                        productId > Integer.MAX_VALUE ? null : bitmaps.memberships.get((int) productId);
+                if (membership == null) {
+                    known = false;
+                    continue;
+                }
+                if (membership.shopId != null) {
+                    shopIds.add(membership.shopId);
+                }
+                for (long categoryId : membership.categoryIds) {
+                    categoryIds.add(categoryId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return known;
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Product writes committed and not applied yet.
+     */
+    private static class Changes {
+        private final Set<Long> categories = ConcurrentHashMap.newKeySet();
+
+        private final Set<Long> products = ConcurrentHashMap.newKeySet();
+
+        private final Set<Long> shops = ConcurrentHashMap.newKeySet();
+
+        void add(CatalogChangeEvent event) {
+            switch (event.getEntityType()) {
+                case PRODUCT:
+                    products.add(event.getEntityId());
+                    break;
+                case CATEGORY:
+                    // Only the deleted categories change the memberships, their links being deleted with them
+                    if (event.getAction() == Action.DELETED) {
+                        categories.add(event.getEntityId());
+                    }
+                    break;
+                default:
+                    if (event.getAction() == Action.DELETED) {
+                        shops.add(event.getEntityId());
+                    }
+            }
+        }
+
+        Changes drain() {
+            Changes drained = new Changes();
+            drain(products, drained.products);
+            drain(categories, drained.categories);
+            drain(shops, drained.shops);
+            return drained;
+        }
+
+        boolean isEmpty() {
+            return products.isEmpty() && categories.isEmpty() && shops.isEmpty();
+        }
+
+        int size() {
+            return products.size() + categories.size() + shops.size();
+        }
+
+        private static void drain(Set<Long> from, Set<Long> to) {
+            for (Iterator<Long> iterator = from.iterator(); iterator.hasNext(); ) {
+                to.add(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Bitmaps of the products per shop and per category, with the shop and the categories of each product so that a
+     * changed product only leaves its own bitmaps.
+     */
+    private static class Bitmaps {
+        private static final long[] NO_CATEGORIES = new long[0];
+
+        private final Map<Long, RoaringBitmap> byCategory = new HashMap<>();
+
+        private final Map<Long, RoaringBitmap> byShop = new HashMap<>();
+
+        private final Map<Integer, Membership> memberships = new HashMap<>();
+
+        /**
+         * Adds the (product id, shop id) rows and the (product id, category id) rows of the same products, the
+         * category rows being sorted by product id.
+         */
+        void addAll(List<Object[]> shopLinks, List<Object[]> categoryLinks) {
+            Map<Integer, List<Long>> categoriesByProduct = new HashMap<>();
+            for (Object[] row : categoryLinks) {
+                int productId = ((Number) row[0]).intValue();
+                long categoryId = ((Number) row[1]).longValue();
+                byCategory.computeIfAbsent(categoryId, key -> new RoaringBitmap()).add(productId);
+                categoriesByProduct.computeIfAbsent(productId, key -> new ArrayList<>()).add(categoryId);
+            }
+            for (Object[] row : shopLinks) {
+                int productId = ((Number) row[0]).intValue();
+                Long shopId = row[1] == null ? null : ((Number) row[1]).longValue();
+                if (shopId != null) {
+                    byShop.computeIfAbsent(shopId, key -> new RoaringBitmap()).add(productId);
+                }
+                List<Long> categoryIds = categoriesByProduct.get(productId);
+                memberships.put(productId, new Membership(shopId, categoryIds == null ? NO_CATEGORIES
+                        : categoryIds.stream().mapToLong(Long::longValue).toArray()));
+            }
+        }
+
+        void remove(int productId) {
+            Membership previous = memberships.remove(productId);
+            if (previous == null) {
+                return;
+            }
+            if (previous.shopId != null) {
+                remove(byShop, previous.shopId, productId);
+            }
+            for (long categoryId : previous.categoryIds) {
+                remove(byCategory, categoryId, productId);
+            }
+        }
+
+        private static void remove(Map<Long, RoaringBitmap> bitmaps, long key, int productId) {
+            RoaringBitmap bitmap = bitmaps.get(key);
+            if (bitmap != null && bitmap.checkedRemove(productId) && bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static class Membership {
+        private final long[] categoryIds;
+
+        private final Long shopId;
+
+        Membership(Long shopId, long[] categoryIds) {
+            this.shopId = shopId;
+            this.categoryIds = categoryIds;
+        }
+    }
+}
@@ -1,79 +1,378 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.dto.CursorPage;
+import fr.fullstack.shopapp.dto.FacetedResult;
+import fr.fullstack.shopapp.dto.ProductFilter;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
 import fr.fullstack.shopapp.model.LocalizedProduct;
 import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.profiling.ProductListEvent;
+import fr.fullstack.shopapp.repository.CategoryRepository;
 import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.util.BatchLookup;
+import fr.fullstack.shopapp.util.FetchPlans;
+import fr.fullstack.shopapp.util.PaginationMode;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.annotation.Observed;
+import org.hibernate.search.engine.search.aggregation.AggregationKey;
+import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
+import org.hibernate.search.engine.search.query.SearchQuery;
+import org.hibernate.search.engine.search.query.SearchResult;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.util.common.data.Range;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Service
+@Observed(name = "shop.service")
 public class ProductService {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${shop.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${shop.scroll.max-size:100}")
+    private int maxScrollSize;
+
+    @Value("${shop.facets.price-buckets:0,10,20,50,100}")
+    private List<Float> priceBuckets;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogSnapshotService snapshotService;
+
+    @Autowired
+    private ProductMembershipIndex membershipIndex;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private PaginationService paginationService;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private StockService stockService;
+
     @Transactional
     public Product createProduct(Product product) throws Exception {
-        // Check that product exists at least in french and check name's length
+        Product newProduct = saveProduct(product);
+        eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.PRODUCT, newProduct.getId(), Action.CREATED));
+        return FetchPlans.product(newProduct);
+    }
+
+    @Transactional
+    public void deleteProductById(long id) throws Exception {
         try {
-            checkLocalizedProducts(product);
+            Long shopId = getShopId(getProduct(id));
+            productRepository.deleteById(id);
+            productRepository.flush();
+            stockService.removeStock(id);
+            statisticsService.markStale(shopId);
+            eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.PRODUCT, id, Action.DELETED));
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
+    }
 
+    @Transactional(readOnly = true)
+    public Product getProductById(long id) throws Exception {
+        Product snapshotProduct = snapshotService.getProduct(id);
+        if (snapshotProduct != null) {
+            return snapshotProduct;
+        }
         try {
-            Product newProduct = productRepository.save(product);
-            em.flush();
-            em.refresh(newProduct);
-            return newProduct;
+            return FetchPlans.product(getProduct(id));
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
     }
 
-    public void deleteProductById(long id) throws Exception {
-        try {
-            getProduct(id);
-            productRepository.deleteById(id);
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
+    @Transactional(readOnly = true)
+    public BatchResult<Product> getProductsByIds(List<Long> ids) throws Exception {
+        List<Long> distinctIds = BatchLookup.normalizeIds(ids, maxBatchSize);
+        List<Product> products = productRepository.findAllWithShopByIdIn(distinctIds);
+        if (!products.isEmpty()) {
+            productRepository.fetchCategories(products);
+            List<Long> shopIds = products.stream().map(Product::getShop).filter(Objects::nonNull)
+                    .map(Shop::getId).distinct().toList();
+            if (!shopIds.isEmpty()) {
+                shopRepository.findAllWithOpeningHoursByIdIn(shopIds);
+            }
         }
+        return BatchLookup.toResult(distinctIds, products, Product::getId);
     }
 
-    public Product getProductById(long id) throws Exception {
+    @Transactional(readOnly = true)
+    public Slice<Product> getShopProductList(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            List<Long> categoryIds,
+            Optional<String> categoryMatch,
+            Optional<Float> minPrice,
+            Optional<Float> maxPrice,
+            Optional<String> sortBy,
+            Optional<String> direction,
+            Optional<String> pagination,
+            Pageable pageable
+    ) throws Exception {
+        ProductListEvent event = new ProductListEvent();
+        event.begin();
         try {
-            return getProduct(id);
-        } catch (Exception e) {
-            throw new Exception(e.getMessage());
+            return FetchPlans.products(findShopProductList(shopId, categoryId, categoryIds, categoryMatch, minPrice,
+                    maxPrice, sortBy, direction, pagination, pageable, event));
+        } finally {
+            event.shopId = shopId.orElse(-1L);
+            event.categoryIds = categoryId.map(List::of).orElse(categoryIds).toString();
+            event.minPrice = minPrice.orElse(Float.NaN);
+            event.maxPrice = maxPrice.orElse(Float.NaN);
+            event.sortBy = sortBy.map(sort -> sort + " " + direction.orElse("asc")).orElse(null);
+            event.pagination = pagination.orElse(null);
+            event.pageNumber = pageable.isPaged() ? pageable.getPageNumber() : -1;
+            event.pageSize = pageable.isPaged() ? pageable.getPageSize() : -1;
+            event.commit();
         }
     }
 
-    public Page<Product> getShopProductList(Optional<Long> shopId, Optional<Long> categoryId, Pageable pageable) {
+    private Slice<Product> findShopProductList(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            List<Long> categoryIds,
+            Optional<String> categoryMatch,
+            Optional<Float> minPrice,
+            Optional<Float> maxPrice,
+            Optional<String> sortBy,
+            Optional<String> direction,
+            Optional<String> pagination,
+            Pageable pageable,
+            ProductListEvent event
+    ) throws Exception {
+        PaginationMode mode = paginationService.parseMode(pagination);
+        boolean priceFiltered = minPrice.isPresent() || maxPrice.isPresent() || sortBy.isPresent();
+
+        if (!priceFiltered && categoryIds.isEmpty()) {
+            Slice<Product> snapshotList = snapshotService.getProductList(shopId, categoryId, mode, pageable);
+            if (snapshotList != null) {
+                event.path = "snapshot";
+                return snapshotList;
+            }
+        }
+
+        // CATEGORIES, from the bitmaps of the products of each category and shop
+        if (!priceFiltered && (categoryId.isPresent() || !categoryIds.isEmpty()) && membershipIndex.isReady()
+                && pageable.isPaged() && pageable.getSort().isUnsorted()) {
+            event.path = "bitmaps";
+            // Sorted by id, the direction is ignored like in the SQL listings below
+            ProductFilter filter = getFilter(shopId, categoryId, categoryIds, categoryMatch, minPrice, maxPrice,
+                    sortBy, Optional.empty());
+            List<Long> categories = filter.getCategoryId().map(List::of).orElse(filter.getCategoryIds());
+            RoaringBitmap ids = membershipIndex.match(shopId.orElse(null), categories, filter.isAllCategories());
+            return getProductPage(ids, mode, pageable);
+        }
+
+        // PRICE FILTERS AND SORT, SEVERAL CATEGORIES
+        if (priceFiltered || !categoryIds.isEmpty()) {
+            event.path = "filter";
+            ProductFilter filter = getFilter(shopId, categoryId, categoryIds, categoryMatch, minPrice, maxPrice,
+                    sortBy, direction);
+            Function<Pageable, Page<Product>> pageQuery = p -> productRepository.findByFilter(filter, p);
+            return paginationService.paginate(mode, pageable,
+                    () -> paginationService.cachedCount("products:" + filter.countKey(),
+                            PaginationService.countOf(pageQuery)),
+                    pageQuery, p -> productRepository.findSliceByFilter(filter, p));
+        }
+
         if (shopId.isPresent() && categoryId.isPresent()) {
-            return productRepository.findByShopAndCategory(shopId.get(), categoryId.get(), pageable);
+            event.path = "shop-category";
+            Function<Pageable, Page<Product>> pageQuery =
+                    p -> productRepository.findByShopAndCategory(shopId.get(), categoryId.get(), p);
+            return paginationService.paginate(mode, pageable,
+                    () -> paginationService.cachedCount("products:shop=" + shopId.get() + ",category="
+                            + categoryId.get(), PaginationService.countOf(pageQuery)),
+                    pageQuery, p -> productRepository.findSliceByShopAndCategory(shopId.get(), categoryId.get(), p));
         }
 
         if (shopId.isPresent()) {
-            return productRepository.findByShop(shopId.get(), pageable);
+            event.path = "shop";
+            Function<Pageable, Page<Product>> pageQuery = p -> productRepository.findByShop(shopId.get(), p);
+            return paginationService.paginate(mode, pageable,
+                    () -> paginationService.cachedCount("products:shop=" + shopId.get(),
+                            PaginationService.countOf(pageQuery)),
+                    pageQuery, p -> productRepository.findSliceByShop(shopId.get(), p));
+        }
+
+        if (categoryId.isPresent()) {
+            event.path = "category";
+            Function<Pageable, Page<Product>> pageQuery = p -> productRepository.findByCategory(categoryId.get(), p);
+            return paginationService.paginate(mode, pageable,
+                    () -> paginationService.cachedCount("products:category=" + categoryId.get(),
+                            PaginationService.countOf(pageQuery)),
+                    pageQuery, p -> productRepository.findSliceByCategory(categoryId.get(), p));
+        }
+
+        event.path = "none";
+        return paginationService.paginate(mode, pageable,
+                () -> paginationService.estimateRows("products", productRepository::count),
+                productRepository::findByOrderByIdAsc, productRepository::findSliceByOrderByIdAsc);
+    }
+
+    /**
+     * Keyset pagination of the products: each page continues after the last product of the previous one, whose
+     * position is encoded in the cursor, so deep pages cost the same as the first one.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Product> scrollProducts(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            Optional<Float> minPrice,
+            Optional<Float> maxPrice,
+            Optional<String> sortBy,
+            Optional<String> direction,
+            Optional<String> cursor,
+            int size
+    ) throws Exception {
+        if (size < 1 || size > maxScrollSize) {
+            throw new Exception("Size must be between 1 and " + maxScrollSize);
+        }
+        ProductFilter filter = getFilter(shopId, categoryId, List.of(), Optional.empty(), minPrice, maxPrice, sortBy,
+                direction);
+
+        Float afterPrice = null;
+        Long afterId = null;
+        if (cursor.isPresent()) {
+            // Cursor: sort:price:id
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(cursor.get()), StandardCharsets.UTF_8).split(":");
+            } catch (IllegalArgumentException e) {
+                throw new Exception("Invalid cursor");
+            }
+            if (parts.length != 3 || !parts[0].equals(filter.getSort().name())) {
+                throw new Exception("The cursor does not match the sort of the listing");
+            }
+            afterPrice = Float.valueOf(parts[1]);
+            afterId = Long.valueOf(parts[2]);
+        }
+
+        List<Product> products =
+                FetchPlans.products(productRepository.findAfter(filter, afterPrice, afterId, size + 1));
+        if (products.size() <= size) {
+            return new CursorPage<>(products, null);
         }
+        List<Product> content = products.subList(0, size);
+        Product last = content.get(size - 1);
+        String key = filter.getSort().name() + ":" + last.getPrice() + ":" + last.getId();
+        String nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        return new CursorPage<>(content, nextCursor);
+    }
+
+    /**
+     * Searches the products and counts the matching products per category and per price bucket, in a single request
+     * to the search backend. The selected facets are applied as filters, the category one including its subtree.
+     */
+    @Transactional(readOnly = true)
+    public FacetedResult<Product> searchProductFacets(
+            Optional<String> query,
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            Optional<Float> minPrice,
+            Optional<Float> maxPrice,
+            Pageable pageable
+    ) {
+        AggregationKey<Map<Long, Long>> categoriesKey = AggregationKey.of("categories");
+        AggregationKey<Map<Range<Float>, Long>> priceKey = AggregationKey.of("price");
+
+        List<Range<Float>> priceRanges = new ArrayList<Range<Float>>();
+        for (int i = 0; i < priceBuckets.size(); i++) {
+            Float upperBound = i + 1 < priceBuckets.size() ? priceBuckets.get(i + 1) : null;
+            priceRanges.add(Range.canonical(priceBuckets.get(i), upperBound));
+        }
+        Optional<List<Long>> categoryIds = categoryId.map(id -> categoryRepository.findSubtreeIds(id));
+
+        SearchQuery<Product> searchQuery = Search.session(em)
+                .search(Product.class)
+                .where(f -> {
+                    BooleanPredicateClausesStep<?> bool = f.bool().must(f.matchAll());
+                    query.ifPresent(q -> bool.must(f.match().field("localizedProduct.name").matching(q)));
+                    shopId.ifPresent(id -> bool.filter(f.match().field("shop.id").matching(id)));
+                    categoryIds.ifPresent(ids -> bool.filter(f.terms().field("categories.id").matchingAny(ids)));
+                    minPrice.ifPresent(price -> bool.filter(f.range().field("price").atLeast(price)));
+                    maxPrice.ifPresent(price -> bool.filter(f.range().field("price").atMost(price)));
+                    return bool;
+                })
+                .aggregation(categoriesKey, f -> f.terms().field("categories.id", Long.class).maxTermCount(100))
+                .aggregation(priceKey, f -> f.range().field("price", Float.class).ranges(priceRanges))
+                .toQuery();
+        SearchResult<Product> result = Observation.createNotStarted("shop.search", observationRegistry)
+                .lowCardinalityKeyValue("index", "product")
+                .observe(() -> searchQuery.fetch((int) pageable.getOffset(), pageable.getPageSize()));
+
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<String, Map<String, Long>>();
+        Map<String, Long> categoriesFacet = new LinkedHashMap<String, Long>();
+        result.aggregation(categoriesKey).forEach((id, count) -> categoriesFacet.put(id.toString(), count));
+        facets.put("categories", categoriesFacet);
+        Map<String, Long> priceFacet = new LinkedHashMap<String, Long>();
+        result.aggregation(priceKey).forEach((range, count) -> priceFacet.put(
+                range.lowerBoundValue().orElse(0f) + range.upperBoundValue().map(upper -> "-" + upper).orElse("+"),
+                count));
+        facets.put("price", priceFacet);
 
-        return productRepository.findByOrderByIdAsc(pageable);
+        return new FacetedResult<Product>(FetchPlans.products(result.hits()), result.total().hitCount(), facets);
     }
 
     @Transactional
     public Product updateProduct(Product product) throws Exception {
         try {
-            getProduct(product.getId());
-            return this.createProduct(product);
+            Long previousShopId = getShopId(getProduct(product.getId()));
+            Product updatedProduct = saveProduct(product);
+            if (previousShopId != null && !previousShopId.equals(getShopId(updatedProduct))) {
+                statisticsService.markStale(previousShopId);
+            }
+            eventPublisher.publishEvent(
+                    new CatalogChangeEvent(EntityType.PRODUCT, updatedProduct.getId(), Action.UPDATED));
+            return FetchPlans.product(updatedProduct);
         } catch (Exception e) {
             throw new Exception(e.getMessage());
         }
@@ -89,6 +388,90 @@ public class ProductService {
         }
     }
 
+    private Product saveProduct(Product product) throws Exception {
+        // Check that product exists at least in french and check name's length
+        try {
+            checkLocalizedProducts(product);
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+
+        try {
+            Product newProduct = productRepository.save(product);
+            em.flush();
+            productRepository.updateCategoryLinksShop(newProduct.getId(), getShopId(newProduct));
+            em.refresh(newProduct);
+            statisticsService.markStale(getShopId(newProduct));
+            return newProduct;
+        } catch (Exception e) {
+            throw new Exception(e.getMessage());
+        }
+    }
+
+    private ProductFilter getFilter(
+            Optional<Long> shopId,
+            Optional<Long> categoryId,
+            List<Long> categoryIds,
+            Optional<String> categoryMatch,
+            Optional<Float> minPrice,
+            Optional<Float> maxPrice,
+            Optional<String> sortBy,
+            Optional<String> direction
+    ) throws Exception {
+        if (minPrice.isPresent() && maxPrice.isPresent() && minPrice.get() > maxPrice.get()) {
+            throw new Exception("The minimum price must be lower than the maximum price");
+        }
+        boolean descending = direction.map(d -> d.equalsIgnoreCase("desc")).orElse(false);
+        if (direction.isPresent() && !descending && !direction.get().equalsIgnoreCase("asc")) {
+            throw new Exception("Direction must be asc or desc");
+        }
+        ProductFilter.Sort sort;
+        switch (sortBy.orElse("id")) {
+            case "id":
+                if (descending) {
+                    throw new Exception("Products sorted by id can only be in the asc direction");
+                }
+                sort = ProductFilter.Sort.ID;
+                break;
+            case "price":
+                sort = descending ? ProductFilter.Sort.PRICE_DESC : ProductFilter.Sort.PRICE_ASC;
+                break;
+            default:
+                throw new Exception("Products can only be sorted by id or price");
+        }
+        boolean allCategories = categoryMatch.map(match -> match.equalsIgnoreCase("all")).orElse(false);
+        if (categoryMatch.isPresent() && !allCategories && !categoryMatch.get().equalsIgnoreCase("any")) {
+            throw new Exception("Category match must be all or any");
+        }
+        if (categoryIds.isEmpty()) {
+            return new ProductFilter(shopId, categoryId, List.of(), false, minPrice, maxPrice, sort);
+        }
+        // The single category is one more category of the list
+        List<Long> categories = new ArrayList<>(categoryIds);
+        categoryId.filter(id -> !categories.contains(id)).ifPresent(categories::add);
+        return new ProductFilter(shopId, Optional.empty(), categories, allCategories, minPrice, maxPrice, sort);
+    }
+
+    /**
+     * Page of the products with the given ids, fetched by primary key. The total is the number of ids.
+     */
+    private Slice<Product> getProductPage(RoaringBitmap ids, PaginationMode mode, Pageable pageable) {
+        List<Long> pageIds = ProductMembershipIndex.page(ids, pageable.getOffset(), pageable.getPageSize());
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(pageIds).forEach(product -> products.put(product.getId(), product));
+        // A product deleted since the last update of the bitmaps is skipped
+        List<Product> content = pageIds.stream().map(products::get).filter(Objects::nonNull).toList();
+        if (mode == PaginationMode.SLICE) {
+            boolean hasNext = pageable.getOffset() + pageIds.size() < ids.getLongCardinality();
+            return new SliceImpl<>(content, pageable, hasNext);
+        }
+        return new PageImpl<>(content, pageable, ids.getLongCardinality());
+    }
+
+    private Long getShopId(Product product) {
+        return product.getShop() == null ? null : product.getShop().getId();
+    }
+
     private Product getProduct(Long id) throws Exception {
         Optional<Product> product = productRepository.findById(id);
         if (!product.isPresent()) {
@@ -0,0 +1,123 @@
+package fr.fullstack.shopapp.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Java Flight Recorder recordings started and stopped on demand, one at a time, so that a production instance can be
+ * profiled during an incident without restarting it or attaching a tool. Besides the JDK events of the chosen
+ * configuration ({@code default} or {@code profile}), the recordings contain the events of the
+ * {@code fr.fullstack.shopapp.profiling} package emitted by the hot paths. The JDK events recording the environment
+ * and the system properties of the JVM are disabled, since the recording file can be downloaded.
+ * <p>
+ * A recording stops by itself after {@code shop.profiling.max-duration-seconds}; the file of the last one is kept until
+ * the next recording starts.
+ */
+@Service
+public class ProfilingService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfilingService.class);
+
+    // Environment variables, system properties and command line of the JVM, which carry the credentials
+    private static final List<String> SECRET_EVENTS =
+            List.of("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private Recording recording;
+
+    private String profile;
+
+    private Path file;
+
+    @Value("${shop.profiling.max-duration-seconds:600}")
+    private long maxDurationSeconds;
+
+    @Value("${shop.profiling.max-size-mb:256}")
+    private long maxSizeMb;
+
+    public synchronized Map<String, Object> start(String profile, Optional<Long> durationSeconds) throws Exception {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new Exception("A recording is already running");
+        }
+        long duration = durationSeconds.orElse(maxDurationSeconds);
+        if (duration < 1 || duration > maxDurationSeconds) {
+            throw new Exception("Duration must be between 1 and " + maxDurationSeconds + " seconds");
+        }
+        Configuration configuration = Configuration.getConfigurations().stream()
+                .filter(c -> c.getName().equals(profile))
+                .findFirst()
+                .orElseThrow(() -> new Exception("Profile must be one of " + Configuration.getConfigurations()
+                        .stream().map(Configuration::getName).collect(Collectors.joining(", "))));
+        discard();
+
+        Path destination = Files.createTempFile("shop-app-", ".jfr");
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("shop-app");
+        newRecording.setToDisk(true);
+        newRecording.setMaxSize(maxSizeMb * 1024 * 1024);
+        newRecording.setDuration(Duration.ofSeconds(duration));
+        newRecording.setDestination(destination);
+        SECRET_EVENTS.forEach(newRecording::disable);
+        newRecording.start();
+        LOGGER.info("Flight recording started with the {} profile for {} s", profile, duration);
+
+        this.recording = newRecording;
+        this.profile = profile;
+        this.file = destination;
+        return getStatus();
+    }
+
+    public synchronized Map<String, Object> stop() throws Exception {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new Exception("No recording is running");
+        }
+        // The recording is written to its destination when it stops
+        recording.stop();
+        LOGGER.info("Flight recording stopped, {} bytes written", Files.size(file));
+        return getStatus();
+    }
+
+    /**
+     * File of the last recording, once it is stopped.
+     */
+    public synchronized Path getRecordingFile() throws Exception {
+        if (recording == null || recording.getState() != RecordingState.STOPPED || !Files.exists(file)) {
+            throw new Exception("No stopped recording is available");
+        }
+        return file;
+    }
+
+    public synchronized Map<String, Object> getStatus() throws IOException {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording == null ? null : recording.getState());
+        status.put("profile", profile);
+        status.put("startedAt", recording == null ? null : recording.getStartTime());
+        status.put("stoppedAt", recording == null ? null : recording.getStopTime());
+        status.put("duration", recording == null ? null : recording.getDuration());
+        status.put("fileBytes", file != null && Files.exists(file) ? Files.size(file) : null);
+        status.put("profiles", Configuration.getConfigurations().stream().map(Configuration::getName).toList());
+        return status;
+    }
+
+    private void discard() throws IOException {
+        if (recording != null) {
+            recording.close();
+            Files.deleteIfExists(file);
+            recording = null;
+            file = null;
+        }
+    }
+}
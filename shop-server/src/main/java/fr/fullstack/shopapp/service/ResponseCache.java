@@ -0,0 +1,290 @@
+package fr.fullstack.shopapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.repository.CategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized API responses, kept with the stamp of the catalog data they were built from: the version of the entity
+ * they show and the generations of the entity types they depend on. A write bumps the version of its entity and the
+ * generation of its type once committed, so the responses built before are no longer served; the stamp being taken
+ * before the response is built, a response racing with a write is never served with the stamp of the write.
+ * <p>
+ * The listings of the products of a shop or of a category depend on the listing version of that shop or category
+ * (scope) instead of the generation of the products: a product write bumps the scopes of the shop and the categories
+ * (with their ancestors) it belonged to and belongs to, so the listings of the other shops and categories stay
+ * cached. When they are not known, every scoped listing is dropped.
+ * <p>
+ * The other instances apply the same invalidations when the change feed delivers the write.
+ * <p>
+ * The entries are bounded by their size in bytes ({@code shop.response-cache.budget-mb}), the least valuable ones
+ * being evicted first, and dropped after {@code shop.response-cache.max-age-ms} to catch up the writes made outside
+ * the API.
+ */
+@Service
+public class ResponseCache {
+    // Versions of the entities per type, hashed on a fixed number of slots: a collision only drops an entry early
+    private static final int VERSION_SLOTS = 1 << 16;
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    // Bumped when the whole cache is invalidated
+    private final AtomicLong epoch = new AtomicLong();
+
+    // Bumped when the scopes of a product write are not known
+    private final AtomicLong scopeEpoch = new AtomicLong();
+
+    // Listing versions of the shops and of the categories, on the slots of the versions
+    private final AtomicLongArray scopes = new AtomicLongArray(2 * VERSION_SLOTS);
+
+    // Category and its ancestors, dropped on every category write (a category may have moved)
+    private final Map<Long, List<Long>> ancestors = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray generations = new AtomicLongArray(EntityType.values().length);
+
+    private final AtomicLongArray versions = new AtomicLongArray(EntityType.values().length * VERSION_SLOTS);
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private Cache<String, CachedResponse> entries;
+
+    @Value("${shop.response-cache.budget-mb:64}")
+    private long budgetMb;
+
+    @Value("${shop.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop.response-cache.max-age-ms:30000}")
+    private long maxAgeMs;
+
+    @Value("${shop.response-cache.max-entry-kb:512}")
+    private int maxEntryKb;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void createCache() {
+        entries = Caffeine.newBuilder()
+                .maximumWeight(budgetMb * 1024 * 1024)
+                .weigher((String key, CachedResponse response) -> response.weight(key))
+                .expireAfterWrite(Duration.ofMillis(maxAgeMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "shop.response-cache");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stamp of a response showing the given entity (when the id is not null) and depending on the given entity types.
+     */
+    public long[] stamp(EntityType entityType, Long id, EntityType... dependencies) {
+        long[] stamp = new long[2 + dependencies.length];
+        stamp[0] = epoch.get();
+        stamp[1] = id == null ? 0 : versions.get(slot(entityType, id));
+        for (int i = 0; i < dependencies.length; i++) {
+            stamp[2 + i] = generations.get(dependencies[i].ordinal());
+        }
+        return stamp;
+    }
+
+    /**
+     * Stamp of a product, depending on the version of its shop when the shop is known, on all the shops otherwise.
+     * The categories it embeds are rarely written.
+     */
+    public long[] productStamp(long productId, Long shopId) {
+        return new long[] {
+            epoch.get(),
+            versions.get(slot(EntityType.PRODUCT, productId)),
+            shopId == null ? -1 : shopId,
+            shopId == null ? generations.get(EntityType.SHOP.ordinal()) : versions.get(slot(EntityType.SHOP, shopId)),
+            generations.get(EntityType.CATEGORY.ordinal())
+        };
+    }
+
+    /**
+     * Stamp of a listing of the products of a shop, or of categories with their subtrees.
+     */
+    public long[] listingStamp(EntityType scopeType, List<Long> scopeIds) {
+        long[] stamp = new long[5 + scopeIds.size()];
+        stamp[0] = epoch.get();
+        stamp[1] = scopeEpoch.get();
+        stamp[2] = generations.get(EntityType.CATEGORY.ordinal());
+        // The products embed their shop
+        stamp[3] = scopeType == EntityType.SHOP && scopeIds.size() == 1
+                ? versions.get(slot(EntityType.SHOP, scopeIds.get(0)))
+                : generations.get(EntityType.SHOP.ordinal());
+        stamp[4] = scopeType.ordinal();
+        for (int i = 0; i < scopeIds.size(); i++) {
+            stamp[5 + i] = scopes.get(scopeSlot(scopeType, scopeIds.get(i)));
+        }
+        return stamp;
+    }
+
+    /**
+     * Response stored under the key, if it was built with the same stamp.
+     */
+    public CachedResponse get(String key, long[] stamp) {
+        CachedResponse response = entries.getIfPresent(key);
+        if (response == null) {
+            return null;
+        }
+        if (!Arrays.equals(response.stamp, stamp)) {
+            staleHits.increment();
+            entries.asMap().remove(key, response);
+            return null;
+        }
+        return response;
+    }
+
+    public void put(String key, long[] stamp, byte[] body, String contentType, Map<String, List<String>> headers) {
+        if (body.length <= maxEntryKb * 1024) {
+            entries.put(key, new CachedResponse(stamp, body, contentType, headers));
+        }
+    }
+
+    @TransactionalEventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() == EntityType.CATEGORY) {
+            ancestors.clear();
+        }
+        invalidate(event.getEntityType(), List.of(event.getEntityId()));
+    }
+
+    /**
+     * Drops the responses showing the given entities or depending on their type.
+     */
+    public void invalidate(EntityType entityType, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Long id : ids) {
+            versions.incrementAndGet(slot(entityType, id));
+        }
+        generations.incrementAndGet(entityType.ordinal());
+    }
+
+    /**
+     * Drops the listings of the products of the shops and of the categories, with the ancestors of the categories.
+     */
+    public void invalidateListings(Collection<Long> shopIds, Collection<Long> categoryIds) {
+        for (Long shopId : shopIds) {
+            scopes.incrementAndGet(scopeSlot(EntityType.SHOP, shopId));
+        }
+        Set<Long> scopedCategories = new HashSet<>();
+        for (Long categoryId : categoryIds) {
+            scopedCategories.addAll(ancestors.computeIfAbsent(categoryId, categoryRepository::findAncestorIds));
+        }
+        for (Long categoryId : scopedCategories) {
+            scopes.incrementAndGet(scopeSlot(EntityType.CATEGORY, categoryId));
+        }
+    }
+
+    /**
+     * Drops the listings of the products of all the shops and categories.
+     */
+    public void invalidateAllListings() {
+        scopeEpoch.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    public Map<String, Object> getStatus() {
+        CacheStats stats = entries.stats();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("entries", entries.estimatedSize());
+        status.put("bytes", entries.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        status.put("budgetBytes", budgetMb * 1024 * 1024);
+        status.put("hits", stats.hitCount() - staleHits.sum());
+        status.put("misses", stats.missCount() + staleHits.sum());
+        status.put("staleHits", staleHits.sum());
+        status.put("evictions", stats.evictionCount());
+        status.put("evictedBytes", stats.evictionWeight());
+        return status;
+    }
+
+    private static int slot(EntityType entityType, long id) {
+        return entityType.ordinal() * VERSION_SLOTS + hash(id);
+    }
+
+    private static int scopeSlot(EntityType scopeType, long id) {
+        return (scopeType == EntityType.SHOP ? 0 : VERSION_SLOTS) + hash(id);
+    }
+
+    private static int hash(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 48);
+    }
+
+    /**
+     * Status 200 response as written by the controller: body, content type and headers.
+     */
+    public static class CachedResponse {
+        private final byte[] body;
+
+        private final String contentType;
+
+        private final Map<String, List<String>> headers;
+
+        private final long[] stamp;
+
+        CachedResponse(long[] stamp, byte[] body, String contentType, Map<String, List<String>> headers) {
+            this.stamp = stamp;
+            this.body = body;
+            this.contentType = contentType;
+            this.headers = headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        int weight(String key) {
+            int headerBytes = headers.entrySet().stream()
+                    .mapToInt(header -> header.getKey().length() + header.getValue().stream()
+                            .mapToInt(String::length).sum())
+                    .sum();
+            return ENTRY_OVERHEAD_BYTES + body.length + 2 * (key.length() + headerBytes) + 8 * stamp.length;
+        }
+    }
+}
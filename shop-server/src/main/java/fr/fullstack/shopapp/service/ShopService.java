@@ -1,48 +1,95 @@
 package fr.fullstack.shopapp.service;
 
+import fr.fullstack.shopapp.dto.BatchResult;
+import fr.fullstack.shopapp.dto.FacetedResult;
+import fr.fullstack.shopapp.dto.NearbyShop;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
 import fr.fullstack.shopapp.model.OpeningHoursShop;
 import fr.fullstack.shopapp.model.Product;
 import fr.fullstack.shopapp.model.Shop;
+import fr.fullstack.shopapp.profiling.ShopListEvent;
+import fr.fullstack.shopapp.profiling.ShopSearchEvent;
+import fr.fullstack.shopapp.profiling.ShopValidationEvent;
 import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.util.BatchLookup;
+import fr.fullstack.shopapp.util.FetchPlans;
+import fr.fullstack.shopapp.util.PaginationMode;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.annotation.Observed;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.hibernate.search.engine.search.aggregation.AggregationKey;
+import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
+import org.hibernate.search.engine.search.query.SearchQuery;
+import org.hibernate.search.engine.search.query.SearchResult;
+import org.hibernate.search.engine.spatial.DistanceUnit;
+import org.hibernate.search.engine.spatial.GeoPoint;
 import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.util.common.data.Range;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@Observed(name = "shop.service")
 public class ShopService {
 
   @PersistenceContext
   private EntityManager em;
 
+  @Value("${shop.batch.max-size:100}")
+  private int maxBatchSize;
+
+  @Value("${shop.facets.created-at-first-year:2010}")
+  private int createdAtFirstYear;
+
+  @Value("${shop.nearby.max-limit:100}")
+  private int nearbyMaxLimit;
+
+  @Value("${shop.nearby.max-radius-km:500}")
+  private double nearbyMaxRadiusKm;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  private CatalogSnapshotService snapshotService;
+
+  @Autowired
+  private ObservationRegistry observationRegistry;
+
+  @Autowired
+  private PaginationService paginationService;
+
   @Autowired
   private ShopRepository shopRepository;
 
+  @Autowired
+  private StatisticsService statisticsService;
+
   @Transactional
   public Shop createShop(Shop shop) throws Exception {
-    // check if no conflit for hours
-    var listHours = shop.getOpeningHours();
-    for (var hour : listHours) {
-      if (listHours.stream().anyMatch(h -> inInterval(h, hour))) {
-        throw new Exception("Les heures d'ouvertures sont en conflit.");
-      }
-    }
-    try {
-      Shop newShop = shopRepository.save(shop);
-      // Refresh the entity after the save. Otherwise, @Formula does not work.
-      em.flush();
-      em.refresh(newShop);
-      return newShop;
-    } catch (Exception e) {
-      throw new Exception(e.getMessage());
-    }
+    Shop newShop = saveShop(shop);
+    eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.SHOP, newShop.getId(), Action.CREATED));
+    return FetchPlans.shop(newShop);
   }
 
   @Transactional
@@ -52,59 +99,66 @@ public class ShopService {
       // delete nested relations with products
       deleteNestedRelations(shop);
       shopRepository.deleteById(id);
+      statisticsService.removeShop(id);
+      eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.SHOP, id, Action.DELETED));
     } catch (Exception e) {
       throw new Exception(e.getMessage());
     }
   }
 
+  @Transactional(readOnly = true)
   public Shop getShopById(long id) throws Exception {
+    Shop snapshotShop = snapshotService.getShop(id);
+    if (snapshotShop != null) {
+      return snapshotShop;
+    }
     try {
-      return getShop(id);
+      return FetchPlans.shop(getShop(id));
     } catch (Exception e) {
       throw new Exception(e.getMessage());
     }
   }
 
-  public Page<Shop> getShopList(
+  @Transactional(readOnly = true)
+  public BatchResult<Shop> getShopsByIds(List<Long> ids) throws Exception {
+    List<Long> distinctIds = BatchLookup.normalizeIds(ids, maxBatchSize);
+    return BatchLookup.toResult(
+        distinctIds, shopRepository.findAllWithOpeningHoursByIdIn(distinctIds), Shop::getId
+    );
+  }
+
+  @Transactional(readOnly = true)
+  public Slice<Shop> getShopList(
       Optional<String> sortBy,
       Optional<Boolean> inVacations,
       Optional<String> createdBefore,
       Optional<String> createdAfter,
       Optional<String> search,
+      Optional<String> pagination,
       Pageable pageable
-  ) {
-    // SORT
-    if (sortBy.isPresent()) {
-      switch (sortBy.get()) {
-        case "name":
-          return shopRepository.findByOrderByNameAsc(pageable);
-        case "createdAt":
-          return shopRepository.findByOrderByCreatedAtAsc(pageable);
-        default:
-          return shopRepository.findByOrderByNbProductsAsc(pageable);
-      }
-    }
-
-    // NAME
-    if (search.isPresent()) {
-      return shopRepository.findByNameContainingIgnoreCaseOrderByIdAsc(pageable, search.get());
-    }
-
-    // FILTERS
-    Page<Shop> shopList = getShopListWithFilter(inVacations, createdBefore, createdAfter, pageable);
-    if (shopList != null) {
-      return shopList;
+  ) throws Exception {
+    ShopListEvent event = new ShopListEvent();
+    event.begin();
+    try {
+      return FetchPlans.shops(
+          findShopList(sortBy, inVacations, createdBefore, createdAfter, search, pagination, pageable, event));
+    } finally {
+      event.sortBy = sortBy.orElse(null);
+      event.search = search.orElse(null);
+      event.pagination = pagination.orElse(null);
+      event.pageNumber = pageable.isPaged() ? pageable.getPageNumber() : -1;
+      event.pageSize = pageable.isPaged() ? pageable.getPageSize() : -1;
+      event.commit();
     }
-
-    // NONE
-    return shopRepository.findByOrderByIdAsc(pageable);
   }
 
   @Transactional
   public Shop updateShop(Shop shop) throws Exception {
     try {
       getShop(shop.getId());
-      return this.createShop(shop);
+      Shop updatedShop = saveShop(shop);
+      eventPublisher.publishEvent(new CatalogChangeEvent(EntityType.SHOP, updatedShop.getId(), Action.UPDATED));
+      return FetchPlans.shop(updatedShop);
     } catch (Exception e) {
       throw new Exception(e.getMessage());
     }
@@ -119,13 +173,18 @@ public class ShopService {
    * @param createdBefore Keep shops created before the specified date (optional).
    * @return The shops that match these criteria.
    */
+  @Transactional(readOnly = true)
   public List<Shop> searchShops(String query, Boolean inVacations, LocalDate createdAfter,
       LocalDate createdBefore) {
-    var result = Search.session(em)
-        .search(Shop.class)
-        .where(f -> f.match().field("name").matching(query))
-        .fetchAll();
-    return result.hits().stream().filter(shop -> {
+    ShopSearchEvent event = new ShopSearchEvent();
+    event.begin();
+    var result = Observation.createNotStarted("shop.search", observationRegistry)
+        .lowCardinalityKeyValue("index", "shop")
+        .observe(() -> Search.session(em)
+            .search(Shop.class)
+            .where(f -> f.match().field("name").matching(query))
+            .fetchAll());
+    List<Shop> shops = result.hits().stream().filter(shop -> {
       boolean shouldKeep = true;
       if (inVacations != null) {
         shouldKeep = inVacations.equals(shop.getInVacations());
@@ -140,6 +199,124 @@ public class ShopService {
       }
       return shouldKeep;
     }).toList();
+    event.query = query;
+    event.hits = result.hits().size();
+    event.kept = shops.size();
+    event.commit();
+    return FetchPlans.shops(shops);
+  }
+
+  /**
+   * Searches the shops and counts the matching shops per vacation status and per creation year, in a single request
+   * to the search backend. The selected facets are applied as filters.
+   */
+  @Transactional(readOnly = true)
+  public FacetedResult<Shop> searchShopFacets(
+      Optional<String> query,
+      Optional<Boolean> inVacations,
+      Optional<LocalDate> createdAfter,
+      Optional<LocalDate> createdBefore,
+      Pageable pageable
+  ) {
+    AggregationKey<Map<Boolean, Long>> inVacationsKey = AggregationKey.of("inVacations");
+    AggregationKey<Map<Range<LocalDate>, Long>> createdAtKey = AggregationKey.of("createdAt");
+
+    // One bucket per year, the first one gathering all the shops created before createdAtFirstYear
+    List<Range<LocalDate>> createdAtRanges = new ArrayList<>();
+    createdAtRanges.add(Range.canonical(null, LocalDate.of(createdAtFirstYear, 1, 1)));
+    for (int year = createdAtFirstYear; year <= LocalDate.now().getYear(); year++) {
+      createdAtRanges.add(Range.canonical(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1)));
+    }
+
+    SearchQuery<Shop> searchQuery = Search.session(em)
+        .search(Shop.class)
+        .where(f -> {
+          BooleanPredicateClausesStep<?> bool = f.bool().must(f.matchAll());
+          query.ifPresent(q -> bool.must(f.match().field("name").matching(q)));
+          inVacations.ifPresent(v -> bool.filter(f.match().field("inVacations").matching(v)));
+          createdAfter.ifPresent(d -> bool.filter(f.range().field("createdAt").atLeast(d)));
+          createdBefore.ifPresent(d -> bool.filter(f.range().field("createdAt").atMost(d)));
+          return bool;
+        })
+        .aggregation(inVacationsKey, f -> f.terms().field("inVacations", Boolean.class))
+        .aggregation(createdAtKey, f -> f.range().field("createdAt", LocalDate.class).ranges(createdAtRanges))
+        .toQuery();
+    SearchResult<Shop> result = Observation.createNotStarted("shop.search", observationRegistry)
+        .lowCardinalityKeyValue("index", "shop")
+        .observe(() -> searchQuery.fetch((int) pageable.getOffset(), pageable.getPageSize()));
+
+    Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+    Map<String, Long> inVacationsFacet = new LinkedHashMap<>();
+    result.aggregation(inVacationsKey).forEach((value, count) -> inVacationsFacet.put(value.toString(), count));
+    facets.put("inVacations", inVacationsFacet);
+    Map<String, Long> createdAtFacet = new LinkedHashMap<>();
+    result.aggregation(createdAtKey).forEach((range, count) -> createdAtFacet.put(
+        range.lowerBoundValue().map(d -> String.valueOf(d.getYear()))
+            .orElse("<" + createdAtFirstYear), count));
+    facets.put("createdAt", createdAtFacet);
+
+    return new FacetedResult<>(FetchPlans.shops(result.hits()), result.total().hitCount(), facets);
+  }
+
+  /**
+   * Searches the located shops closest to a point, the nearest first. The distances are computed by the search backend
+   * from the geo_point of the shops, so the request does not depend on the number of shops.
+   *
+   * @param latitude    Latitude of the point, in degrees.
+   * @param longitude   Longitude of the point, in degrees.
+   * @param radiusKm    Keep the shops within this distance (optional, the k nearest shops otherwise).
+   * @param limit       Maximum number of shops returned.
+   * @param inVacations Whether to filter shops based on their vacation status (optional).
+   * @param openAt      Keep the shops open at this day and time (optional).
+   * @return The shops with their distance to the point, in kilometers.
+   */
+  @Transactional(readOnly = true)
+  public List<NearbyShop> getNearbyShops(
+      double latitude,
+      double longitude,
+      Optional<Double> radiusKm,
+      int limit,
+      Optional<Boolean> inVacations,
+      Optional<LocalDateTime> openAt
+  ) throws Exception {
+    if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+      throw new Exception("Latitude must be between -90 and 90 and longitude between -180 and 180");
+    }
+    if (radiusKm.isPresent() && (radiusKm.get() <= 0 || radiusKm.get() > nearbyMaxRadiusKm)) {
+      throw new Exception("Radius must be greater than 0 and at most " + nearbyMaxRadiusKm + " km");
+    }
+    if (limit < 1 || limit > nearbyMaxLimit) {
+      throw new Exception("Limit must be between 1 and " + nearbyMaxLimit);
+    }
+    GeoPoint center = GeoPoint.of(latitude, longitude);
+
+    SearchQuery<NearbyShop> searchQuery = Search.session(em)
+        .search(Shop.class)
+        .select(f -> f.composite()
+            .from(f.entity(), f.distance("location", center).unit(DistanceUnit.KILOMETERS))
+            .as(NearbyShop::new))
+        .where(f -> {
+          BooleanPredicateClausesStep<?> bool = f.bool().must(f.exists().field("location"));
+          radiusKm.ifPresent(r -> bool.filter(
+              f.spatial().within().field("location").circle(center, r, DistanceUnit.KILOMETERS)));
+          inVacations.ifPresent(v -> bool.filter(f.match().field("inVacations").matching(v)));
+          openAt.ifPresent(t -> {
+            LocalTime time = t.toLocalTime();
+            // The day and the hours must match the same opening hours, hence the nested predicate
+            bool.filter(f.nested("openingHours")
+                .add(f.match().field("openingHours.day").matching(t.getDayOfWeek().getValue()))
+                .add(f.range().field("openingHours.openAt").atMost(time))
+                .add(f.range().field("openingHours.closeAt").greaterThan(time)));
+          });
+          return bool;
+        })
+        .sort(f -> f.distance("location", center))
+        .toQuery();
+    List<NearbyShop> shops = Observation.createNotStarted("shop.search", observationRegistry)
+        .lowCardinalityKeyValue("index", "shop")
+        .observe(() -> searchQuery.fetchHits(limit));
+    FetchPlans.shops(shops.stream().map(NearbyShop::getShop).toList());
+    return shops;
   }
 
   private void deleteNestedRelations(Shop shop) {
@@ -152,6 +329,99 @@ public class ShopService {
     }
   }
 
+  private Shop saveShop(Shop shop) throws Exception {
+    // check if no conflit for hours
+    var listHours = shop.getOpeningHours();
+    if ((shop.getLatitude() == null) != (shop.getLongitude() == null)) {
+      throw new Exception("Latitude and longitude must be given together");
+    }
+    ShopValidationEvent event = new ShopValidationEvent();
+    event.begin();
+    try {
+      for (var hour : listHours) {
+        if (listHours.stream().anyMatch(h -> inInterval(h, hour))) {
+          event.conflict = true;
+          throw new Exception("Les heures d'ouvertures sont en conflit.");
+        }
+      }
+    } finally {
+      event.shopId = shop.getId();
+      event.openingHours = listHours.size();
+      event.commit();
+    }
+    try {
+      Shop newShop = shopRepository.save(shop);
+      // Refresh the entity after the save. Otherwise, @Formula does not work.
+      em.flush();
+      em.refresh(newShop);
+      // The opening hours are indexed with the shop but not tracked (SHALLOW): hours merged with new times would
+      // leave the shop unchanged in the index
+      Search.session(em).indexingPlan().addOrUpdate(newShop);
+      statisticsService.markStale(newShop.getId());
+      return newShop;
+    } catch (Exception e) {
+      throw new Exception(e.getMessage());
+    }
+  }
+
+  private Slice<Shop> findShopList(
+      Optional<String> sortBy,
+      Optional<Boolean> inVacations,
+      Optional<String> createdBefore,
+      Optional<String> createdAfter,
+      Optional<String> search,
+      Optional<String> pagination,
+      Pageable pageable,
+      ShopListEvent event
+  ) throws Exception {
+    PaginationMode mode = paginationService.parseMode(pagination);
+    // Same argument order as getShopListWithFilter
+    Slice<Shop> snapshotList =
+        snapshotService.getShopList(sortBy, inVacations, createdBefore, createdAfter, search, mode, pageable);
+    if (snapshotList != null) {
+      event.path = "snapshot";
+      return snapshotList;
+    }
+    // Sorting does not filter, the whole table is counted
+    LongSupplier allShops = () -> paginationService.estimateRows("shops", shopRepository::count);
+
+    // SORT
+    if (sortBy.isPresent()) {
+      event.path = "sort";
+      switch (sortBy.get()) {
+        case "name":
+          return paginationService.paginate(mode, pageable, allShops,
+              shopRepository::findByOrderByNameAsc, shopRepository::findSliceByOrderByNameAsc);
+        case "createdAt":
+          return paginationService.paginate(mode, pageable, allShops,
+              shopRepository::findByOrderByCreatedAtAsc, shopRepository::findSliceByOrderByCreatedAtAsc);
+        default:
+          return paginationService.paginate(mode, pageable, allShops,
+              shopRepository::findByOrderByNbProductsAsc, shopRepository::findSliceByOrderByNbProductsAsc);
+      }
+    }
+
+    // NAME
+    if (search.isPresent()) {
+      event.path = "name";
+      return paginate(mode, pageable, "name=" + search.get().toLowerCase(),
+          p -> shopRepository.findByNameContainingIgnoreCaseOrderByIdAsc(p, search.get()),
+          p -> shopRepository.findSliceByNameContainingIgnoreCaseOrderByIdAsc(p, search.get()));
+    }
+
+    // FILTERS
+    Slice<Shop> shopList = getShopListWithFilter(inVacations, createdBefore, createdAfter, mode, pageable);
+    if (shopList != null) {
+      event.path = "filters";
+      return shopList;
+    }
+
+    // NONE
+    event.path = "none";
+    return paginationService.paginate(mode, pageable, allShops,
+        shopRepository::findByOrderByIdAsc, shopRepository::findSliceByOrderByIdAsc);
+  }
+
   private Shop getShop(Long id) throws Exception {
     Optional<Shop> shop = shopRepository.findById(id);
     if (!shop.isPresent()) {
@@ -160,58 +430,91 @@ public class ShopService {
     return shop.get();
   }
 
-  private Page<Shop> getShopListWithFilter(
+  private Slice<Shop> getShopListWithFilter(
       Optional<Boolean> inVacations,
       Optional<String> createdAfter,
       Optional<String> createdBefore,
+      PaginationMode mode,
       Pageable pageable
   ) {
+    String countKey = "inVacations=" + inVacations.orElse(null) + ",createdAfter=" + createdAfter.orElse(null)
+        + ",createdBefore=" + createdBefore.orElse(null);
+
     if (inVacations.isPresent() && createdBefore.isPresent() && createdAfter.isPresent()) {
-      return shopRepository.findByInVacationsAndCreatedAtGreaterThanAndCreatedAtLessThan(
-          inVacations.get(),
-          LocalDate.parse(createdAfter.get()),
-          LocalDate.parse(createdBefore.get()),
-          pageable
+      boolean vacations = inVacations.get();
+      LocalDate dateStart = LocalDate.parse(createdAfter.get());
+      LocalDate dateEnd = LocalDate.parse(createdBefore.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByInVacationsAndCreatedAtGreaterThanAndCreatedAtLessThan(
+              vacations, dateStart, dateEnd, p),
+          p -> shopRepository.findSliceByInVacationsAndCreatedAtGreaterThanAndCreatedAtLessThan(
+              vacations, dateStart, dateEnd, p)
       );
     }
 
     if (inVacations.isPresent() && createdBefore.isPresent()) {
-      return shopRepository.findByInVacationsAndCreatedAtLessThan(
-          inVacations.get(), LocalDate.parse(createdBefore.get()), pageable
+      LocalDate date = LocalDate.parse(createdBefore.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByInVacationsAndCreatedAtLessThan(inVacations.get(), date, p),
+          p -> shopRepository.findSliceByInVacationsAndCreatedAtLessThan(inVacations.get(), date, p)
       );
     }
 
     if (inVacations.isPresent() && createdAfter.isPresent()) {
-      return shopRepository.findByInVacationsAndCreatedAtGreaterThan(
-          inVacations.get(), LocalDate.parse(createdAfter.get()), pageable
+      LocalDate date = LocalDate.parse(createdAfter.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByInVacationsAndCreatedAtGreaterThan(inVacations.get(), date, p),
+          p -> shopRepository.findSliceByInVacationsAndCreatedAtGreaterThan(inVacations.get(), date, p)
       );
     }
 
     if (inVacations.isPresent()) {
-      return shopRepository.findByInVacations(inVacations.get(), pageable);
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByInVacations(inVacations.get(), p),
+          p -> shopRepository.findSliceByInVacations(inVacations.get(), p)
+      );
     }
 
     if (createdBefore.isPresent() && createdAfter.isPresent()) {
-      return shopRepository.findByCreatedAtBetween(
-          LocalDate.parse(createdAfter.get()), LocalDate.parse(createdBefore.get()), pageable
+      LocalDate dateStart = LocalDate.parse(createdAfter.get());
+      LocalDate dateEnd = LocalDate.parse(createdBefore.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByCreatedAtBetween(dateStart, dateEnd, p),
+          p -> shopRepository.findSliceByCreatedAtBetween(dateStart, dateEnd, p)
       );
     }
 
     if (createdBefore.isPresent()) {
-      return shopRepository.findByCreatedAtLessThan(
-          LocalDate.parse(createdBefore.get()), pageable
+      LocalDate date = LocalDate.parse(createdBefore.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByCreatedAtLessThan(date, p),
+          p -> shopRepository.findSliceByCreatedAtLessThan(date, p)
       );
     }
 
     if (createdAfter.isPresent()) {
-      return shopRepository.findByCreatedAtGreaterThan(
-          LocalDate.parse(createdAfter.get()), pageable
+      LocalDate date = LocalDate.parse(createdAfter.get());
+      return paginate(mode, pageable, countKey,
+          p -> shopRepository.findByCreatedAtGreaterThan(date, p),
+          p -> shopRepository.findSliceByCreatedAtGreaterThan(date, p)
       );
     }
 
     return null;
   }
 
+  private Slice<Shop> paginate(
+      PaginationMode mode,
+      Pageable pageable,
+      String countKey,
+      Function<Pageable, Page<Shop>> pageQuery,
+      Function<Pageable, Slice<Shop>> sliceQuery
+  ) {
+    return paginationService.paginate(mode, pageable,
+        () -> paginationService.cachedCount("shops:" + countKey, PaginationService.countOf(pageQuery)),
+        pageQuery, sliceQuery);
+  }
+
   private boolean inInterval(OpeningHoursShop h1, OpeningHoursShop h2) {
     // on compare la même référence de l'objet
     if (h1.equals(h2)) {
@@ -0,0 +1,225 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.ShopSuggestion;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Shop name typeahead served from an in-memory sorted array of name tokens, rebuilt after shop and product writes.
+ * <p>
+ * Every word of a name (and the whole name) is a token, so "madr" matches "Boutique du Madrillet". When the prefix
+ * matches too few shops, tokens within a small edit distance of the prefix are accepted too. Results are ranked by
+ * number of products.
+ */
+@Service
+@Observed(name = "shop.service")
+@Lazy(false)
+public class ShopSuggestionService {
+    private volatile Index index = Index.EMPTY;
+
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    @Value("${shop.autocomplete.max-limit:50}")
+    private int maxLimit;
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    public List<ShopSuggestion> suggest(String prefix, int limit) throws Exception {
+        if (limit < 1 || limit > maxLimit) {
+            throw new Exception("Limit must be between 1 and " + maxLimit);
+        }
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty()) {
+            return List.of();
+        }
+        return index.suggest(normalizedPrefix, limit);
+    }
+
+    @TransactionalEventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        // Product writes change the popularity of the shops
+        if (event.getEntityType() != EntityType.CATEGORY) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Rebuilds the index at the next refresh, for the shops written outside the API.
+     */
+    public void invalidate() {
+        dirty.set(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${shop.autocomplete.refresh-delay-ms:1000}")
+    @Transactional(readOnly = true)
+    public void rebuildIfDirty() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        List<Object[]> sources = shopRepository.findSuggestionSources();
+        long[] ids = new long[sources.size()];
+        String[] names = new String[sources.size()];
+        long[] popularities = new long[sources.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            Object[] source = sources.get(i);
+            ids[i] = ((Number) source[0]).longValue();
+            names[i] = (String) source[1];
+            popularities[i] = ((Number) source[2]).longValue();
+        }
+        index = new Index(ids, names, popularities);
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "")
+                .toLowerCase().trim().replaceAll("\\s+", " ");
+    }
+
+    private static class Index {
+        static final Index EMPTY = new Index(new long[0], new String[0], new long[0]);
+
+        private final long[] ids;
+
+        private final String[] names;
+
+        private final long[] popularities;
+
+        // Sorted tokens, tokenShops[i] being the index of the shop of tokens[i]
+        private final String[] tokens;
+
+        private final int[] tokenShops;
+
+        Index(long[] ids, String[] names, long[] popularities) {
+            this.ids = ids;
+            this.names = names;
+            this.popularities = popularities;
+
+            List<String> tokenList = new ArrayList<>();
+            List<Integer> shopList = new ArrayList<>();
+            for (int shop = 0; shop < names.length; shop++) {
+                String normalizedName = normalize(names[shop]);
+                Set<String> shopTokens = new LinkedHashSet<>(Arrays.asList(normalizedName.split(" ")));
+                shopTokens.add(normalizedName);
+                for (String token : shopTokens) {
+                    tokenList.add(token);
+                    shopList.add(shop);
+                }
+            }
+            Integer[] order = new Integer[tokenList.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(tokenList::get));
+            this.tokens = new String[order.length];
+            this.tokenShops = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                tokens[i] = tokenList.get(order[i]);
+                tokenShops[i] = shopList.get(order[i]);
+            }
+        }
+
+        List<ShopSuggestion> suggest(String prefix, int limit) {
+            Set<Integer> matches = new LinkedHashSet<>();
+            int from = lowerBound(prefix);
+            for (int i = from; i < tokens.length && tokens[i].startsWith(prefix); i++) {
+                matches.add(tokenShops[i]);
+            }
+            List<ShopSuggestion> suggestions = top(matches, limit, Set.of());
+
+            // Typo tolerance, only looking at tokens starting with the same letter to stay fast
+            if (suggestions.size() < limit && prefix.length() >= 3) {
+                int maxEdits = prefix.length() <= 5 ? 1 : 2;
+                Set<Integer> fuzzyMatches = new LinkedHashSet<>();
+                String firstLetter = prefix.substring(0, 1);
+                for (int i = lowerBound(firstLetter); i < tokens.length && tokens[i].startsWith(firstLetter); i++) {
+                    if (prefixDistance(prefix, tokens[i], maxEdits) <= maxEdits) {
+                        fuzzyMatches.add(tokenShops[i]);
+                    }
+                }
+                suggestions.addAll(top(fuzzyMatches, limit - suggestions.size(), matches));
+            }
+            return suggestions;
+        }
+
+        private List<ShopSuggestion> top(Set<Integer> shops, int limit, Set<Integer> excluded) {
+            return shops.stream()
+                    .filter(shop -> !excluded.contains(shop))
+                    .sorted(Comparator.<Integer>comparingLong(shop -> popularities[shop]).reversed()
+                            .thenComparing(shop -> names[shop]))
+                    .limit(limit)
+                    .map(shop -> new ShopSuggestion(ids[shop], names[shop], popularities[shop]))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = tokens.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (tokens[middle].compareTo(prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Smallest Levenshtein distance between the prefix and any prefix of the token, bounded by maxEdits.
+         */
+        private static int prefixDistance(String prefix, String token, int maxEdits) {
+            int columns = Math.min(token.length(), prefix.length() + maxEdits);
+            int[] previous = new int[columns + 1];
+            int[] current = new int[columns + 1];
+            for (int j = 0; j <= columns; j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= prefix.length(); i++) {
+                current[0] = i;
+                int rowMin = current[0];
+                for (int j = 1; j <= columns; j++) {
+                    int cost = prefix.charAt(i - 1) == token.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (rowMin > maxEdits) {
+                    return rowMin;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            int best = Integer.MAX_VALUE;
+            for (int j = 0; j <= columns; j++) {
+                best = Math.min(best, previous[j]);
+            }
+            return best;
+        }
+    }
+}
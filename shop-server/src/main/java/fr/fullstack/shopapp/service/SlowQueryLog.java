@@ -0,0 +1,280 @@
+package fr.fullstack.shopapp.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import fr.fullstack.shopapp.dto.SlowQuery;
+import jakarta.annotation.PreDestroy;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the last {@code shop.slow-queries.capacity} SQL statements slower than {@code shop.slow-queries.threshold-ms},
+ * with their bind parameters and the repository method (or, failing that, the application method) that ran them. The
+ * statements of the repository methods listed in {@code shop.slow-queries.watched} are kept from the lower
+ * {@code shop.slow-queries.watched-threshold-ms}.
+ * <p>
+ * The plan of a slow {@code SELECT} is captured with {@code EXPLAIN (ANALYZE, BUFFERS)} by a background thread, on a
+ * connection of the pool not going through the JDBC proxy, in a read-only transaction rolled back afterwards. The
+ * same statement is explained at most once per {@code shop.slow-queries.explain-cooldown-ms}, and the plans waiting
+ * beyond {@code shop.slow-queries.explain-queue-size} are dropped, so that a burst of slow queries does not double the
+ * load of the database. The statements calling a function with side effects (advisory locks, sequences,
+ * notifications) are not run again.
+ * <p>
+ * The values of the bind parameters are masked (only their JDBC type is kept) unless
+ * {@code shop.slow-queries.show-parameters} is true: they may hold personal data. The planner receives them as
+ * constants and prints them in the conditions of the plan, so the statements with parameters are only explained when
+ * they are shown.
+ * <p>
+ * The listener is registered on the proxy of the data source set up by datasource-micrometer, next to the tracing one.
+ */
+@Service
+public class SlowQueryLog implements QueryExecutionListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    // Functions whose calls would be repeated by EXPLAIN ANALYZE, like the advisory lock of the change log
+    private static final Pattern SIDE_EFFECTS = Pattern.compile(
+            "\\b(pg_(try_)?advisory\\w*|pg_notify|pg_sleep\\w*|nextval|setval|set_config|dblink\\w*)\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Deque<SlowQuery> queries = new ArrayDeque<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<String, Long> explainedAt = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor explainer;
+
+    @Value("${shop.slow-queries.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop.slow-queries.capacity:200}")
+    private int capacity;
+
+    @Value("${shop.slow-queries.threshold-ms:200}")
+    private long thresholdMs;
+
+    @Value("${shop.slow-queries.watched:}")
+    private Set<String> watched;
+
+    @Value("${shop.slow-queries.watched-threshold-ms:50}")
+    private long watchedThresholdMs;
+
+    @Value("${shop.slow-queries.explain:true}")
+    private boolean explain;
+
+    @Value("${shop.slow-queries.explain-cooldown-ms:60000}")
+    private long explainCooldownMs;
+
+    @Value("${shop.slow-queries.explain-timeout-seconds:30}")
+    private int explainTimeoutSeconds;
+
+    @Value("${shop.slow-queries.show-parameters:false}")
+    private boolean showParameters;
+
+    // Lazy, the data source is being proxied when the listeners are looked up
+    @Lazy
+    @Autowired
+    private DataSource dataSource;
+
+    public SlowQueryLog(@Value("${shop.slow-queries.explain-queue-size:10}") int explainQueueSize) {
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(explainQueueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stopExplainer() {
+        explainer.shutdownNow();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedMs = execInfo.getElapsedTime();
+        if (!enabled || elapsedMs < Math.min(thresholdMs, watchedThresholdMs) || queryInfoList.isEmpty()) {
+            return;
+        }
+        try {
+            String caller = findCaller();
+            if (elapsedMs < thresholdMs && !watched.contains(caller)) {
+                return;
+            }
+            for (QueryInfo queryInfo : queryInfoList) {
+                record(execInfo, queryInfo, elapsedMs, caller);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Slow query not recorded", e);
+        }
+    }
+
+    /**
+     * Slow statements still in memory, the most recent first.
+     */
+    public List<SlowQuery> getSlowQueries(Optional<Long> minElapsedMs, int limit) {
+        synchronized (queries) {
+            return queries.stream()
+                    .filter(query -> query.getElapsedMs() >= minElapsedMs.orElse(0L))
+                    .limit(limit)
+                    .toList();
+        }
+    }
+
+    public void clear() {
+        synchronized (queries) {
+            queries.clear();
+        }
+        explainedAt.clear();
+    }
+
+    private void record(ExecutionInfo execInfo, QueryInfo queryInfo, long elapsedMs, String caller) {
+        List<List<String>> parameters = new ArrayList<>();
+        for (List<ParameterSetOperation> operations : queryInfo.getParametersList()) {
+            parameters.add(operations.stream().map(this::describe).toList());
+        }
+        SlowQuery slowQuery = new SlowQuery(sequence.incrementAndGet(), Instant.now(), elapsedMs, queryInfo.getQuery(),
+                parameters, caller, execInfo.isSuccess());
+        synchronized (queries) {
+            queries.addFirst(slowQuery);
+            while (queries.size() > capacity) {
+                queries.removeLast();
+            }
+        }
+        LOGGER.warn("Slow query ({} ms) from {}: {}", elapsedMs, caller, queryInfo.getQuery());
+
+        if (!explain || execInfo.isBatch() || queryInfo.getParametersList().size() > 1 || !isSelect(queryInfo)) {
+            return;
+        }
+        if (SIDE_EFFECTS.matcher(queryInfo.getQuery()).find()) {
+            slowQuery.setPlanError("Not explained, the statement calls a function with side effects");
+        } else if (!showParameters && parameters.stream().anyMatch(values -> !values.isEmpty())) {
+            slowQuery.setPlanError("Not explained, the plan would show the masked parameters");
+        } else {
+            submitExplain(slowQuery, queryInfo);
+        }
+    }
+
+    private void submitExplain(SlowQuery slowQuery, QueryInfo queryInfo) {
+        long now = System.currentTimeMillis();
+        Long lastExplainedAt = explainedAt.get(queryInfo.getQuery());
+        if (lastExplainedAt != null && now - lastExplainedAt < explainCooldownMs) {
+            slowQuery.setPlanError("Explained less than " + explainCooldownMs + " ms ago");
+            return;
+        }
+        explainedAt.put(queryInfo.getQuery(), now);
+        List<ParameterSetOperation> operations =
+                queryInfo.getParametersList().isEmpty() ? List.of() : queryInfo.getParametersList().get(0);
+        try {
+            explainer.execute(() -> explain(slowQuery, operations));
+        } catch (RejectedExecutionException e) {
+            slowQuery.setPlanError("Too many plans waiting to be explained");
+        }
+    }
+
+    private void explain(SlowQuery slowQuery, List<ParameterSetOperation> operations) {
+        try (Connection connection = rawDataSource().getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement =
+                    connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + slowQuery.getSql())) {
+                statement.setQueryTimeout(explainTimeoutSeconds);
+                // The parameters are set again with the same JDBC calls as the original statement
+                for (ParameterSetOperation operation : operations) {
+                    operation.getMethod().invoke(statement, operation.getArgs());
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+                slowQuery.setPlan(plan.toString());
+            } finally {
+                connection.rollback();
+            }
+        } catch (Exception e) {
+            slowQuery.setPlanError(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private DataSource rawDataSource() throws Exception {
+        return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : dataSource;
+    }
+
+    /**
+     * Repository method that ran the statement, like {@code ShopRepository.findByOrderByNbProductsAsc}, or the first
+     * application method on the stack when the statement does not come from a repository (flush, lazy loading).
+     */
+    private static String findCaller() {
+        return StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE).walk(frames -> {
+            String applicationCaller = "unknown";
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                Class<?> type = frame.getDeclaringClass();
+                if (Proxy.isProxyClass(type)) {
+                    for (Class<?> repository : type.getInterfaces()) {
+                        if (repository.getPackageName().equals("fr.fullstack.shopapp.repository")) {
+                            return repository.getSimpleName() + "." + frame.getMethodName();
+                        }
+                    }
+                } else if ("unknown".equals(applicationCaller) && type != SlowQueryLog.class
+                        && type.getName().startsWith("fr.fullstack.shopapp.")) {
+                    applicationCaller = type.getSimpleName() + "." + frame.getMethodName();
+                }
+            }
+            return applicationCaller;
+        });
+    }
+
+    private String describe(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        String method = operation.getMethod().getName();
+        String value = args.length < 2 ? method : String.valueOf(args[1]);
+        if (method.equals("setNull")) {
+            value = "null";
+        } else if (!showParameters) {
+            // setString -> <String>
+            value = "<" + (method.startsWith("set") ? method.substring(3) : method) + ">";
+        }
+        return value.length() > MAX_PARAMETER_LENGTH ? value.substring(0, MAX_PARAMETER_LENGTH) + "..." : value;
+    }
+
+    private static boolean isSelect(QueryInfo queryInfo) {
+        return queryInfo.getQuery().stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+    }
+}
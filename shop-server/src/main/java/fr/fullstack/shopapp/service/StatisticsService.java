@@ -0,0 +1,131 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.CatalogStatistics;
+import fr.fullstack.shopapp.model.ShopStatistics;
+import fr.fullstack.shopapp.repository.ShopRepository;
+import fr.fullstack.shopapp.repository.ShopStatisticsRepository;
+import io.micrometer.observation.annotation.Observed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the shop statistics from the rollup tables {@code shop_statistics} and {@code shop_category_statistics}.
+ * <p>
+ * Writes made through the API mark the touched shops as stale once committed, and the stale shops are recomputed
+ * every {@code shop.statistics.refresh-delay-ms}, one transaction per shop: the writes neither pay for the
+ * aggregation of their shop nor wait for each other on its rollup row, and the statistics are at most one delay
+ * (plus the time of the recomputation) late. A shop marked again while it is recomputed is recomputed once more.
+ * Writes made outside the API (SQL scripts, bulk loads) and the shops marked on another instance that stopped
+ * before refreshing them are caught up by the full refresh, so they are at most
+ * {@code shop.statistics.full-refresh-cron} late.
+ */
+@Service
+@Observed(name = "shop.service")
+@Lazy(false)
+public class StatisticsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsService.class);
+
+    private final Set<Long> staleShops = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private ShopRepository shopRepository;
+
+    @Autowired
+    private ShopStatisticsRepository statisticsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Transactional(readOnly = true)
+    public CatalogStatistics getCatalogStatistics() {
+        CatalogStatistics statistics = statisticsRepository.findCatalog();
+        statistics.setCategories(statisticsRepository.findCategoriesOfCatalog());
+        return statistics;
+    }
+
+    @Transactional(readOnly = true)
+    public ShopStatistics getShopStatistics(long shopId) throws Exception {
+        if (!shopRepository.existsById(shopId)) {
+            throw new Exception("Shop with id " + shopId + " not found");
+        }
+
+        // Missing until the first refresh of a shop created since
+        ShopStatistics statistics =
+                statisticsRepository.findById(shopId).orElseGet(() -> ShopStatistics.empty(shopId));
+        statistics.setCategories(statisticsRepository.findCategoriesOfShop(shopId));
+        return statistics;
+    }
+
+    /**
+     * Queues the shop for a refresh once the current transaction commits, right away without a transaction.
+     */
+    public void markStale(Long shopId) {
+        if (shopId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            staleShops.add(shopId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                staleShops.add(shopId);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${shop.statistics.refresh-delay-ms:1000}")
+    public void refreshStaleShops() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (Iterator<Long> iterator = staleShops.iterator(); iterator.hasNext(); ) {
+            Long shopId = iterator.next();
+            // Removed before reading, so a write committed during the refresh marks the shop again
+            iterator.remove();
+            try {
+                transaction.executeWithoutResult(status -> {
+                    statisticsRepository.refreshShop(shopId);
+                    statisticsRepository.deleteShopCategories(shopId);
+                    statisticsRepository.insertShopCategories(shopId);
+                });
+            } catch (RuntimeException e) {
+                LOGGER.warn("Statistics of shop {} not refreshed, retrying on the next pass", shopId, e);
+                staleShops.add(shopId);
+            }
+        }
+    }
+
+    @Transactional
+    public void removeCategories(Collection<Long> categoryIds) {
+        statisticsRepository.deleteCategories(categoryIds);
+    }
+
+    @Transactional
+    public void removeShop(long shopId) {
+        statisticsRepository.deleteShopCategories(shopId);
+        statisticsRepository.deleteShop(shopId);
+    }
+
+    @Scheduled(cron = "${shop.statistics.full-refresh-cron:0 */15 * * * *}")
+    @Transactional
+    public void refreshAll() {
+        statisticsRepository.refreshAllShops();
+        statisticsRepository.deleteOrphanShops();
+        statisticsRepository.deleteAllCategories();
+        statisticsRepository.insertAllCategories();
+    }
+}
@@ -0,0 +1,773 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.StockLevel;
+import fr.fullstack.shopapp.event.CatalogChangeEvent;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.Action;
+import fr.fullstack.shopapp.event.CatalogChangeEvent.EntityType;
+import fr.fullstack.shopapp.model.StockReservation;
+import fr.fullstack.shopapp.model.StockReservation.Status;
+import fr.fullstack.shopapp.repository.ProductRepository;
+import fr.fullstack.shopapp.repository.StockReservationRepository;
+import fr.fullstack.shopapp.util.StripedCounter;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stock of the products and reservations of their units, for flash sales where a few products take thousands of
+ * reservations per second.
+ * <p>
+ * The units left of each stocked product are counted in memory by a {@link StripedCounter}: a reservation takes its
+ * units from the counter without any lock nor row update, so the units are never reserved twice, then it is appended
+ * to the reservation log ({@code stock_reservations}). A single writer inserts the queued reservations in groups of up
+ * to {@code shop.stock.batch-size}, one transaction per group, and each caller is answered once its reservation is
+ * committed. A counter starts with one stripe and is spread over {@code shop.stock.stripes} stripes once its
+ * contention goes over {@code shop.stock.hot-collisions} failed updates.
+ * <p>
+ * The confirmations and releases update the row of their reservation, the released and expired units going back to
+ * the counter. Every {@code shop.stock.reconcile-delay-ms}, the confirmed reservations are settled (removed from the
+ * quantity of {@code product_stocks}), the quantities changed outside the API are applied to the counters, and the
+ * counters are compared with the log: a difference seen twice in a row is repaired when
+ * {@code shop.stock.repair-drift} is set. The counters and the log are compared on a consistent cut: each change of
+ * the log and its counterpart in memory (units taken or given back, reservations pending) are made under the read
+ * lock of {@code cutLock}, and the reconciliation reads the counters and opens the snapshot of its query under the
+ * write lock.
+ * <p>
+ * The counters are the reference of the units left, so the stocks must be served by a single instance.
+ */
+@Service
+@Lazy(false)
+public class StockService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockService.class);
+
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private static final String RESERVATION_COLUMNS =
+            "id, product_id, quantity, status, created_at, expires_at, updated_at";
+
+    private static final String INSERT_RESERVATION = "INSERT INTO stock_reservations (" + RESERVATION_COLUMNS
+            + ") VALUES (?, ?, ?, 'RESERVED', ?, ?, ?)";
+
+    private static final String CONFIRM = "UPDATE stock_reservations SET status = 'CONFIRMED', updated_at = ? "
+            + "WHERE id = ? AND status = 'RESERVED' AND expires_at > ? RETURNING " + RESERVATION_COLUMNS;
+
+    private static final String RELEASE = "UPDATE stock_reservations SET status = 'RELEASED', updated_at = ? "
+            + "WHERE id = ? AND status = 'RESERVED' RETURNING " + RESERVATION_COLUMNS;
+
+    private static final String EXPIRE = "UPDATE stock_reservations SET status = 'EXPIRED', updated_at = ? "
+            + "WHERE id IN (SELECT id FROM stock_reservations WHERE status = 'RESERVED' AND expires_at <= ? "
+            + "LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING " + RESERVATION_COLUMNS;
+
+    private static final String SETTLE = "WITH settled AS (UPDATE stock_reservations SET status = 'SETTLED', "
+            + "updated_at = ? WHERE status = 'CONFIRMED' RETURNING product_id, quantity) "
+            + "SELECT product_id, SUM(quantity) FROM settled GROUP BY product_id";
+
+    private static final String SETTLE_QUANTITY =
+            "UPDATE product_stocks SET quantity = quantity - ?, updated_at = ? WHERE product_id = ?";
+
+    private static final String RELEASE_PRODUCT = "UPDATE stock_reservations SET status = 'RELEASED', "
+            + "updated_at = ? WHERE product_id = ? AND status = 'RESERVED'";
+
+    private static final String DELETE_STOCK = "DELETE FROM product_stocks WHERE product_id = ?";
+
+    private static final String RESTOCK = "INSERT INTO product_stocks (product_id, quantity, updated_at) "
+            + "VALUES (?, ?, ?) ON CONFLICT (product_id) DO UPDATE SET "
+            + "quantity = product_stocks.quantity + EXCLUDED.quantity, updated_at = EXCLUDED.updated_at "
+            + "RETURNING quantity";
+
+    // Quantity of each stock and units held by its reservations not released nor settled
+    private static final String STOCKS = "SELECT s.product_id, s.quantity, COALESCE(r.held, 0) "
+            + "FROM product_stocks s LEFT JOIN (SELECT product_id, SUM(quantity) AS held FROM stock_reservations "
+            + "WHERE status IN ('RESERVED', 'CONFIRMED') GROUP BY product_id) r ON r.product_id = s.product_id";
+
+    private static final String COMMITTED_IDS = "SELECT id FROM stock_reservations WHERE id = ANY (?)";
+
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+
+    // Guards the quantities of the stocks: restocks, settlements and reconciliations
+    private final ReentrantLock quantityLock = new ReentrantLock();
+
+    // Read: a change of the log or of the units held, with its counterpart in memory. Write: a cut for reconciling.
+    private final ReentrantReadWriteLock cutLock = new ReentrantReadWriteLock();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder batchedReservations = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder reserved = new LongAdder();
+
+    private final LongAdder repaired = new LongAdder();
+
+    // Differences between the counters and the log seen by the last reconciliation
+    private volatile Map<Long, Long> drifts = new HashMap<>();
+
+    private BlockingQueue<Pending> queue;
+
+    private Thread writer;
+
+    private volatile boolean running = true;
+
+    private volatile boolean loaded;
+
+    private volatile Instant reconciledAt;
+
+    private volatile long reconcileMs;
+
+    @Value("${shop.stock.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shop.stock.commit-timeout-ms:5000}")
+    private long commitTimeoutMs;
+
+    @Value("${shop.stock.default-ttl-seconds:600}")
+    private long defaultTtlSeconds;
+
+    @Value("${shop.stock.expire-batch-size:1000}")
+    private int expireBatchSize;
+
+    @Value("${shop.stock.hot-collisions:1000}")
+    private long hotCollisions;
+
+    @Value("${shop.stock.linger-ms:0}")
+    private long lingerMs;
+
+    @Value("${shop.stock.max-quantity:100}")
+    private int maxQuantity;
+
+    @Value("${shop.stock.max-ttl-seconds:3600}")
+    private long maxTtlSeconds;
+
+    @Value("${shop.stock.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${shop.stock.repair-drift:true}")
+    private boolean repairDrift;
+
+    @Value("${shop.stock.stripes:8}")
+    private int stripes;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void startWriter() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::write, "stock-reservations");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stopWriter() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, new IllegalStateException("The application is stopping"));
+    }
+
+    /**
+     * Loads the counters from the stocks and the reservations not released nor settled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        quantityLock.lock();
+        try {
+            jdbcTemplate.query(STOCKS, rs -> {
+                long productId = rs.getLong(1);
+                stocks.put(productId, new Stock(productId, rs.getLong(2), rs.getLong(2) - rs.getLong(3)));
+            });
+            loaded = true;
+        } finally {
+            quantityLock.unlock();
+        }
+        LOGGER.info("Stocks of {} products loaded in {} ms", stocks.size(), System.currentTimeMillis() - start);
+    }
+
+    public StockLevel getStockLevel(long productId) throws Exception {
+        Stock stock = getStock(productId);
+        StripedCounter counter = stock.counter;
+        return new StockLevel(productId, stock.quantity, counter.sum(), stock.pending.get(), counter.getStripes());
+    }
+
+    public StockReservation getReservation(String id) throws Exception {
+        return reservationRepository.findById(id)
+                .orElseThrow(() -> new Exception("Reservation with id " + id + " not found"));
+    }
+
+    /**
+     * Adds units to the stock of the product, or removes them when negative. Only the units that are not reserved can
+     * be removed.
+     */
+    public StockLevel restock(long productId, long units) throws Exception {
+        if (units == 0) {
+            throw new Exception("The number of units must not be 0");
+        }
+        checkLoaded();
+        if (!productRepository.existsById(productId)) {
+            throw new Exception("Product with id " + productId + " not found");
+        }
+        quantityLock.lock();
+        try {
+            Stock stock = stocks.computeIfAbsent(productId, id -> new Stock(id, 0, 0));
+            if (units < 0 && !take(stock, -units)) {
+                throw new Exception("Only " + stock.counter.sum() + " units of the product " + productId
+                        + " are not reserved");
+            }
+            long quantity;
+            try {
+                quantity = jdbcTemplate.queryForObject(RESTOCK, Long.class, productId, units, now());
+            } catch (RuntimeException e) {
+                if (units < 0) {
+                    give(stock, -units);
+                }
+                throw e;
+            }
+            // The quantity may also have been changed outside the API since the last reconciliation
+            adjust(stock, quantity - stock.quantity - Math.min(units, 0));
+            stock.quantity = quantity;
+        } finally {
+            quantityLock.unlock();
+        }
+        return getStockLevel(productId);
+    }
+
+    /**
+     * Deletes the stock of the product and releases its reservations not confirmed yet, in the transaction deleting
+     * the product. Its counter is dropped once the deletion is committed.
+     */
+    public void removeStock(long productId) {
+        jdbcTemplate.update(RELEASE_PRODUCT, now(), productId);
+        jdbcTemplate.update(DELETE_STOCK, productId);
+    }
+
+    @TransactionalEventListener
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getEntityType() != EntityType.PRODUCT || event.getAction() != Action.DELETED) {
+            return;
+        }
+        // Under the quantity lock, so that a reconciliation reading the stocks before the deletion does not add it back
+        quantityLock.lock();
+        try {
+            stocks.remove(event.getEntityId());
+        } finally {
+            quantityLock.unlock();
+        }
+    }
+
+    /**
+     * Reserves units of the product, answering once the reservation is committed.
+     *
+     * @throws IllegalStateException when the reservation cannot be queued or committed in time, the caller must retry
+     *                               later or look the reservation up
+     */
+    public StockReservation reserve(long productId, int quantity, Optional<Long> ttlSeconds) throws Exception {
+        if (quantity < 1 || quantity > maxQuantity) {
+            throw new Exception("Quantity must be between 1 and " + maxQuantity);
+        }
+        long ttl = ttlSeconds.orElse(defaultTtlSeconds);
+        if (ttl < 1 || ttl > maxTtlSeconds) {
+            throw new Exception("A reservation must last between 1 and " + maxTtlSeconds + " seconds");
+        }
+        Stock stock = getStock(productId);
+        cutLock.readLock().lock();
+        try {
+            if (!take(stock, quantity)) {
+                rejected.increment();
+                throw new Exception("Not enough stock left for the product " + productId);
+            }
+            stock.pending.addAndGet(quantity);
+        } finally {
+            cutLock.readLock().unlock();
+        }
+
+        Instant now = Instant.now();
+        StockReservation reservation = new StockReservation();
+        reservation.setId(UUID.randomUUID().toString());
+        reservation.setProductId(productId);
+        reservation.setQuantity(quantity);
+        reservation.setStatus(Status.RESERVED);
+        reservation.setCreatedAt(now);
+        reservation.setExpiresAt(now.plusSeconds(ttl));
+        reservation.setUpdatedAt(now);
+        Pending pending = new Pending(reservation, stock, CONTEXT_SNAPSHOTS.captureAll());
+        if (!queue.offer(pending)) {
+            IllegalStateException full = new IllegalStateException("The reservation log is full, retry later");
+            fail(List.of(pending), full);
+            throw full;
+        }
+
+        try {
+            pending.committed.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Committed later, it expires if it is not confirmed; failed, its units go back to the stock
+            throw new IllegalStateException("The reservation " + reservation.getId() + " is not committed yet");
+        } catch (ExecutionException e) {
+            throw new Exception(e.getCause().getMessage());
+        }
+        reserved.increment();
+        return reservation;
+    }
+
+    public StockReservation confirm(String id) throws Exception {
+        checkLoaded();
+        Instant now = Instant.now();
+        List<StockReservation> confirmed =
+                jdbcTemplate.query(CONFIRM, StockService::toReservation, Timestamp.from(now), id, Timestamp.from(now));
+        if (confirmed.isEmpty()) {
+            throw refused(id, "confirmed");
+        }
+        return confirmed.get(0);
+    }
+
+    public StockReservation release(String id) throws Exception {
+        checkLoaded();
+        List<StockReservation> released;
+        cutLock.readLock().lock();
+        try {
+            released = jdbcTemplate.query(RELEASE, StockService::toReservation, now(), id);
+            released.forEach(this::giveBack);
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        if (released.isEmpty()) {
+            throw refused(id, "released");
+        }
+        return released.get(0);
+    }
+
+    /**
+     * Expires the reservations not confirmed in time, their units going back to the stock.
+     */
+    @Scheduled(fixedDelayString = "${shop.stock.expire-delay-ms:1000}")
+    public void expireReservations() {
+        if (!loaded) {
+            return;
+        }
+        List<StockReservation> expiredReservations;
+        do {
+            Timestamp now = now();
+            cutLock.readLock().lock();
+            try {
+                expiredReservations =
+                        jdbcTemplate.query(EXPIRE, StockService::toReservation, now, now, expireBatchSize);
+                expiredReservations.forEach(this::giveBack);
+            } finally {
+                cutLock.readLock().unlock();
+            }
+            expired.add(expiredReservations.size());
+        } while (expiredReservations.size() == expireBatchSize);
+    }
+
+    /**
+     * Settles the confirmed reservations, applies the quantities changed outside the API to the counters and compares
+     * the counters with the log.
+     */
+    @Scheduled(fixedDelayString = "${shop.stock.reconcile-delay-ms:10000}")
+    public void reconcile() {
+        if (!loaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        quantityLock.lock();
+        try {
+            settle();
+            Map<Long, Long> newDrifts = new HashMap<>();
+            TransactionTemplate cut = new TransactionTemplate(transactionManager);
+            cut.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            cut.setReadOnly(true);
+            cut.executeWithoutResult(status -> {
+                Map<Long, Long> available = new HashMap<>();
+                cutLock.writeLock().lock();
+                try {
+                    // The first statement takes the snapshot of the transaction, which the STOCKS query then reads
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    stocks.forEach((productId, stock) ->
+                            available.put(productId, stock.counter.sum() + stock.pending.get()));
+                } finally {
+                    cutLock.writeLock().unlock();
+                }
+                jdbcTemplate.query(STOCKS, rs -> {
+                    long productId = rs.getLong(1);
+                    long quantity = rs.getLong(2);
+                    long held = rs.getLong(3);
+                    Stock stock = stocks.computeIfAbsent(productId, id -> new Stock(id, quantity, quantity - held));
+                    Long counted = available.get(productId);
+                    // The counter is in line with the quantity it knows, the changes made outside the API come next
+                    long drift = counted == null ? 0 : stock.quantity - held - counted;
+                    if (drift != 0) {
+                        newDrifts.put(productId, drift);
+                    }
+                    adjust(stock, quantity - stock.quantity);
+                    stock.quantity = quantity;
+                });
+            });
+            for (Map.Entry<Long, Long> drift : List.copyOf(newDrifts.entrySet())) {
+                if (!drift.getValue().equals(drifts.get(drift.getKey()))) {
+                    continue;
+                }
+                LOGGER.warn("The stock counter of product {} differs from the reservation log by {} units",
+                        drift.getKey(), drift.getValue());
+                if (repairDrift) {
+                    adjust(stocks.get(drift.getKey()), drift.getValue());
+                    newDrifts.remove(drift.getKey());
+                    repaired.increment();
+                }
+            }
+            drifts = newDrifts;
+        } finally {
+            quantityLock.unlock();
+        }
+        reconciledAt = Instant.now();
+        reconcileMs = System.currentTimeMillis() - start;
+    }
+
+    public Map<String, Object> getStatus() {
+        long batchCount = batches.sum();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("loaded", loaded);
+        status.put("stocks", stocks.size());
+        status.put("stripedStocks", stocks.values().stream().filter(s -> s.counter.getStripes() > 1).count());
+        status.put("queued", queue.size());
+        status.put("reserved", reserved.sum());
+        status.put("rejected", rejected.sum());
+        status.put("expired", expired.sum());
+        status.put("batches", batchCount);
+        status.put("averageBatchSize", batchCount == 0 ? 0 : (double) batchedReservations.sum() / batchCount);
+        status.put("reconciledAt", reconciledAt);
+        status.put("reconcileMs", reconcileMs);
+        status.put("driftingStocks", drifts.size());
+        status.put("repairedStocks", repaired.sum());
+        return status;
+    }
+
+    private void settle() {
+        Timestamp now = now();
+        Map<Long, Long> settled = new HashMap<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.query(SETTLE, rs -> {
+                settled.put(rs.getLong(1), rs.getLong(2));
+            }, now);
+            jdbcTemplate.batchUpdate(SETTLE_QUANTITY, List.copyOf(settled.entrySet()), batchSize, (ps, entry) -> {
+                ps.setLong(1, entry.getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, entry.getKey());
+            });
+        });
+        // The settled units had already left the counters
+        settled.forEach((productId, units) -> Optional.ofNullable(stocks.get(productId))
+                .ifPresent(stock -> stock.quantity -= units));
+    }
+
+    private void write() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                // The reservations queued while the previous group was committing make the next group
+                if (lingerMs > 0 && queue.size() < batchSize - 1) {
+                    Thread.sleep(lingerMs);
+                }
+            } catch (InterruptedException e) {
+                fail(batch, new IllegalStateException("The application is stopping"));
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        try (ContextSnapshot.Scope scope = batch.get(0).context.setThreadLocals()) {
+            Observation.createNotStarted("stock.reservation.batch", observationRegistry)
+                    .highCardinalityKeyValue("size", String.valueOf(batch.size()))
+                    .observe(() -> commitInTransaction(batch));
+        }
+    }
+
+    private void commitInTransaction(List<Pending> batch) {
+        batches.increment();
+        batchedReservations.add(batch.size());
+        // The reservations become visible in the log and leave the pending units in the same cut
+        cutLock.readLock().lock();
+        try {
+            commitOrRecover(batch);
+        } finally {
+            cutLock.readLock().unlock();
+        }
+    }
+
+    private void commitOrRecover(List<Pending> batch) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    INSERT_RESERVATION, batch, batch.size(), (ps, pending) -> {
+                        StockReservation reservation = pending.reservation;
+                        ps.setString(1, reservation.getId());
+                        ps.setLong(2, reservation.getProductId());
+                        ps.setInt(3, reservation.getQuantity());
+                        ps.setTimestamp(4, Timestamp.from(reservation.getCreatedAt()));
+                        ps.setTimestamp(5, Timestamp.from(reservation.getExpiresAt()));
+                        ps.setTimestamp(6, Timestamp.from(reservation.getUpdatedAt()));
+                    }));
+        } catch (RuntimeException e) {
+            recover(batch, e);
+            return;
+        }
+        for (Pending pending : batch) {
+            pending.stock.pending.addAndGet(-pending.reservation.getQuantity());
+            pending.committed.complete(null);
+        }
+    }
+
+    /**
+     * Sorts out a group whose commit failed: the commit may still have succeeded when the connection was lost, so the
+     * units go back to the stock only for the reservations that are surely not in the log.
+     */
+    private void recover(List<Pending> batch, RuntimeException failure) {
+        Set<String> committedIds;
+        try {
+            String[] ids = batch.stream().map(pending -> pending.reservation.getId()).toArray(String[]::new);
+            committedIds = Set.copyOf(jdbcTemplate.query(COMMITTED_IDS,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", ids)),
+                    (rs, rowNum) -> rs.getString(1)));
+        } catch (RuntimeException e) {
+            // Unknown outcome: the units stay held, the reconciliation repairs the counters of the missing ones
+            LOGGER.error("Unable to check the commit of {} reservations", batch.size(), e);
+            for (Pending pending : batch) {
+                pending.stock.pending.addAndGet(-pending.reservation.getQuantity());
+                pending.committed.completeExceptionally(failure);
+            }
+            return;
+        }
+        List<Pending> failed = new ArrayList<>();
+        for (Pending pending : batch) {
+            if (committedIds.contains(pending.reservation.getId())) {
+                pending.stock.pending.addAndGet(-pending.reservation.getQuantity());
+                pending.committed.complete(null);
+            } else {
+                failed.add(pending);
+            }
+        }
+        fail(failed, failure);
+    }
+
+    private void fail(List<Pending> batch, RuntimeException failure) {
+        cutLock.readLock().lock();
+        try {
+            for (Pending pending : batch) {
+                int quantity = pending.reservation.getQuantity();
+                pending.stock.pending.addAndGet(-quantity);
+                give(pending.stock, quantity);
+            }
+        } finally {
+            cutLock.readLock().unlock();
+        }
+        batch.forEach(pending -> pending.committed.completeExceptionally(failure));
+    }
+
+    private void checkLoaded() {
+        if (!loaded) {
+            throw new IllegalStateException("The stocks are not loaded yet, retry later");
+        }
+    }
+
+    private Stock getStock(long productId) throws Exception {
+        checkLoaded();
+        Stock stock = stocks.get(productId);
+        if (stock == null) {
+            throw new Exception("Stock of the product " + productId + " not found");
+        }
+        return stock;
+    }
+
+    private Exception refused(String id, String action) throws Exception {
+        StockReservation reservation = getReservation(id);
+        if (reservation.getStatus() == Status.RESERVED) {
+            return new Exception("Reservation " + id + " has expired");
+        }
+        return new Exception("Reservation " + id + " cannot be " + action + ", it is "
+                + reservation.getStatus().name().toLowerCase());
+    }
+
+    private boolean take(Stock stock, long units) {
+        while (true) {
+            StripedCounter counter = stock.counter;
+            if (counter.getStripes() == 1 && counter.getCollisions() > hotCollisions) {
+                spread(stock);
+                continue;
+            }
+            if (counter.tryTake(units)) {
+                return true;
+            }
+            // The units may have moved to the striped counter meanwhile
+            if (stock.counter == counter) {
+                return false;
+            }
+        }
+    }
+
+    private void give(Stock stock, long units) {
+        StripedCounter counter = stock.counter;
+        if (units >= counter.getStripes()) {
+            counter.addEvenly(units);
+        } else {
+            counter.add(units);
+        }
+        StripedCounter current = stock.counter;
+        if (current != counter) {
+            // Spread meanwhile, the units added to the former counter follow the others
+            current.addEvenly(counter.drain());
+        }
+    }
+
+    private void giveBack(StockReservation reservation) {
+        Optional.ofNullable(stocks.get(reservation.getProductId()))
+                .ifPresent(stock -> give(stock, reservation.getQuantity()));
+    }
+
+    /**
+     * Adds or removes units from the counter, after a change of the quantity.
+     */
+    private void adjust(Stock stock, long units) {
+        if (units > 0) {
+            give(stock, units);
+        } else if (units < 0) {
+            long taken = 0;
+            while (true) {
+                StripedCounter counter = stock.counter;
+                taken += counter.takeUpTo(-units - taken);
+                if (taken == -units || stock.counter == counter) {
+                    break;
+                }
+            }
+            if (taken < -units) {
+                LOGGER.warn("{} units removed from the stock of product {} were already reserved", -units - taken,
+                        stock.productId);
+            }
+        }
+    }
+
+    private void spread(Stock stock) {
+        synchronized (stock) {
+            StripedCounter single = stock.counter;
+            if (single.getStripes() > 1) {
+                return;
+            }
+            StripedCounter striped = new StripedCounter(stripes, 0);
+            stock.counter = striped;
+            striped.addEvenly(single.drain());
+        }
+        LOGGER.info("Stock of product {} spread over {} stripes", stock.productId, stripes);
+    }
+
+    private static Timestamp now() {
+        return Timestamp.from(Instant.now());
+    }
+
+    private static StockReservation toReservation(ResultSet rs, int rowNum) throws SQLException {
+        StockReservation reservation = new StockReservation();
+        reservation.setId(rs.getString("id"));
+        reservation.setProductId(rs.getLong("product_id"));
+        reservation.setQuantity(rs.getInt("quantity"));
+        reservation.setStatus(Status.valueOf(rs.getString("status")));
+        reservation.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        reservation.setExpiresAt(rs.getTimestamp("expires_at").toInstant());
+        reservation.setUpdatedAt(rs.getTimestamp("updated_at").toInstant());
+        return reservation;
+    }
+
+    private static class Stock {
+        private final long productId;
+
+        // Reservations taken from the counter and not committed yet
+        private final AtomicLong pending = new AtomicLong();
+
+        private volatile StripedCounter counter;
+
+        // Quantity of the stock the counter is in line with, changed under the quantity lock
+        private volatile long quantity;
+
+        Stock(long productId, long quantity, long available) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.counter = new StripedCounter(1, Math.max(available, 0));
+        }
+    }
+
+    private static class Pending {
+        private final StockReservation reservation;
+
+        private final Stock stock;
+
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        // Tracing context of the request that queued the reservation
+        private final ContextSnapshot context;
+
+        Pending(StockReservation reservation, Stock stock, ContextSnapshot context) {
+            this.reservation = reservation;
+            this.stock = stock;
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.TraceSpan;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local exporter of the sampled spans: the last {@code shop.tracing.recent-spans} spans are kept in a ring buffer, so
+ * a slow request can be looked at span by span (controller, service methods, SQL statements, search calls) without a
+ * tracing backend.
+ */
+@Service
+@Lazy(false)
+public class TraceStore implements SpanExporter {
+    private final TraceSpan[] spans;
+
+    private int next;
+
+    private long exported;
+
+    public TraceStore(@Value("${shop.tracing.recent-spans:10000}") int capacity) {
+        this.spans = new TraceSpan[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> batch) {
+        List<TraceSpan> converted = new ArrayList<>(batch.size());
+        for (SpanData span : batch) {
+            converted.add(toTraceSpan(span));
+        }
+        synchronized (spans) {
+            for (TraceSpan span : converted) {
+                spans[next] = span;
+                next = (next + 1) % spans.length;
+                exported++;
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * Root spans (usually the HTTP requests) still in the buffer, the most recent first.
+     */
+    public List<TraceSpan> getRecentTraces(long minDurationMs, int limit) {
+        long minDurationMicros = TimeUnit.MILLISECONDS.toMicros(minDurationMs);
+        return snapshot().stream()
+                .filter(span -> span.getParentSpanId() == null && span.getDurationMicros() >= minDurationMicros)
+                .sorted(Comparator.comparing(TraceSpan::getStartedAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public long getExportedCount() {
+        synchronized (spans) {
+            return exported;
+        }
+    }
+
+    /**
+     * Spans of a trace still in the buffer, in the order they started.
+     */
+    public List<TraceSpan> getTrace(String traceId) throws Exception {
+        List<TraceSpan> trace = snapshot().stream()
+                .filter(span -> span.getTraceId().equals(traceId))
+                .sorted(Comparator.comparing(TraceSpan::getStartedAt))
+                .toList();
+        if (trace.isEmpty()) {
+            throw new Exception("Trace not found");
+        }
+        return trace;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private List<TraceSpan> snapshot() {
+        List<TraceSpan> copy = new ArrayList<>(spans.length);
+        synchronized (spans) {
+            for (TraceSpan span : spans) {
+                if (span != null) {
+                    copy.add(span);
+                }
+            }
+        }
+        return copy;
+    }
+
+    private TraceSpan toTraceSpan(SpanData span) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        String parentSpanId = span.getParentSpanContext().isValid() ? span.getParentSpanId() : null;
+        long startNanos = span.getStartEpochNanos();
+        Instant startedAt = Instant.ofEpochSecond(0, startNanos);
+        long durationMicros = TimeUnit.NANOSECONDS.toMicros(span.getEndEpochNanos() - startNanos);
+        return new TraceSpan(span.getTraceId(), span.getSpanId(), parentSpanId, span.getName(), startedAt,
+                durationMicros, attributes);
+    }
+}
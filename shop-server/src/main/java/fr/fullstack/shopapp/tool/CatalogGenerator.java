@@ -0,0 +1,404 @@
+package fr.fullstack.shopapp.tool;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills an empty database (or one emptied with {@code --truncate=true}) with a synthetic catalog: shops with their
+ * opening hours and a location around a few French cities, a tree of categories with its closure rows, products with
+ * their FR/EN translations and their category links (carrying the shop of the product).
+ * <p>
+ * The catalog only depends on the options and the seed: the products are generated by chunks of
+ * {@code --chunk-size} ids, each chunk with its own random generator, and the chunks are loaded with the COPY protocol
+ * by {@code --threads} connections in parallel. The sequences of the entities are moved past the generated ids, and
+ * the application is finally asked to rebuild its search indexes and derived data ({@code POST /api/v1/admin/reindex})
+ * when {@code --api-url} is given, with the administration token of the application ({@code --admin-token}, or the
+ * {@code SHOP_ADMIN_TOKEN} environment variable which stays out of the process list). A refused call fails the run.
+ * <p>
+ * Run from the application jar (see {@code scripts/generate-catalog.sh}), the options being {@code --name=value}:
+ * url, user, password, shops, products, categories, category-roots, category-fanout, max-categories-per-product,
+ * shop-skew, en-ratio, description-ratio, seed, threads, chunk-size, truncate, api-url, admin-token.
+ */
+public class CatalogGenerator {
+    private static final String[] SHOP_KINDS = {"Boutique", "Épicerie", "Librairie", "Fromagerie", "Boulangerie",
+        "Quincaillerie", "Fleuriste", "Caviste", "Droguerie", "Mercerie"};
+
+    private static final String[] PLACES = {"du Centre", "de la Gare", "du Marché", "des Halles", "du Port",
+        "de Rouen", "du Madrillet", "de la Place", "du Quai", "des Arts"};
+
+    // Latitude and longitude of the cities around which the shops are located
+    private static final double[][] CITIES = {{49.4431, 1.0993}, {48.8566, 2.3522}, {45.7640, 4.8357},
+        {43.2965, 5.3698}, {50.6292, 3.0573}, {47.2184, -1.5536}, {44.8378, -0.5792}, {43.6047, 1.4442}};
+
+    private static final String[] SEQUENCES = {"shops_seq", "opening_hours_seq", "categories_seq", "products_seq"};
+
+    private static final String[] TABLES = {"products_categories", "products", "category_closure", "categories",
+        "shops_opening_hours", "opening_hours", "shop_category_statistics", "shop_statistics", "shops"};
+
+    private final Map<String, String> options;
+
+    private final long seed;
+
+    private final long nbShops;
+
+    private final long nbProducts;
+
+    private final int nbCategories;
+
+    private final int categoryRoots;
+
+    private final int categoryFanout;
+
+    private final int maxCategoriesPerProduct;
+
+    private final double shopSkew;
+
+    private final double enRatio;
+
+    private final double descriptionRatio;
+
+    private final int threads;
+
+    private final int chunkSize;
+
+    public CatalogGenerator(Map<String, String> options) {
+        this.options = options;
+        this.seed = Long.parseLong(option("seed", "42"));
+        this.nbShops = Long.parseLong(option("shops", "10000"));
+        this.nbProducts = Long.parseLong(option("products", "10000000"));
+        this.nbCategories = Integer.parseInt(option("categories", "200"));
+        this.categoryRoots = Integer.parseInt(option("category-roots", "10"));
+        this.categoryFanout = Integer.parseInt(option("category-fanout", "5"));
+        this.maxCategoriesPerProduct = Integer.parseInt(option("max-categories-per-product", "3"));
+        this.shopSkew = Double.parseDouble(option("shop-skew", "2"));
+        this.enRatio = Double.parseDouble(option("en-ratio", "0.5"));
+        this.descriptionRatio = Double.parseDouble(option("description-ratio", "0.7"));
+        this.threads = Integer.parseInt(option("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.chunkSize = Integer.parseInt(option("chunk-size", "100000"));
+        if (nbShops < 1 || nbProducts < 0 || nbCategories < 1 || categoryRoots < 1 || categoryFanout < 1
+                || maxCategoriesPerProduct < 0 || shopSkew <= 0 || threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid sizes, see the options in the documentation of the class");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Options are given as --name=value: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        new CatalogGenerator(options).run();
+    }
+
+    public void run() throws Exception {
+        String apiUrl = options.get("api-url");
+        String adminToken = options.getOrDefault("admin-token", System.getenv("SHOP_ADMIN_TOKEN"));
+        // Checked before the load, which takes a while
+        if (apiUrl != null && (adminToken == null || adminToken.isEmpty())) {
+            throw new IllegalArgumentException("--api-url needs the administration token of the application: "
+                    + "--admin-token or SHOP_ADMIN_TOKEN");
+        }
+        long start = System.currentTimeMillis();
+        try (Connection connection = connect()) {
+            prepare(connection);
+            loadShops(connection);
+            loadCategories(connection);
+        }
+        loadProducts();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            resetSequences(statement);
+            log("Analyzing the tables");
+            statement.execute("ANALYZE");
+        }
+        log("Catalog loaded in " + (System.currentTimeMillis() - start) / 1000 + " s");
+        if (apiUrl != null) {
+            reindex(apiUrl, adminToken);
+        }
+    }
+
+    private void prepare(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (Boolean.parseBoolean(option("truncate", "false"))) {
+                log("Truncating the catalog");
+                statement.execute("TRUNCATE " + String.join(", ", TABLES));
+            } else {
+                try (ResultSet rows = statement.executeQuery(
+                        "SELECT EXISTS (SELECT 1 FROM shops) OR EXISTS (SELECT 1 FROM products)")) {
+                    rows.next();
+                    if (rows.getBoolean(1)) {
+                        throw new IllegalStateException("The catalog is not empty, use --truncate=true to replace it");
+                    }
+                }
+            }
+        }
+    }
+
+    private void loadShops(Connection connection) throws SQLException {
+        log("Generating " + nbShops + " shops");
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate firstDay = LocalDate.of(2010, 1, 1);
+        long openingHoursId = 0;
+        String shopColumns = "shops (id, created_at, in_vacations, latitude, longitude, name)";
+        try (CopyWriter shops = new CopyWriter(connection, shopColumns, true);
+                CopyWriter hours = new CopyWriter(connection, "opening_hours (id, close_at, day, open_at)", false);
+                CopyWriter links =
+                        new CopyWriter(connection, "shops_opening_hours (shop_id, opening_hours_id)", false)) {
+            for (long id = 1; id <= nbShops; id++) {
+                String name = SHOP_KINDS[random.nextInt(SHOP_KINDS.length)] + " "
+                        + PLACES[random.nextInt(PLACES.length)] + " " + id;
+                // Within about 20 km of a city
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                double latitude = Math.round((city[0] + random.nextDouble(-0.2, 0.2)) * 1e6) / 1e6;
+                double longitude = Math.round((city[1] + random.nextDouble(-0.3, 0.3)) * 1e6) / 1e6;
+                shops.row(id, firstDay.plusDays(random.nextInt(5000)), random.nextInt(10) == 0, latitude, longitude,
+                        name);
+                // One slot on some days of the week, so the hours never conflict
+                for (int day = 1; day <= 7; day++) {
+                    if (random.nextInt(7) < 5) {
+                        LocalTime openAt = LocalTime.of(7 + random.nextInt(4), 15 * random.nextInt(4));
+                        LocalTime closeAt = openAt.plusHours(6 + random.nextInt(6));
+                        hours.row(++openingHoursId, closeAt, day, openAt);
+                        links.row(id, openingHoursId);
+                    }
+                }
+            }
+            shops.end();
+            hours.end();
+            links.end();
+        }
+    }
+
+    private void loadCategories(Connection connection) throws SQLException {
+        log("Generating " + nbCategories + " categories");
+        try (CopyWriter categories = new CopyWriter(connection, "categories (id, name, parent_id)", true);
+                CopyWriter closures = new CopyWriter(connection,
+                        "category_closure (ancestor_id, descendant_id, depth)", false)) {
+            for (long id = 1; id <= nbCategories; id++) {
+                Long parentId = parentOf(id);
+                categories.row(id, "Catégorie " + id, parentId);
+                int depth = 0;
+                for (Long ancestor = id; ancestor != null; ancestor = parentOf(ancestor)) {
+                    closures.row(ancestor, id, depth++);
+                }
+            }
+            categories.end();
+            closures.end();
+        }
+    }
+
+    /**
+     * Parent in a tree of categoryRoots roots where each category has categoryFanout children, numbered breadth first.
+     */
+    private Long parentOf(long id) {
+        return id <= categoryRoots ? null : (id - categoryRoots - 1) / categoryFanout + 1;
+    }
+
+    private void loadProducts() throws Exception {
+        long nbChunks = (nbProducts + chunkSize - 1) / chunkSize;
+        log("Generating " + nbProducts + " products in " + nbChunks + " chunks, " + threads + " streams");
+        AtomicLong loaded = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (long chunk = 0; chunk < nbChunks; chunk++) {
+                long first = chunk * chunkSize + 1;
+                long last = Math.min(first + chunkSize - 1, nbProducts);
+                long chunkSeed = seed ^ (0x9E3779B97F4A7C15L * (chunk + 1));
+                chunks.add(executor.submit(() -> {
+                    loadProducts(first, last, new SplittableRandom(chunkSeed));
+                    long total = loaded.addAndGet(last - first + 1);
+                    log("Products: " + total + " / " + nbProducts);
+                    return null;
+                }));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void loadProducts(long first, long last, SplittableRandom random) throws SQLException {
+        try (Connection connection = connect()) {
+            try (Statement statement = connection.createStatement()) {
+                // The load is replayed from the seed if the server crashes
+                statement.execute("SET synchronous_commit = off");
+            }
+            // The links of a chunk wait in memory for the products to be sent
+            try (CopyWriter products = new CopyWriter(connection,
+                    "products (id, price, shop_id, localized_products)", true);
+                    CopyWriter links = new CopyWriter(connection,
+                            "products_categories (product_id, category_id, shop_id)", false)) {
+                List<Long> categoryIds = new ArrayList<>(maxCategoriesPerProduct);
+                for (long id = first; id <= last; id++) {
+                    // Skewed towards the first shops: a few big shops and a long tail of small ones
+                    long shopId = 1 + Math.min(nbShops - 1, (long) (nbShops * Math.pow(random.nextDouble(), shopSkew)));
+                    double price = Math.min(10000, Math.round(Math.exp(3 + random.nextGaussian()) * 100) / 100.0);
+                    products.row(id, price, shopId, localizedProducts(id, random));
+                    categoryIds.clear();
+                    int nbLinks = random.nextInt(maxCategoriesPerProduct + 1);
+                    for (int i = 0; i < nbLinks; i++) {
+                        long categoryId = 1 + random.nextLong(nbCategories);
+                        if (!categoryIds.contains(categoryId)) {
+                            categoryIds.add(categoryId);
+                            links.row(id, categoryId, shopId);
+                        }
+                    }
+                }
+                products.end();
+                links.end();
+            }
+        }
+    }
+
+    private String localizedProducts(long id, SplittableRandom random) {
+        StringBuilder json = new StringBuilder("[{\"locale\": \"FR\", \"name\": \"Produit ").append(id).append('"');
+        if (random.nextDouble() < descriptionRatio) {
+            json.append(", \"description\": \"Description produit ").append(id).append('"');
+        }
+        json.append('}');
+        if (random.nextDouble() < enRatio) {
+            json.append(", {\"locale\": \"EN\", \"name\": \"Product ").append(id).append('"');
+            if (random.nextDouble() < descriptionRatio) {
+                json.append(", \"description\": \"Description product ").append(id).append('"');
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private void resetSequences(Statement statement) throws SQLException {
+        Map<String, String> tables = Map.of("shops_seq", "shops", "opening_hours_seq", "opening_hours",
+                "categories_seq", "categories", "products_seq", "products");
+        for (String sequence : SEQUENCES) {
+            // The pooled optimizer of Hibernate hands out the ids below the value of the sequence
+            statement.execute("SELECT setval('" + sequence + "', (SELECT COALESCE(MAX(id), 0) + 1 FROM "
+                    + tables.get(sequence) + ")) WHERE to_regclass('" + sequence + "') IS NOT NULL");
+        }
+        log("Sequences moved past the generated ids");
+    }
+
+    private void reindex(String apiUrl, String adminToken) throws Exception {
+        log("Asking " + apiUrl + " to rebuild its indexes");
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(apiUrl + "/api/v1/admin/reindex"))
+                        .header("Authorization", "Bearer " + adminToken)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            // The catalog is loaded, but the statistics, bitmaps, snapshot and search indexes stay empty
+            throw new IllegalStateException("Reindexing refused: " + response.statusCode() + " " + response.body());
+        }
+        log("Reindexing: " + response.statusCode() + " " + response.body());
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(option("url", "jdbc:postgresql://localhost:5432/postgres"),
+                option("user", "postgres"), option("password", "1234"));
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static void log(String message) {
+        System.out.println(LocalTime.now().withNano(0) + " " + message);
+    }
+
+    /**
+     * Rows sent to a COPY in the text format. A connection runs one COPY at a time, so only one writer of a connection
+     * streams its rows (once per megabyte) while the others keep theirs in memory and send them when they end.
+     */
+    private static class CopyWriter implements AutoCloseable {
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final Connection connection;
+
+        private final String table;
+
+        private final boolean streaming;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        private CopyIn copy;
+
+        CopyWriter(Connection connection, String table, boolean streaming) throws SQLException {
+            this.connection = connection;
+            this.table = table;
+            this.streaming = streaming;
+            if (streaming) {
+                start();
+            }
+        }
+
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append('\t');
+                }
+                if (values[i] == null) {
+                    buffer.append("\\N");
+                } else {
+                    // The generated values never contain tabs, newlines or backslashes
+                    buffer.append(values[i]);
+                }
+            }
+            buffer.append('\n');
+            if (streaming && buffer.length() >= BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        void end() throws SQLException {
+            if (!streaming) {
+                start();
+            }
+            flush();
+            copy.endCopy();
+        }
+
+        private void start() throws SQLException {
+            copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn("COPY " + table + " FROM STDIN");
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (copy != null && copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.dto.BatchResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class BatchLookup {
+    /**
+     * Removes duplicated ids (keeping the first occurrence) and checks the size of the batch.
+     */
+    public static List<Long> normalizeIds(List<Long> ids, int maxSize) throws Exception {
+        if (ids == null || ids.isEmpty()) {
+            throw new Exception("At least one id must be provided");
+        }
+        List<Long> distinctIds = new ArrayList<Long>(new LinkedHashSet<Long>(ids));
+        if (distinctIds.size() > maxSize) {
+            throw new Exception("At most " + maxSize + " ids can be requested at once");
+        }
+        return distinctIds;
+    }
+
+    /**
+     * Orders the entities found by a single IN query as the requested ids, and reports the ids which were not found.
+     */
+    public static <T> BatchResult<T> toResult(List<Long> ids, Collection<T> found, Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<Long, T>();
+        for (T entity : found) {
+            byId.put(idOf.apply(entity), entity);
+        }
+
+        List<T> items = new ArrayList<T>(ids.size());
+        List<Long> missingIds = new ArrayList<Long>();
+        for (Long id : ids) {
+            T entity = byId.get(id);
+            if (entity == null) {
+                missingIds.add(id);
+            } else {
+                items.add(entity);
+            }
+        }
+        return new BatchResult<T>(items, missingIds);
+    }
+}
@@ -0,0 +1,50 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.model.Product;
+import fr.fullstack.shopapp.model.Shop;
+import org.hibernate.Hibernate;
+
+/**
+ * Loads, inside the transaction of the service, the lazy associations serialized in the responses, since the session
+ * is closed before Jackson writes them ({@code spring.jpa.open-in-view=false}). With
+ * {@code hibernate.default_batch_fetch_size}, initializing the associations of a page of entities costs one query per
+ * association and batch instead of one per entity.
+ * <p>
+ * The entities served by the in-memory snapshot have no lazy association, initializing them does nothing.
+ */
+public class FetchPlans {
+    /**
+     * Shop as serialized: with its opening hours.
+     */
+    public static Shop shop(Shop shop) {
+        if (shop != null) {
+            Hibernate.initialize(shop.getOpeningHours());
+        }
+        return shop;
+    }
+
+    public static <C extends Iterable<Shop>> C shops(C shops) {
+        for (Shop shop : shops) {
+            shop(shop);
+        }
+        return shops;
+    }
+
+    /**
+     * Product as serialized: with its categories, its shop and the opening hours of its shop.
+     */
+    public static Product product(Product product) {
+        if (product != null) {
+            Hibernate.initialize(product.getCategories());
+            shop(product.getShop());
+        }
+        return product;
+    }
+
+    public static <C extends Iterable<Product>> C products(C products) {
+        for (Product product : products) {
+            product(product);
+        }
+        return products;
+    }
+}
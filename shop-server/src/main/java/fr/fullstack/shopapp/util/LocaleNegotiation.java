@@ -0,0 +1,54 @@
+package fr.fullstack.shopapp.util;
+
+import fr.fullstack.shopapp.model.Locale;
+import fr.fullstack.shopapp.model.Product;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class LocaleNegotiation {
+    public static final String AUTO = "auto";
+
+    private static final List<String> SUPPORTED_TAGS = Arrays.stream(Locale.values())
+            .map(locale -> locale.name().toLowerCase()).toList();
+
+    /**
+     * Resolves the locale of the response from the {@code locale} parameter. With {@code auto}, the best match of the
+     * {@code Accept-Language} header is taken, falling back to french. Without parameter, nothing is resolved and all
+     * the translations are returned.
+     */
+    public static Optional<Locale> resolve(Optional<String> locale, String acceptLanguage) throws Exception {
+        if (!locale.isPresent()) {
+            return Optional.empty();
+        }
+
+        if (!AUTO.equalsIgnoreCase(locale.get())) {
+            try {
+                return Optional.of(Locale.valueOf(locale.get().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new Exception("Locale must be FR, EN or auto");
+            }
+        }
+
+        if (acceptLanguage == null || acceptLanguage.isBlank()) {
+            return Optional.of(Locale.FR);
+        }
+        try {
+            String tag = java.util.Locale.lookupTag(java.util.Locale.LanguageRange.parse(acceptLanguage),
+                    SUPPORTED_TAGS);
+            return Optional.of(tag == null ? Locale.FR : Locale.valueOf(tag.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return Optional.of(Locale.FR);
+        }
+    }
+
+    public static void apply(Iterable<Product> products, Optional<Locale> locale) {
+        if (!locale.isPresent()) {
+            return;
+        }
+        for (Product product : products) {
+            product.setResolvedLocale(locale.get().name());
+        }
+    }
+}
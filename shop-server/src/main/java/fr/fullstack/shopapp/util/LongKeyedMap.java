@@ -0,0 +1,128 @@
+package fr.fullstack.shopapp.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable map keyed by primitive longs: the keys are kept in a sorted {@code long[]} next to an array of values, so
+ * an entry costs 12 to 16 bytes instead of the 50 to 70 bytes of a {@code HashMap<Long, V>} entry, and lookups are a
+ * binary search. Changes return a new map, the current one being left untouched for its readers.
+ */
+public final class LongKeyedMap<V> {
+    private static final LongKeyedMap<?> EMPTY = new LongKeyedMap<>(new long[0], new Object[0]);
+
+    private final long[] keys;
+
+    private final Object[] values;
+
+    private LongKeyedMap(long[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongKeyedMap<V> empty() {
+        return (LongKeyedMap<V>) EMPTY;
+    }
+
+    /**
+     * Map of the values by the key extracted from them, the last value winning when two share a key.
+     */
+    public static <V> LongKeyedMap<V> of(Collection<V> values, ToLongFunction<V> key) {
+        Object[] sorted = values.toArray();
+        @SuppressWarnings("unchecked")
+        ToLongFunction<Object> keyOf = (ToLongFunction<Object>) key;
+        Arrays.sort(sorted, (a, b) -> Long.compare(keyOf.applyAsLong(a), keyOf.applyAsLong(b)));
+        long[] keys = new long[sorted.length];
+        int size = 0;
+        for (Object value : sorted) {
+            long k = keyOf.applyAsLong(value);
+            if (size > 0 && keys[size - 1] == k) {
+                sorted[size - 1] = value;
+            } else {
+                keys[size] = k;
+                sorted[size++] = value;
+            }
+        }
+        return new LongKeyedMap<>(Arrays.copyOf(keys, size), Arrays.copyOf(sorted, size));
+    }
+
+    public boolean containsKey(long key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public long keyAt(int index) {
+        return keys[index];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * Values in the order of their keys.
+     */
+    public List<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                return valueAt(index);
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    /**
+     * New map with the given entries added or replaced and the given keys removed, in a single merge pass.
+     */
+    public LongKeyedMap<V> with(Map<Long, V> upserts, Set<Long> removals) {
+        if (upserts.isEmpty() && removals.isEmpty()) {
+            return this;
+        }
+        long[] changedKeys = upserts.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] mergedKeys = new long[keys.length + changedKeys.length];
+        Object[] mergedValues = new Object[mergedKeys.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < changedKeys.length) {
+            long k;
+            Object value;
+            if (j >= changedKeys.length || (i < keys.length && keys[i] < changedKeys[j])) {
+                k = keys[i];
+                value = values[i++];
+            } else {
+                k = changedKeys[j++];
+                value = upserts.get(k);
+                if (i < keys.length && keys[i] == k) {
+                    i++;
+                }
+            }
+            if (!removals.contains(k)) {
+                mergedKeys[size] = k;
+                mergedValues[size++] = value;
+            }
+        }
+        return new LongKeyedMap<>(Arrays.copyOf(mergedKeys, size), Arrays.copyOf(mergedValues, size));
+    }
+}
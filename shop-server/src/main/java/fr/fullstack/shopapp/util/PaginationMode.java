@@ -0,0 +1,27 @@
+package fr.fullstack.shopapp.util;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * How the total of a paginated listing is computed.
+ */
+public enum PaginationMode {
+    /** Exact total, computed by a COUNT query on every call */
+    EXACT,
+    /** Approximate total, read from the planner statistics or from a periodically refreshed count */
+    ESTIMATED,
+    /** No total, only whether a next page exists (size + 1 rows are fetched) */
+    SLICE;
+
+    public static PaginationMode parse(Optional<String> mode, PaginationMode defaultMode) throws Exception {
+        if (mode.isEmpty()) {
+            return defaultMode;
+        }
+        try {
+            return valueOf(mode.get().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Pagination must be one of exact, estimated or slice");
+        }
+    }
+}
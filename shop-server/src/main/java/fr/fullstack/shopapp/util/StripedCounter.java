@@ -0,0 +1,143 @@
+package fr.fullstack.shopapp.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-negative count of units spread over stripes, each one on its own cache lines, so that the threads taking units
+ * of a hot counter mostly update different memory. A stripe never goes below zero: a take first tries the stripe of
+ * the thread, then the other stripes, and finally gathers the units from several stripes, giving them back when there
+ * are not enough. The units are never taken twice, but a take may fail while another one is gathering units.
+ */
+public final class StripedCounter {
+    // 16 longs (128 bytes) between two stripes, so that two stripes never share a cache line nor a prefetched pair
+    private static final int PADDING = 16;
+
+    private final AtomicLongArray cells;
+
+    private final int stripes;
+
+    // Failed compare-and-set, a measure of the contention on the counter
+    private final LongAdder collisions = new LongAdder();
+
+    public StripedCounter(int stripes, long units) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicLongArray(this.stripes * PADDING);
+        addEvenly(units);
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * Units of all the stripes, not an atomic snapshot while units are taken or added.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void add(long units) {
+        cells.getAndAdd(home() * PADDING, units);
+    }
+
+    /**
+     * Adds the units spread over all the stripes, for the large additions (restocks).
+     */
+    public void addEvenly(long units) {
+        for (int i = 0; i < stripes; i++) {
+            long part = units / stripes + (i < units % stripes ? 1 : 0);
+            if (part != 0) {
+                cells.getAndAdd(i * PADDING, part);
+            }
+        }
+    }
+
+    /**
+     * Takes all the units, leaving the stripes empty.
+     */
+    public long drain() {
+        long units = 0;
+        for (int i = 0; i < stripes; i++) {
+            units += cells.getAndSet(i * PADDING, 0);
+        }
+        return units;
+    }
+
+    /**
+     * Takes the units if there are enough of them, all or nothing.
+     */
+    public boolean tryTake(long units) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            if (takeFrom((home + i) % stripes, units)) {
+                return true;
+            }
+        }
+        if (stripes == 1) {
+            return false;
+        }
+        long taken = gather(home, units);
+        if (taken == units) {
+            return true;
+        }
+        cells.getAndAdd(home * PADDING, taken);
+        return false;
+    }
+
+    /**
+     * Takes as many units as possible up to the given number.
+     *
+     * @return the number of units taken
+     */
+    public long takeUpTo(long units) {
+        return gather(home(), units);
+    }
+
+    private long gather(int home, long units) {
+        long taken = 0;
+        for (int i = 0; i < stripes && taken < units; i++) {
+            int index = ((home + i) % stripes) * PADDING;
+            while (true) {
+                long current = cells.get(index);
+                long part = Math.min(current, units - taken);
+                if (part == 0) {
+                    break;
+                }
+                if (cells.compareAndSet(index, current, current - part)) {
+                    taken += part;
+                    break;
+                }
+                collisions.increment();
+            }
+        }
+        return taken;
+    }
+
+    private boolean takeFrom(int stripe, long units) {
+        int index = stripe * PADDING;
+        while (true) {
+            long current = cells.get(index);
+            if (current < units) {
+                return false;
+            }
+            if (cells.compareAndSet(index, current, current - units)) {
+                return true;
+            }
+            collisions.increment();
+        }
+    }
+
+    private int home() {
+        // Spreads the sequential thread ids over the stripes
+        return (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 32) % stripes);
+    }
+}
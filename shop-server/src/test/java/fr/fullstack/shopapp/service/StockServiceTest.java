@@ -0,0 +1,173 @@
+package fr.fullstack.shopapp.service;
+
+import fr.fullstack.shopapp.dto.StockLevel;
+import fr.fullstack.shopapp.model.StockReservation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Flash sale on the in-memory counters: many threads reserve and release the units of one product while its counter
+ * is spread over stripes. The reservation log is a mock committing every group, so that the real writer thread runs.
+ */
+class StockServiceTest {
+    private static final long PRODUCT = 42;
+
+    private static final long UNITS = 1000;
+
+    private static final int THREADS = 32;
+
+    private static final int ATTEMPTS = 300;
+
+    // Reservations committed and not released yet, as the log would return them
+    private final Map<String, StockReservation> log = new ConcurrentHashMap<>();
+
+    private StockService stockService;
+
+    @BeforeEach
+    void loadStock() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ResultSet stock = mock(ResultSet.class);
+        when(stock.getLong(1)).thenReturn(PRODUCT);
+        when(stock.getLong(2)).thenReturn(UNITS);
+        when(stock.getLong(3)).thenReturn(0L);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(stock);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        // Release: the reservation leaves the log once
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any())).thenAnswer(invocation -> {
+            StockReservation released = log.remove(invocation.getArgument(3, String.class));
+            return released == null ? List.of() : List.of(released);
+        });
+
+        stockService = new StockService();
+        ReflectionTestUtils.setField(stockService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(stockService, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(stockService, "observationRegistry", ObservationRegistry.NOOP);
+        ReflectionTestUtils.setField(stockService, "batchSize", 500);
+        ReflectionTestUtils.setField(stockService, "commitTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(stockService, "defaultTtlSeconds", 600L);
+        ReflectionTestUtils.setField(stockService, "maxQuantity", 100);
+        ReflectionTestUtils.setField(stockService, "maxTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(stockService, "queueCapacity", 10000);
+        // Spread early, while the threads are taking units
+        ReflectionTestUtils.setField(stockService, "hotCollisions", 10L);
+        ReflectionTestUtils.setField(stockService, "stripes", 8);
+        stockService.startWriter();
+        stockService.load();
+    }
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        stockService.stopWriter();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        LongAdder reserved = new LongAdder();
+        LongAdder soldOut = new LongAdder();
+
+        hammer(() -> {
+            int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+            try {
+                stockService.reserve(PRODUCT, quantity, Optional.empty());
+                reserved.add(quantity);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                soldOut.increment();
+            }
+        });
+
+        StockLevel level = stockService.getStockLevel(PRODUCT);
+        assertTrue(reserved.sum() <= UNITS, reserved.sum() + " units reserved out of " + UNITS);
+        assertTrue(soldOut.sum() > 0, "The flash sale must sell out");
+        assertEquals(UNITS, reserved.sum() + level.getAvailable());
+        assertEquals(0, level.getPending());
+    }
+
+    @Test
+    void releasedUnitsAreReservedAgainWithoutOverselling() throws Exception {
+        LongAdder held = new LongAdder();
+
+        hammer(() -> {
+            int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+            StockReservation reservation;
+            try {
+                reservation = stockService.reserve(PRODUCT, quantity, Optional.empty());
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                return;
+            }
+            log.put(reservation.getId(), reservation);
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                stockService.release(reservation.getId());
+            } else {
+                held.add(quantity);
+            }
+        });
+
+        StockLevel level = stockService.getStockLevel(PRODUCT);
+        assertTrue(held.sum() <= UNITS, held.sum() + " units held out of " + UNITS);
+        assertEquals(UNITS, held.sum() + level.getAvailable());
+        assertEquals(0, level.getPending());
+    }
+
+    private static void hammer(Attempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < ATTEMPTS; j++) {
+                        attempt.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            // Rethrows the failure of a worker, a reservation shed or not committed in time
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,113 @@
+package fr.fullstack.shopapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedCounterTest {
+    private static final int THREADS = 32;
+
+    private static final int ATTEMPTS = 5000;
+
+    @Test
+    void takeIsAllOrNothing() {
+        StripedCounter counter = new StripedCounter(1, 10);
+
+        assertFalse(counter.tryTake(11));
+        assertEquals(10, counter.sum());
+        assertTrue(counter.tryTake(10));
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void takeGathersTheUnitsOfSeveralStripes() {
+        StripedCounter counter = new StripedCounter(4, 4);
+
+        assertTrue(counter.tryTake(4));
+        assertFalse(counter.tryTake(1));
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    void concurrentTakesNeverTakeMoreThanTheUnits() throws InterruptedException {
+        StripedCounter counter = new StripedCounter(8, 1000);
+        LongAdder taken = new LongAdder();
+
+        hammer(() -> {
+            long units = ThreadLocalRandom.current().nextLong(1, 6);
+            if (counter.tryTake(units)) {
+                taken.add(units);
+            }
+        });
+
+        assertTrue(taken.sum() <= 1000, taken.sum() + " units taken out of 1000");
+        assertEquals(1000, taken.sum() + counter.sum());
+    }
+
+    @Test
+    void concurrentTakesAndAdditionsKeepTheUnits() throws InterruptedException {
+        StripedCounter counter = new StripedCounter(8, 100);
+        LongAdder held = new LongAdder();
+
+        hammer(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long units = random.nextLong(1, 20);
+            switch (random.nextInt(4)) {
+                case 0:
+                    if (counter.tryTake(units)) {
+                        counter.add(units);
+                    }
+                    break;
+                case 1:
+                    long gathered = counter.takeUpTo(units);
+                    counter.addEvenly(gathered);
+                    break;
+                case 2:
+                    if (counter.tryTake(units)) {
+                        held.add(units);
+                    }
+                    break;
+                default:
+                    long drained = counter.drain();
+                    counter.addEvenly(drained);
+            }
+        });
+
+        assertTrue(held.sum() <= 100, held.sum() + " units held out of 100");
+        assertEquals(100, held.sum() + counter.sum());
+        assertEquals(100 - held.sum(), counter.drain());
+    }
+
+    private static void hammer(Runnable attempt) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < ATTEMPTS; j++) {
+                        attempt.run();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+}